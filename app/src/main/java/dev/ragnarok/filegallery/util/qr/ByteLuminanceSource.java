@@ -0,0 +1,90 @@
+package dev.ragnarok.filegallery.util.qr;
+
+/**
+ * Luminance source over a caller owned greyscale buffer, one byte per pixel.
+ * The buffer may be larger than the image, so it can be reused between decodes.
+ */
+public final class ByteLuminanceSource extends LuminanceSource {
+
+    private final byte[] luminances;
+    private final int dataWidth;
+    private final int dataHeight;
+    private final int left;
+    private final int top;
+
+    public ByteLuminanceSource(byte[] luminances, int width, int height) {
+        this(luminances, width, height, 0, 0, width, height);
+    }
+
+    private ByteLuminanceSource(byte[] luminances,
+                                int dataWidth,
+                                int dataHeight,
+                                int left,
+                                int top,
+                                int width,
+                                int height) {
+        super(width, height);
+        if (left + width > dataWidth || top + height > dataHeight) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+        if (luminances.length < dataWidth * dataHeight) {
+            throw new IllegalArgumentException("Luminance buffer is smaller than the image.");
+        }
+        this.luminances = luminances;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        int offset = (y + top) * dataWidth + left;
+        System.arraycopy(luminances, offset, row, 0, width);
+        return row;
+    }
+
+    @Override
+    public byte[] getMatrix() {
+        int width = getWidth();
+        int height = getHeight();
+
+        // The whole image starts at offset 0, callers index by width and ignore the length.
+        if (width == dataWidth && height == dataHeight) {
+            return luminances;
+        }
+
+        int area = width * height;
+        byte[] matrix = new byte[area];
+        int inputOffset = top * dataWidth + left;
+        for (int y = 0; y < height; y++) {
+            System.arraycopy(luminances, inputOffset, matrix, y * width, width);
+            inputOffset += dataWidth;
+        }
+        return matrix;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public LuminanceSource crop(int left, int top, int width, int height) {
+        return new ByteLuminanceSource(luminances,
+                dataWidth,
+                dataHeight,
+                this.left + left,
+                this.top + top,
+                width,
+                height);
+    }
+
+}
@@ -143,7 +143,7 @@ public class FinderPatternFinder {
         return possibleCenters;
     }
 
-    final FinderPatternInfo find(Map<DecodeHintType, ?> hints) throws NotFoundException {
+    public final FinderPatternInfo find(Map<DecodeHintType, ?> hints) throws NotFoundException {
         boolean tryHarder = hints != null && hints.containsKey(DecodeHintType.TRY_HARDER);
         int maxI = image.getHeight();
         int maxJ = image.getWidth();
@@ -3,6 +3,7 @@ package dev.ragnarok.filegallery
 import android.app.Application
 import androidx.appcompat.app.AppCompatDelegate
 import dev.ragnarok.filegallery.activity.crash.CrashUtils
+import dev.ragnarok.filegallery.api.HttpTransport
 import dev.ragnarok.filegallery.media.music.MusicPlaybackController
 import dev.ragnarok.filegallery.module.GalleryNative
 import dev.ragnarok.filegallery.module.rlottie.RLottieDrawable
@@ -19,6 +20,7 @@ class App : Application() {
         super.onCreate()
         AppCompatDelegate.setDefaultNightMode(Settings.get().main().getNightMode())
         CrashUtils.install(this)
+        HttpTransport.setMaxRequestsPerHost(Settings.get().main().getMaxRequestsPerHost())
 
         GalleryNative.loadNativeLibrary(object : GalleryNative.NativeOnException {
             override fun onException(e: Error) {
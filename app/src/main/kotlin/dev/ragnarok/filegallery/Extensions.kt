@@ -29,6 +29,12 @@ inline fun <reified T : Any> Single<T>.fromIOToMainComputation(): Single<T> =
 inline fun <reified T : Any> Single<T>.subscribeIOAndIgnoreResults(): Disposable =
     subscribeOn(Schedulers.io()).subscribe(RxUtils.ignore(), RxUtils.ignore())
 
+inline fun <reified T : Any> Flowable<T>.fromIOToMain(): Flowable<T> =
+    subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread())
+
+inline fun <reified T : Any> Observable<T>.fromIOToMain(): Observable<T> =
+    subscribeOn(Schedulers.io()).observeOn(AndroidSchedulers.mainThread())
+
 inline fun <reified T : Any> Flowable<T>.toMainThread(): Flowable<T> =
     observeOn(AndroidSchedulers.mainThread())
 
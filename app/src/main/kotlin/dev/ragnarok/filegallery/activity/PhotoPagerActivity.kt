@@ -20,6 +20,7 @@ import androidx.recyclerview.widget.RecyclerView
 import androidx.viewpager2.widget.ViewPager2
 import com.google.android.material.floatingactionbutton.FloatingActionButton
 import com.squareup.picasso3.Callback
+import com.squareup.picasso3.RequestCreator
 import com.squareup.picasso3.Rotatable
 import dev.ragnarok.filegallery.Extra
 import dev.ragnarok.filegallery.R
@@ -31,9 +32,11 @@ import dev.ragnarok.filegallery.adapter.horizontal.ImageListAdapter
 import dev.ragnarok.filegallery.fragment.AudioPlayerFragment
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.listener.AppStyleable
+import dev.ragnarok.filegallery.listener.PicassoPagerPrefetchCallback
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.mvp.core.IPresenterFactory
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.presenter.photo.PhotoAlbumPagerPresenter
 import dev.ragnarok.filegallery.mvp.presenter.photo.PhotoPagerPresenter
 import dev.ragnarok.filegallery.mvp.presenter.photo.TmpGalleryPagerPresenter
@@ -47,6 +50,7 @@ import dev.ragnarok.filegallery.settings.Settings
 import dev.ragnarok.filegallery.util.Utils
 import dev.ragnarok.filegallery.util.rxutils.RxUtils
 import dev.ragnarok.filegallery.util.toast.CustomToast.Companion.createCustomToast
+import dev.ragnarok.filegallery.view.RegionTileLayer
 import dev.ragnarok.filegallery.view.TouchImageView
 import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 import dev.ragnarok.filegallery.view.pager.WeakPicassoLoadCallback
@@ -54,12 +58,15 @@ import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.disposables.Disposable
 import java.util.*
 import java.util.concurrent.TimeUnit
+import kotlin.math.max
 
 
 class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>(), IPhotoPagerView,
     PlaceProvider, AppStyleable {
     companion object {
         private const val EXTRA_PHOTOS = "photos"
+        private const val PAGER_TAG = "photo_pager"
+        private const val MAX_PREFETCH_PAGES = 3
         private const val ACTION_OPEN =
             "dev.ragnarok.filegallery.activity.PhotoPagerActivity"
 
@@ -103,6 +110,7 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
     private var mToolbar: Toolbar? = null
     private var mPreviewsRecycler: RecyclerView? = null
     private var mPagerAdapter: Adapter? = null
+    private var mPrefetcher: PicassoPagerPrefetchCallback? = null
     private val bShowPhotosLine = Settings.get().main().isShow_photos_line()
     private val mAdapterRecycler = ImageListAdapter()
 
@@ -166,6 +174,18 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
                 Settings.get().main().getViewpager_page_transform()
             )
         )
+        val metrics = resources.displayMetrics
+        // pages are fetched at screen size, keep them within 1/8 of the heap
+        val prefetcher = PicassoPagerPrefetchCallback(
+            PAGER_TAG,
+            PicassoPagerPrefetchCallback.distanceFor(
+                metrics.widthPixels.toLong() * metrics.heightPixels * 4,
+                Runtime.getRuntime().maxMemory() / 8,
+                MAX_PREFETCH_PAGES
+            )
+        ) { position, fetch -> mPagerAdapter?.prefetchRequest(position, fetch) }
+        mPrefetcher = prefetcher
+        mViewPager?.registerOnPageChangeCallback(prefetcher)
         mViewPager?.registerOnPageChangeCallback(object : ViewPager2.OnPageChangeCallback() {
             override fun onPageSelected(position: Int) {
                 super.onPageSelected(position)
@@ -218,6 +238,11 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
         }
     }
 
+    override fun onDestroy() {
+        mPrefetcher?.reset()
+        super.onDestroy()
+    }
+
     override fun onBackPressed() {
         presenter?.close()
     }
@@ -255,7 +280,7 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
                         )
                     }
                     Place.PHOTO_LOCAL -> {
-                        val source: Long = requireArguments().getLong(EXTRA_PHOTOS)
+                        val source = GallerySource.take(requireArguments().getLong(EXTRA_PHOTOS))
                         requireArguments().putLong(EXTRA_PHOTOS, 0)
                         return TmpGalleryPagerPresenter(
                             source,
@@ -280,6 +305,7 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
                 mAdapterRecycler.selectPosition(initialIndex)
             }
         }
+        mPrefetcher?.reset()
         mPagerAdapter = Adapter(photos)
         mViewPager?.adapter = mPagerAdapter
         mViewPager?.setCurrentItem(initialIndex, false)
@@ -399,6 +425,19 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
             .apply(this)
     }
 
+    /**
+     * @param tiled zoomed in parts are decoded from the file, a screen sized base is enough
+     */
+    private fun createPageRequest(uri: Uri, tiled: Boolean): RequestCreator {
+        val request = PicassoInstance.with().load(uri)
+        if (tiled) {
+            val metrics = resources.displayMetrics
+            val size = max(metrics.widthPixels, metrics.heightPixels)
+            request.resize(size, size).centerInside().onlyScaleDown()
+        }
+        return request
+    }
+
     private inner class PhotoViewHolder(view: View) : RecyclerView.ViewHolder(view), Callback {
         val reload: FloatingActionButton
         private val mPicassoLoadCallback: WeakPicassoLoadCallback
@@ -407,6 +446,7 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
         var animationDispose: Disposable = Disposable.disposed()
         private var mAnimationLoaded = false
         private var mLoadingNow = false
+        private var boundUrl: String? = null
         fun bindTo(photo_image: Photo) {
             photo.resetZoom()
             reload.setOnClickListener {
@@ -469,7 +509,9 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
 
         private fun loadImage(image: Photo) {
             if (image.photo_url.isNullOrEmpty()) {
+                boundUrl = null
                 PicassoInstance.with().cancelRequest(photo)
+                photo.setTileSource(null)
                 createCustomToast(
                     this@PhotoPagerActivity,
                     mViewPager
@@ -479,11 +521,44 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
             mLoadingNow = true
             resolveProgressVisibility(true)
             if (!image.isGif) {
-                PicassoInstance.with()
-                    .load(image.photo_url)
-                    .into(photo, mPicassoLoadCallback)
+                val url = image.photo_url
+                val uri = Uri.parse(url)
+                boundUrl = url
+                photo.setTileSource(null)
+                if (uri.scheme != "file") {
+                    createPageRequest(uri, false).tag(PAGER_TAG).position(bindingAdapterPosition)
+                        .into(photo, mPicassoLoadCallback)
+                    return
+                }
+                val file = uri.toFile()
+                // the check may finish later, don't leave the previous page on a reused holder
+                PicassoInstance.with().cancelRequest(photo)
+                photo.setImageDrawable(null)
+                RegionTileLayer.checkSource(file) { tiled ->
+                    if (boundUrl != url) {
+                        return@checkSource
+                    }
+                    if (tiled) {
+                        photo.setTileSource(file) {
+                            // the decoder failed on a file that looked fine, load it whole
+                            if (boundUrl == url) {
+                                createPageRequest(uri, false).tag(PAGER_TAG)
+                                    .position(bindingAdapterPosition)
+                                    .into(photo, mPicassoLoadCallback)
+                            }
+                        }
+                    }
+                    createPageRequest(uri, tiled).tag(PAGER_TAG).position(bindingAdapterPosition)
+                        .into(photo, mPicassoLoadCallback)
+                    if (tiled) {
+                        // a memory hit completes the request before into() returns
+                        mPrefetcher?.onPageShown(!mLoadingNow)
+                    }
+                }
             } else {
+                boundUrl = null
                 PicassoInstance.with().cancelRequest(photo)
+                photo.setTileSource(null)
                 photo.fromFile(Uri.parse(image.photo_url).toFile())
                 mLoadingNow = false
                 resolveProgressVisibility(true)
@@ -579,5 +654,28 @@ class PhotoPagerActivity : BaseMvpActivity<PhotoPagerPresenter, IPhotoPagerView>
         override fun getItemCount(): Int {
             return mPhotos.size
         }
+
+        /**
+         * Only local photos that are shown at screen size are fetched ahead, remote ones
+         * would cost traffic and full resolution ones would not fit the prefetch budget.
+         */
+        fun prefetchRequest(position: Int, fetch: (RequestCreator) -> Unit) {
+            if (position < 0 || position >= mPhotos.size) {
+                return
+            }
+            val image = mPhotos[position]
+            if (image.isGif || image.photo_url.isNullOrEmpty()) {
+                return
+            }
+            val uri = Uri.parse(image.photo_url)
+            if (uri.scheme != "file") {
+                return
+            }
+            RegionTileLayer.checkSource(uri.toFile()) {
+                if (it) {
+                    fetch(createPageRequest(uri, true))
+                }
+            }
+        }
     }
 }
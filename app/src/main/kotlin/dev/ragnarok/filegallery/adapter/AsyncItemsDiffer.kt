@@ -0,0 +1,75 @@
+package dev.ragnarok.filegallery.adapter
+
+import androidx.recyclerview.widget.AsyncListDiffer
+import androidx.recyclerview.widget.DiffUtil
+import androidx.recyclerview.widget.RecyclerView
+
+/**
+ * Items of an adapter that shows a list owned and changed in place by a presenter.
+ * Each [submit] or [refresh] diffs a copy of that list against the shown items on a
+ * background thread and dispatches only the changed rows.
+ * Positions from the presenter match the adapter once the diff is committed, work
+ * that depends on them is run with [afterCommit].
+ */
+class AsyncItemsDiffer<T>(adapter: RecyclerView.Adapter<*>, callback: DiffUtil.ItemCallback<T>) {
+    private val differ = AsyncListDiffer(adapter, callback)
+    private var source: List<T> = emptyList()
+    private var submitted = 0
+    private var committed = 0
+    private val afterCommit = ArrayList<Runnable>()
+
+    val items: List<T>
+        get() = differ.currentList
+
+    /**
+     * [items] match the last submitted list.
+     */
+    val isCommitted: Boolean
+        get() = committed == submitted
+
+    fun submit(source: List<T>) {
+        this.source = source
+        refresh()
+    }
+
+    /**
+     * The list given to [submit] was changed.
+     */
+    fun refresh() {
+        // a list superseded before its diff finishes is never committed
+        val generation = ++submitted
+        differ.submitList(ArrayList(source)) {
+            committed = generation
+            if (isCommitted && afterCommit.isNotEmpty()) {
+                val actions = ArrayList(afterCommit)
+                afterCommit.clear()
+                for (i in actions) {
+                    i.run()
+                }
+            }
+        }
+    }
+
+    fun afterCommit(action: Runnable) {
+        if (isCommitted) {
+            action.run()
+        } else {
+            afterCommit.add(action)
+        }
+    }
+
+    companion object {
+        /**
+         * 64 bit FNV-1a of [path], used as the stable id of the row showing it.
+         */
+        fun pathId(path: String?): Long {
+            path ?: return RecyclerView.NO_ID
+            var hash = -0x340d631b7bdddcdbL
+            for (i in path.indices) {
+                hash = hash xor path[i].code.toLong()
+                hash *= 0x100000001b3L
+            }
+            return hash
+        }
+    }
+}
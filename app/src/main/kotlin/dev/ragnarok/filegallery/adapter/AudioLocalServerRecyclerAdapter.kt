@@ -15,6 +15,7 @@ import android.widget.Toast
 import androidx.annotation.DrawableRes
 import androidx.core.content.res.ResourcesCompat
 import androidx.fragment.app.FragmentActivity
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.google.android.material.card.MaterialCardView
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
@@ -51,16 +52,38 @@ import java.util.regex.Pattern
 
 class AudioLocalServerRecyclerAdapter(
     private val mContext: Context,
-    private var data: List<Audio>
+    items: List<Audio>
 ) : RecyclerView.Adapter<AudioLocalServerRecyclerAdapter.AudioHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<Audio>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val mAudioInteractor: ILocalServerApi
     private var mClickListener: ClickListener? = null
     private var mPlayerDisposable = Disposable.disposed()
     private var audioListDisposable = Disposable.disposed()
     private var currAudio: Audio?
     fun setItems(data: List<Audio>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setItems] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     private fun doBitrate(url: String): Single<Int> {
@@ -450,6 +473,10 @@ class AudioLocalServerRecyclerAdapter(
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].url)
+    }
+
     override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
         super.onAttachedToRecyclerView(recyclerView)
         mPlayerDisposable = MusicPlaybackController.observeServiceBinding()
@@ -545,6 +572,18 @@ class AudioLocalServerRecyclerAdapter(
     }
 
     companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<Audio>() {
+            override fun areItemsTheSame(old: Audio, new: Audio): Boolean {
+                return old.url == new.url
+            }
+
+            override fun areContentsTheSame(old: Audio, new: Audio): Boolean {
+                return old.id == new.id && old.ownerId == new.ownerId && old.artist == new.artist
+                        && old.title == new.title && old.duration == new.duration
+                        && old.thumb_image == new.thumb_image && old.isSelected == new.isSelected
+            }
+        }
+
         private val PATTERN_FENRIR_SERVER_TRACK_HASH = Pattern.compile("hash=([^&]*)")
         fun parseLocalServerURL(string: String?): String? {
             string ?: return null
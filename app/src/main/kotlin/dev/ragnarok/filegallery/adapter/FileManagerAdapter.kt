@@ -15,6 +15,7 @@ import android.widget.Toast
 import androidx.core.content.FileProvider
 import androidx.core.net.toFile
 import androidx.fragment.app.FragmentActivity
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.squareup.picasso3.Callback
 import com.squareup.picasso3.Picasso
@@ -43,23 +44,50 @@ import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.Disposable
 import java.io.File
 
-class FileManagerAdapter(private var context: Context, private var data: List<FileItem>) :
+class FileManagerAdapter(private var context: Context, items: List<FileItem>) :
     RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<FileItem>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val colorPrimary = CurrentTheme.getColorPrimary(context)
     private val colorOnSurface = CurrentTheme.getColorOnSurface(context)
     private var clickListener: ClickListener? = null
     private var mPlayerDisposable = Disposable.disposed()
     private var audioListDisposable = Disposable.disposed()
     private var currAudio: Audio? = MusicPlaybackController.currentAudio
+    private var audioIndexLookup: ((Audio) -> Int)? = null
     private var isSelectMode = false
 
     fun updateSelectedMode(show: Boolean) {
         isSelectMode = show
     }
 
+    fun getThumbnailUri(position: Int): String? {
+        return data.getOrNull(position)?.let { "thumb_file://${it.file_path}" }
+    }
+
     fun setItems(data: List<FileItem>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setItems] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
@@ -84,8 +112,24 @@ class FileManagerAdapter(private var context: Context, private var data: List<Fi
         }
     }
 
+    /**
+     * Finds the row of a played file in the list given to [setItems], instead of a scan.
+     */
+    fun setAudioIndexLookup(lookup: ((Audio) -> Int)?) {
+        audioIndexLookup = lookup
+    }
+
     private fun getIndexAudio(audio: Audio?): Int {
         audio ?: return -1
+        val pos = audioIndexLookup?.invoke(audio) ?: -1
+        // the shown rows lag behind the list until its diff is committed
+        val item = data.getOrNull(pos)
+        if (item != null && item.fileNameHash == audio.id && item.filePathHash == audio.ownerId) {
+            return pos
+        }
+        if (audioIndexLookup != null && pos == -1 && differ.isCommitted) {
+            return -1
+        }
         for (i in data.indices) {
             if (data[i].fileNameHash == audio.id && data[i].filePathHash == audio.ownerId) {
                 return i
@@ -402,7 +446,7 @@ class FileManagerAdapter(private var context: Context, private var data: List<Fi
 
         PicassoInstance.with()
             .load("thumb_file://${item.file_path}").tag(Constants.PICASSO_TAG)
-            .priority(Picasso.Priority.LOW)
+            .priority(Picasso.Priority.LOW).position(position)
             .into(holder.icon, object : Callback {
                 override fun onSuccess() {
                     holder.visual.clearColorFilter()
@@ -602,7 +646,7 @@ class FileManagerAdapter(private var context: Context, private var data: List<Fi
 
         PicassoInstance.with()
             .load("thumb_file://${item.file_path}").tag(Constants.PICASSO_TAG)
-            .priority(Picasso.Priority.LOW)
+            .priority(Picasso.Priority.LOW).position(position)
             .into(holder.icon)
         holder.fileName.text = item.file_name
         holder.tagged.visibility = if (item.isHasTag) View.VISIBLE else View.GONE
@@ -632,6 +676,10 @@ class FileManagerAdapter(private var context: Context, private var data: List<Fi
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].file_path)
+    }
+
     fun setClickListener(clickListener: ClickListener?) {
         this.clickListener = clickListener
     }
@@ -662,4 +710,18 @@ class FileManagerAdapter(private var context: Context, private var data: List<Fi
         val visual: RLottieImageView = itemView.findViewById(R.id.item_audio_visual)
         val tagged: ImageView = itemView.findViewById(R.id.item_tagged)
     }
-}
\ No newline at end of file
+
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<FileItem>() {
+            override fun areItemsTheSame(old: FileItem, new: FileItem): Boolean {
+                return old.file_path == new.file_path
+            }
+
+            override fun areContentsTheSame(old: FileItem, new: FileItem): Boolean {
+                return old.type == new.type && old.file_name == new.file_name && old.modification == new.modification
+                        && old.size == new.size && old.isCanRead == new.isCanRead
+                        && old.isSelected == new.isSelected && old.isHasTag == new.isHasTag
+            }
+        }
+    }
+}
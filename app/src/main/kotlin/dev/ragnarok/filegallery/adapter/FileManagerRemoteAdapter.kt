@@ -10,6 +10,7 @@ import android.widget.ImageView
 import android.widget.TextView
 import android.widget.Toast
 import androidx.fragment.app.FragmentActivity
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.snackbar.BaseTransientBottomBar
@@ -38,8 +39,17 @@ import dev.ragnarok.filegallery.util.toast.CustomToast
 import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 import io.reactivex.rxjava3.disposables.Disposable
 
-class FileManagerRemoteAdapter(private var context: Context, private var data: List<FileRemote>) :
+class FileManagerRemoteAdapter(private var context: Context, items: List<FileRemote>) :
     RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<FileRemote>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val colorPrimary = CurrentTheme.getColorPrimary(context)
     private val colorOnSurface = CurrentTheme.getColorOnSurface(context)
     private var clickListener: ClickListener? = null
@@ -48,8 +58,21 @@ class FileManagerRemoteAdapter(private var context: Context, private var data: L
     private var currAudio: Audio? = MusicPlaybackController.currentAudio
 
     fun setItems(data: List<FileRemote>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setItems] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     override fun onAttachedToRecyclerView(recyclerView: RecyclerView) {
@@ -636,6 +659,10 @@ class FileManagerRemoteAdapter(private var context: Context, private var data: L
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].let { it.url ?: it.file_name })
+    }
+
     fun setClickListener(clickListener: ClickListener?) {
         this.clickListener = clickListener
     }
@@ -660,4 +687,18 @@ class FileManagerRemoteAdapter(private var context: Context, private var data: L
         val visual: RLottieImageView = itemView.findViewById(R.id.item_audio_visual)
         val tagged: ImageView = itemView.findViewById(R.id.item_tagged)
     }
-}
\ No newline at end of file
+
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<FileRemote>() {
+            override fun areItemsTheSame(old: FileRemote, new: FileRemote): Boolean {
+                return (old.url ?: old.file_name) == (new.url ?: new.file_name)
+            }
+
+            override fun areContentsTheSame(old: FileRemote, new: FileRemote): Boolean {
+                return old.type == new.type && old.file_name == new.file_name
+                        && old.modification_time == new.modification_time && old.size == new.size
+                        && old.preview_url == new.preview_url && old.isSelected == new.isSelected
+            }
+        }
+    }
+}
@@ -6,6 +6,7 @@ import android.view.View
 import android.view.ViewGroup
 import android.widget.ImageView
 import android.widget.TextView
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.squareup.picasso3.Picasso
 import dev.ragnarok.filegallery.Constants
@@ -16,14 +17,36 @@ import dev.ragnarok.filegallery.util.Utils
 import io.reactivex.rxjava3.disposables.Disposable
 
 
-class FileManagerSelectAdapter(private var data: List<FileItemSelect>) :
+class FileManagerSelectAdapter(items: List<FileItemSelect>) :
     RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<FileItemSelect>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private var clickListener: ClickListener? = null
     private var mPlayerDisposable = Disposable.disposed()
 
     fun setItems(data: List<FileItemSelect>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setItems] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     override fun onDetachedFromRecyclerView(recyclerView: RecyclerView) {
@@ -92,6 +115,10 @@ class FileManagerSelectAdapter(private var data: List<FileItemSelect>) :
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].file_path)
+    }
+
     fun setClickListener(clickListener: ClickListener?) {
         this.clickListener = clickListener
     }
@@ -105,4 +132,17 @@ class FileManagerSelectAdapter(private var data: List<FileItemSelect>) :
         val fileDetails: TextView = itemView.findViewById(R.id.item_file_details)
         val icon: ImageView = itemView.findViewById(R.id.item_file_icon)
     }
+
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<FileItemSelect>() {
+            override fun areItemsTheSame(old: FileItemSelect, new: FileItemSelect): Boolean {
+                return old.file_path == new.file_path
+            }
+
+            override fun areContentsTheSame(old: FileItemSelect, new: FileItemSelect): Boolean {
+                return old.isDir == new.isDir && old.file_name == new.file_name
+                        && old.modification == new.modification && old.size == new.size
+            }
+        }
+    }
 }
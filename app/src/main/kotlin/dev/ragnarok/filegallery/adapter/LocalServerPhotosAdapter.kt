@@ -5,6 +5,7 @@ import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
 import android.widget.TextView
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.R
@@ -18,8 +19,17 @@ import dev.ragnarok.filegallery.util.Utils
 import dev.ragnarok.filegallery.view.AspectRatioImageView
 import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 
-class LocalServerPhotosAdapter(private val mContext: Context, private var data: List<Photo>) :
+class LocalServerPhotosAdapter(private val mContext: Context, items: List<Photo>) :
     RecyclerView.Adapter<LocalServerPhotosAdapter.ViewHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<Photo>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val colorPrimary: Int = getColorPrimary(mContext)
     private val mColorSecondaryWithAlpha: Int = Utils.adjustAlpha(
         getColorSecondary(
@@ -29,8 +39,14 @@ class LocalServerPhotosAdapter(private val mContext: Context, private var data:
     private var photoSelectionListener: PhotoSelectionListener? = null
     private var currentPosition = -1
     fun updateCurrentPosition(currentPosition: Int) {
+        val old = this.currentPosition
         this.currentPosition = currentPosition
-        notifyDataSetChanged()
+        if (old in data.indices) {
+            notifyItemChanged(old)
+        }
+        if (currentPosition != old && currentPosition in data.indices) {
+            notifyItemChanged(currentPosition)
+        }
     }
 
     override fun onCreateViewHolder(parent: ViewGroup, viewType: Int): ViewHolder {
@@ -73,9 +89,26 @@ class LocalServerPhotosAdapter(private val mContext: Context, private var data:
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].photo_url)
+    }
+
     fun setData(data: List<Photo>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setData] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     fun setPhotoSelectionListener(photoSelectionListener: PhotoSelectionListener?) {
@@ -93,4 +126,16 @@ class LocalServerPhotosAdapter(private val mContext: Context, private var data:
         val current: RLottieImageView = itemView.findViewById(R.id.current)
     }
 
-}
\ No newline at end of file
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<Photo>() {
+            override fun areItemsTheSame(old: Photo, new: Photo): Boolean {
+                return old.photo_url == new.photo_url
+            }
+
+            override fun areContentsTheSame(old: Photo, new: Photo): Boolean {
+                return old.id == new.id && old.ownerId == new.ownerId && old.preview_url == new.preview_url
+                        && old.text == new.text && old.date == new.date
+            }
+        }
+    }
+}
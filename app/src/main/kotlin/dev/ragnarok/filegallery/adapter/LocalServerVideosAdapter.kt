@@ -9,6 +9,7 @@ import android.widget.ImageView
 import android.widget.TextView
 import android.widget.Toast
 import androidx.fragment.app.FragmentActivity
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.google.android.material.textfield.TextInputEditText
@@ -30,8 +31,17 @@ import dev.ragnarok.filegallery.util.toast.CustomToast.Companion.createCustomToa
 import io.reactivex.rxjava3.disposables.Disposable
 import java.util.regex.Pattern
 
-class LocalServerVideosAdapter(private val context: Context, private var data: List<Video>) :
+class LocalServerVideosAdapter(private val context: Context, items: List<Video>) :
     RecyclerView.Adapter<LocalServerVideosAdapter.Holder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<Video>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val mVideoInteractor: ILocalServerApi = networkInterfaces.localServerApi()
     private var videoOnClickListener: VideoOnClickListener? = null
     private var listDisposable = Disposable.disposed()
@@ -229,13 +239,30 @@ class LocalServerVideosAdapter(private val context: Context, private var data: L
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].link)
+    }
+
     fun setVideoOnClickListener(videoOnClickListener: VideoOnClickListener?) {
         this.videoOnClickListener = videoOnClickListener
     }
 
     fun setData(data: List<Video>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setData] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     interface VideoOnClickListener {
@@ -252,6 +279,18 @@ class LocalServerVideosAdapter(private val context: Context, private var data: L
     }
 
     companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<Video>() {
+            override fun areItemsTheSame(old: Video, new: Video): Boolean {
+                return old.link == new.link
+            }
+
+            override fun areContentsTheSame(old: Video, new: Video): Boolean {
+                return old.id == new.id && old.ownerId == new.ownerId && old.title == new.title
+                        && old.description == new.description && old.image == new.image
+                        && old.date == new.date && old.duration == new.duration
+            }
+        }
+
         private val PATTERN_FENRIR_SERVER_TRACK_HASH = Pattern.compile("hash=([^&]*)")
         fun parseLocalServerURL(string: String?): String? {
             string ?: return null
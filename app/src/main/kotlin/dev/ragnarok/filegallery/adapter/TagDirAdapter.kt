@@ -9,6 +9,7 @@ import android.view.View.OnCreateContextMenuListener
 import android.view.ViewGroup
 import android.widget.ImageView
 import android.widget.TextView
+import androidx.recyclerview.widget.DiffUtil
 import androidx.recyclerview.widget.RecyclerView
 import com.squareup.picasso3.Callback
 import com.squareup.picasso3.Picasso
@@ -29,18 +30,41 @@ import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 import io.reactivex.rxjava3.disposables.Disposable
 
 
-class TagDirAdapter(context: Context, private var data: List<TagDir>) :
+class TagDirAdapter(context: Context, items: List<TagDir>) :
     RecyclerView.Adapter<RecyclerView.ViewHolder>() {
+    private val differ = AsyncItemsDiffer(this, DIFF_CALLBACK)
+    private val data: List<TagDir>
+        get() = differ.items
+
+    init {
+        setHasStableIds(true)
+        differ.submit(items)
+    }
+
     private val colorPrimary = CurrentTheme.getColorPrimary(context)
     private var clickListener: ClickListener? = null
     private var recyclerView: RecyclerView? = null
     private val colorOnSurface = CurrentTheme.getColorOnSurface(context)
     private var currAudio: Audio? = MusicPlaybackController.currentAudio
+    private var audioIndexLookup: ((Audio) -> Int)? = null
     private var mPlayerDisposable = Disposable.disposed()
 
     fun setItems(data: List<TagDir>) {
-        this.data = data
-        notifyDataSetChanged()
+        differ.submit(data)
+    }
+
+    /**
+     * The list given to [setItems] was changed in place.
+     */
+    fun refresh() {
+        differ.refresh()
+    }
+
+    /**
+     * Runs [action] once the shown rows match the submitted list.
+     */
+    fun afterCommit(action: Runnable) {
+        differ.afterCommit(action)
     }
 
     private fun onServiceBindEvent(@PlayerStatus status: Int) {
@@ -54,8 +78,24 @@ class TagDirAdapter(context: Context, private var data: List<TagDir>) :
         }
     }
 
+    /**
+     * Finds the row of a played file in the list given to [setItems], instead of a scan.
+     */
+    fun setAudioIndexLookup(lookup: ((Audio) -> Int)?) {
+        audioIndexLookup = lookup
+    }
+
     private fun getIndexAudio(audio: Audio?): Int {
         audio ?: return -1
+        val pos = audioIndexLookup?.invoke(audio) ?: -1
+        // the shown rows lag behind the list until its diff is committed
+        val item = data.getOrNull(pos)
+        if (item != null && item.fileNameHash == audio.id && item.filePathHash == audio.ownerId) {
+            return pos
+        }
+        if (audioIndexLookup != null && pos == -1 && differ.isCommitted) {
+            return -1
+        }
         for (i in data.indices) {
             if (data[i].fileNameHash == audio.id && data[i].filePathHash == audio.ownerId) {
                 return i
@@ -231,6 +271,10 @@ class TagDirAdapter(context: Context, private var data: List<TagDir>) :
         return data.size
     }
 
+    override fun getItemId(position: Int): Long {
+        return AsyncItemsDiffer.pathId(data[position].path)
+    }
+
     fun setClickListener(clickListener: ClickListener?) {
         this.clickListener = clickListener
     }
@@ -314,4 +358,17 @@ class TagDirAdapter(context: Context, private var data: List<TagDir>) :
                 }
         }
     }
+
+    companion object {
+        private val DIFF_CALLBACK = object : DiffUtil.ItemCallback<TagDir>() {
+            override fun areItemsTheSame(old: TagDir, new: TagDir): Boolean {
+                return old.path == new.path
+            }
+
+            override fun areContentsTheSame(old: TagDir, new: TagDir): Boolean {
+                return old.id == new.id && old.type == new.type && old.name == new.name && old.size == new.size
+                        && old.isSelected == new.isSelected
+            }
+        }
+    }
 }
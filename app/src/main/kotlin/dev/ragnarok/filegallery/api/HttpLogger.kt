@@ -24,39 +24,46 @@ object HttpLogger {
         }
     }
 
+    /**
+     * Created once, so that clients which skip validation still share one TLS session cache.
+     */
+    private val insecureSocketFactory: Pair<SSLSocketFactory, X509TrustManager> by lazy {
+        val trustAllCerts: Array<TrustManager> = arrayOf(
+            @SuppressLint("CustomX509TrustManager")
+            object : X509TrustManager {
+                @SuppressLint("TrustAllX509TrustManager")
+                @Throws(CertificateException::class)
+                override fun checkClientTrusted(
+                    chain: Array<X509Certificate>,
+                    authType: String?
+                ) {
+                }
+
+                @SuppressLint("TrustAllX509TrustManager")
+                @Throws(CertificateException::class)
+                override fun checkServerTrusted(
+                    chain: Array<X509Certificate>,
+                    authType: String?
+                ) {
+                }
+
+                override fun getAcceptedIssuers(): Array<X509Certificate> {
+                    return arrayOf()
+                }
+            }
+        )
+        val sslContext: SSLContext = SSLContext.getInstance("SSL")
+        sslContext.init(null, trustAllCerts, SecureRandom())
+        Pair(sslContext.socketFactory, trustAllCerts[0] as X509TrustManager)
+    }
+
     fun configureToIgnoreCertificates(builder: OkHttpClient.Builder) {
         if (Settings.get().main().isValidate_tls) {
             return
         }
         try {
-            val trustAllCerts: Array<TrustManager> = arrayOf(
-                @SuppressLint("CustomX509TrustManager")
-                object : X509TrustManager {
-                    @SuppressLint("TrustAllX509TrustManager")
-                    @Throws(CertificateException::class)
-                    override fun checkClientTrusted(
-                        chain: Array<X509Certificate>,
-                        authType: String?
-                    ) {
-                    }
-
-                    @SuppressLint("TrustAllX509TrustManager")
-                    @Throws(CertificateException::class)
-                    override fun checkServerTrusted(
-                        chain: Array<X509Certificate>,
-                        authType: String?
-                    ) {
-                    }
-
-                    override fun getAcceptedIssuers(): Array<X509Certificate> {
-                        return arrayOf()
-                    }
-                }
-            )
-            val sslContext: SSLContext = SSLContext.getInstance("SSL")
-            sslContext.init(null, trustAllCerts, SecureRandom())
-            val sslSocketFactory: SSLSocketFactory = sslContext.socketFactory
-            builder.sslSocketFactory(sslSocketFactory, trustAllCerts[0] as X509TrustManager)
+            val insecure = insecureSocketFactory
+            builder.sslSocketFactory(insecure.first, insecure.second)
             builder.hostnameVerifier { _, _ -> true }
         } catch (e: Exception) {
             e.printStackTrace()
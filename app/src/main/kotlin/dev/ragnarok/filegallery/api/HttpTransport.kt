@@ -0,0 +1,189 @@
+package dev.ragnarok.filegallery.api
+
+import android.os.SystemClock
+import dev.ragnarok.filegallery.Constants
+import okhttp3.*
+import java.io.InterruptedIOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.Proxy
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Semaphore
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Single HTTP transport of the app. Every client is derived from one base client, so
+ * they all share the connection pool (HTTP/2 multiplexing included), the dispatcher,
+ * the DNS cache and the TLS socket factory with its session cache.
+ * Callers only add their timeouts and interceptors to [builder].
+ */
+object HttpTransport {
+    private const val MAX_IDLE_CONNECTIONS = 10
+    private const val KEEP_ALIVE_MINUTES = 5L
+    private const val MAX_REQUESTS = 64
+    private const val DEFAULT_MAX_REQUESTS_PER_HOST = 16
+    private const val DNS_TTL = 60000L
+
+    class Metrics(
+        val calls: Long,
+        val newConnections: Long,
+        val reusedConnections: Long,
+        val connections: Int,
+        val idleConnections: Int
+    )
+
+    private val connectionPool = ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES)
+    private val dispatcher = Dispatcher().apply {
+        maxRequests = MAX_REQUESTS
+        maxRequestsPerHost = DEFAULT_MAX_REQUESTS_PER_HOST
+    }
+    private val hostLimiter = HostLimiter(DEFAULT_MAX_REQUESTS_PER_HOST)
+
+    private val callCount = AtomicLong()
+    private val connectCount = AtomicLong()
+    private val acquireCount = AtomicLong()
+
+    private val base: OkHttpClient by lazy {
+        OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .dns(CachingDns())
+            .eventListener(object : EventListener() {
+                override fun callStart(call: Call) {
+                    callCount.incrementAndGet()
+                }
+
+                override fun connectStart(
+                    call: Call,
+                    inetSocketAddress: InetSocketAddress,
+                    proxy: Proxy
+                ) {
+                    connectCount.incrementAndGet()
+                }
+
+                override fun connectionAcquired(call: Call, connection: Connection) {
+                    acquireCount.incrementAndGet()
+                }
+            })
+            .addInterceptor(hostLimiter)
+            .addInterceptor(Interceptor { chain: Interceptor.Chain ->
+                val request = chain.request()
+                chain.proceed(
+                    if (request.header("User-Agent") != null) request else request.newBuilder()
+                        .header("User-Agent", Constants.USER_AGENT).build()
+                )
+            })
+            .build()
+    }
+
+    val downloadClient: OkHttpClient by lazy {
+        builder(60).build()
+    }
+
+    val mediaClient: OkHttpClient by lazy {
+        builder(60).build()
+    }
+
+    fun builder(): OkHttpClient.Builder {
+        return base.newBuilder()
+    }
+
+    fun builder(timeoutSeconds: Long): OkHttpClient.Builder {
+        return base.newBuilder()
+            .connectTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .readTimeout(timeoutSeconds, TimeUnit.SECONDS)
+            .writeTimeout(timeoutSeconds, TimeUnit.SECONDS)
+    }
+
+    /**
+     * Limits concurrent requests to one host for both async and blocking calls.
+     */
+    fun setMaxRequestsPerHost(max: Int) {
+        dispatcher.maxRequestsPerHost = max
+        hostLimiter.setLimit(max)
+    }
+
+    fun activeRequests(host: String): Int {
+        return hostLimiter.active(host)
+    }
+
+    fun metrics(): Metrics {
+        val connects = connectCount.get()
+        return Metrics(
+            callCount.get(),
+            connects,
+            (acquireCount.get() - connects).coerceAtLeast(0),
+            connectionPool.connectionCount(),
+            connectionPool.idleConnectionCount()
+        )
+    }
+
+    private class CachingDns : Dns {
+        private class Entry(val addresses: List<InetAddress>, val time: Long)
+
+        private val cache = ConcurrentHashMap<String, Entry>()
+
+        override fun lookup(hostname: String): List<InetAddress> {
+            val now = SystemClock.elapsedRealtime()
+            cache[hostname]?.let {
+                if (now - it.time < DNS_TTL) {
+                    return it.addresses
+                }
+            }
+            val addresses = Dns.SYSTEM.lookup(hostname)
+            cache[hostname] = Entry(addresses, now)
+            return addresses
+        }
+    }
+
+    /**
+     * Limits concurrent requests to one host for both async and blocking calls. A request
+     * holds its slot until the response headers arrive, long lived bodies (streams, download
+     * segments) don't block later requests.
+     */
+    private class HostLimiter(@Volatile private var limit: Int) : Interceptor {
+        private class Slots(val limit: Int) {
+            val semaphore = Semaphore(limit, true)
+        }
+
+        private val hosts = ConcurrentHashMap<String, Slots>()
+
+        /**
+         * Requests in flight keep releasing into the slots they took, later ones get
+         * slots sized to the new limit.
+         */
+        fun setLimit(limit: Int) {
+            if (this.limit != limit) {
+                this.limit = limit
+                hosts.clear()
+            }
+        }
+
+        fun active(host: String): Int {
+            val slots = hosts[host] ?: return 0
+            return slots.limit - slots.semaphore.availablePermits()
+        }
+
+        override fun intercept(chain: Interceptor.Chain): Response {
+            val host = chain.request().url.host
+            val slots = hosts.getOrPut(host) { Slots(limit) }
+            try {
+                if (!slots.semaphore.tryAcquire(
+                        chain.connectTimeoutMillis().toLong().coerceAtLeast(1),
+                        TimeUnit.MILLISECONDS
+                    )
+                ) {
+                    throw InterruptedIOException("Too many concurrent requests to $host")
+                }
+            } catch (e: InterruptedException) {
+                throw InterruptedIOException()
+            }
+            try {
+                return chain.proceed(chain.request())
+            } finally {
+                slots.semaphore.release()
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,18 +1,16 @@
 package dev.ragnarok.filegallery.api
 
 import android.annotation.SuppressLint
-import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.kJson
 import dev.ragnarok.filegallery.nonNullNoEmpty
 import dev.ragnarok.filegallery.settings.ISettings.IMainSettings
 import dev.ragnarok.filegallery.util.Utils.firstNonEmptyString
-import dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization.asConverterFactory
+import dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization.asStreamingConverterFactory
 import dev.ragnarok.filegallery.util.serializeble.retrofit.rxjava3.RxJava3CallAdapterFactory
 import io.reactivex.rxjava3.core.Single
 import okhttp3.FormBody
 import okhttp3.Interceptor
 import okhttp3.MultipartBody
-import okhttp3.OkHttpClient
 import retrofit2.Retrofit
 import java.util.concurrent.TimeUnit
 
@@ -29,14 +27,9 @@ class OtherRetrofitProvider @SuppressLint("CheckResult") constructor(private val
 
     private fun createLocalServerRetrofit(): Retrofit {
         val localSettings = mainSettings.getLocalServer()
-        val builder = OkHttpClient.Builder()
+        val builder = HttpTransport.builder()
             .readTimeout(30, TimeUnit.SECONDS)
             .addInterceptor(Interceptor { chain: Interceptor.Chain ->
-                val request =
-                    chain.request().newBuilder().addHeader("User-Agent", Constants.USER_AGENT)
-                        .build()
-                chain.proceed(request)
-            }).addInterceptor(Interceptor { chain: Interceptor.Chain ->
                 if (chain.request().body is MultipartBody) {
                     return@Interceptor chain.proceed(chain.request())
                 }
@@ -61,7 +54,7 @@ class OtherRetrofitProvider @SuppressLint("CheckResult") constructor(private val
         val url = firstNonEmptyString(localSettings.url, "https://debug.dev")!!
         return Retrofit.Builder()
             .baseUrl("$url/method/")
-            .addConverterFactory(kJson.asConverterFactory())
+            .addConverterFactory(kJson.asStreamingConverterFactory())
             .addCallAdapterFactory(RxJava3CallAdapterFactory.create())
             .client(builder.build())
             .build()
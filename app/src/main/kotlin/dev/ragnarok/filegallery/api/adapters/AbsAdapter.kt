@@ -2,6 +2,7 @@ package dev.ragnarok.filegallery.api.adapters
 
 import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.util.serializeble.json.*
+import dev.ragnarok.filegallery.util.serializeble.json.internal.StreamingJsonDecoder
 import kotlinx.serialization.KSerializer
 import kotlinx.serialization.descriptors.SerialDescriptor
 import kotlinx.serialization.descriptors.buildClassSerialDescriptor
@@ -14,15 +15,32 @@ abstract class AbsAdapter<T>(name: String) : KSerializer<T> {
 
     override fun deserialize(decoder: Decoder): T {
         require(decoder is JsonDecoder)
+        if (decoder is StreamingJsonDecoder) {
+            return deserialize(JsonTokenReader(decoder.json, decoder.lexer))
+        }
         return deserialize(decoder.decodeJsonElement())
     }
 
     abstract fun deserialize(json: JsonElement): T
 
+    /**
+     * Streaming decode, adapters of large lists override it to skip the element tree.
+     */
+    open fun deserialize(reader: JsonTokenReader): T {
+        return deserialize(reader.readElement())
+    }
+
     override fun serialize(encoder: Encoder, value: T) {
-        throw UnsupportedOperationException()
+        require(encoder is JsonEncoder)
+        encoder.encodeJsonElement(serialize(value))
     }
 
+    /**
+     * Writes the fields [deserialize] reads in the server format, listings stored on the
+     * device are read back by the same adapter.
+     */
+    abstract fun serialize(value: T): JsonElement
+
     companion object {
         fun checkObject(element: JsonElement?): Boolean {
             contract {
@@ -2,6 +2,9 @@ package dev.ragnarok.filegallery.api.adapters
 
 import dev.ragnarok.filegallery.model.Audio
 import dev.ragnarok.filegallery.util.serializeble.json.JsonElement
+import dev.ragnarok.filegallery.util.serializeble.json.buildJsonObject
+import dev.ragnarok.filegallery.util.serializeble.json.put
+import dev.ragnarok.filegallery.util.serializeble.json.putJsonObject
 
 class AudioDtoAdapter : AbsAdapter<Audio>("Audio") {
     @Throws(Exception::class)
@@ -32,6 +35,72 @@ class AudioDtoAdapter : AbsAdapter<Audio>("Audio") {
         return dto
     }
 
+    @Throws(Exception::class)
+    override fun deserialize(reader: JsonTokenReader): Audio {
+        if (!reader.isObject()) {
+            throw Exception("$TAG error parse object")
+        }
+        val dto = Audio()
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "id" -> dto.setId(reader.nextInt())
+                "owner_id" -> dto.setOwnerId(reader.nextInt())
+                "artist" -> dto.setArtist(reader.nextString())
+                "title" -> dto.setTitle(reader.nextString())
+                "duration" -> dto.setDuration(reader.nextInt())
+                "url" -> dto.setUrl(reader.nextString())
+                "album" -> readAlbum(reader, dto)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        dto.updateDownloadIndicator()
+        return dto
+    }
+
+    private fun readAlbum(reader: JsonTokenReader, dto: Audio) {
+        if (!reader.isObject()) {
+            reader.skipValue()
+            return
+        }
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.nextName() != "thumb" || !reader.isObject()) {
+                reader.skipValue()
+                continue
+            }
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == "photo_600") {
+                    dto.setThumb_image(reader.nextString())
+                } else {
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+        reader.endObject()
+    }
+
+    override fun serialize(value: Audio): JsonElement {
+        return buildJsonObject {
+            put("id", value.id)
+            put("owner_id", value.ownerId)
+            value.artist?.let { put("artist", it) }
+            value.title?.let { put("title", it) }
+            put("duration", value.duration)
+            value.url?.let { put("url", it) }
+            value.thumb_image?.let {
+                putJsonObject("album") {
+                    putJsonObject("thumb") {
+                        put("photo_600", it)
+                    }
+                }
+            }
+        }
+    }
+
     companion object {
         private val TAG = AudioDtoAdapter::class.java.simpleName
     }
@@ -0,0 +1,100 @@
+package dev.ragnarok.filegallery.api.adapters
+
+import dev.ragnarok.filegallery.util.serializeble.json.Json
+import dev.ragnarok.filegallery.util.serializeble.json.JsonElement
+import dev.ragnarok.filegallery.util.serializeble.json.internal.JsonTreeReader
+import dev.ragnarok.filegallery.util.serializeble.json.internal.lexer.*
+
+/**
+ * Pull reader over the lexer of a streaming decode, adapters read their fields
+ * straight from the tokens instead of building a [JsonElement] tree first.
+ * Values are read as leniently as the opt* helpers of [AbsAdapter]:
+ * null, a nested value or a malformed number gives the fallback.
+ */
+class JsonTokenReader internal constructor(
+    private val json: Json,
+    private val lexer: AbstractJsonLexer
+) {
+    fun isObject(): Boolean {
+        return lexer.peekNextToken() == TC_BEGIN_OBJ
+    }
+
+    fun isArray(): Boolean {
+        return lexer.peekNextToken() == TC_BEGIN_LIST
+    }
+
+    fun beginObject() {
+        lexer.consumeNextToken(TC_BEGIN_OBJ)
+    }
+
+    fun endObject() {
+        lexer.consumeNextToken(TC_END_OBJ)
+    }
+
+    fun beginArray() {
+        lexer.consumeNextToken(TC_BEGIN_LIST)
+    }
+
+    fun endArray() {
+        lexer.consumeNextToken(TC_END_LIST)
+    }
+
+    /**
+     * @return false at the end of the current object or array
+     */
+    fun hasNext(): Boolean {
+        var token = lexer.peekNextToken()
+        if (token == TC_COMMA) {
+            lexer.consumeNextToken()
+            token = lexer.peekNextToken()
+        }
+        return token != TC_END_OBJ && token != TC_END_LIST && token != TC_EOF
+    }
+
+    fun nextName(): String {
+        val name = if (json.configuration.isLenient) {
+            lexer.consumeStringLenientNotNull()
+        } else {
+            lexer.consumeKeyString()
+        }
+        lexer.consumeNextToken(TC_COLON)
+        return name
+    }
+
+    fun nextString(fallback: String? = null): String? {
+        if (!lexer.tryConsumeNotNull()) {
+            return fallback
+        }
+        val token = lexer.peekNextToken()
+        if (token == TC_BEGIN_OBJ || token == TC_BEGIN_LIST) {
+            skipValue()
+            return fallback
+        }
+        return lexer.consumeStringLenient()
+    }
+
+    fun nextInt(fallback: Int = 0): Int {
+        return nextString()?.toIntOrNull() ?: fallback
+    }
+
+    fun nextLong(fallback: Long = 0L): Long {
+        return nextString()?.toLongOrNull() ?: fallback
+    }
+
+    fun nextBoolean(): Boolean {
+        val value = nextString() ?: return false
+        return when {
+            value.equals("true", true) -> true
+            value.equals("false", true) -> false
+            else -> value.toIntOrNull() == 1
+        }
+    }
+
+    fun skipValue() {
+        lexer.skipElement(json.configuration.isLenient)
+    }
+
+    fun readElement(): JsonElement {
+        return JsonTreeReader(json.configuration, lexer).read()
+    }
+}
@@ -3,6 +3,10 @@ package dev.ragnarok.filegallery.api.adapters
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.orZero
 import dev.ragnarok.filegallery.util.serializeble.json.JsonElement
+import dev.ragnarok.filegallery.util.serializeble.json.addJsonObject
+import dev.ragnarok.filegallery.util.serializeble.json.buildJsonObject
+import dev.ragnarok.filegallery.util.serializeble.json.put
+import dev.ragnarok.filegallery.util.serializeble.json.putJsonArray
 
 class PhotoDtoAdapter : AbsAdapter<Photo>("Photo") {
     @Throws(Exception::class)
@@ -35,6 +39,81 @@ class PhotoDtoAdapter : AbsAdapter<Photo>("Photo") {
         return photo
     }
 
+    @Throws(Exception::class)
+    override fun deserialize(reader: JsonTokenReader): Photo {
+        if (!reader.isObject()) {
+            throw Exception("$TAG error parse object")
+        }
+        val photo = Photo()
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "id" -> photo.setId(reader.nextInt())
+                "date" -> photo.setDate(reader.nextLong())
+                "owner_id" -> photo.setOwnerId(reader.nextInt())
+                "text" -> photo.setText(reader.nextString())
+                "sizes" -> readSizes(reader, photo)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return photo
+    }
+
+    private fun readSizes(reader: JsonTokenReader, photo: Photo) {
+        if (!reader.isArray()) {
+            reader.skipValue()
+            return
+        }
+        reader.beginArray()
+        while (reader.hasNext()) {
+            if (!reader.isObject()) {
+                reader.skipValue()
+                continue
+            }
+            var type: String? = null
+            var url: String? = null
+            reader.beginObject()
+            while (reader.hasNext()) {
+                when (reader.nextName()) {
+                    "type" -> type = reader.nextString()
+                    "url" -> url = reader.nextString()
+                    else -> reader.skipValue()
+                }
+            }
+            reader.endObject()
+            if (type == "w") {
+                photo.setPhoto_url(url)
+            } else if (type == "s") {
+                photo.setPreview_url(url)
+            }
+        }
+        reader.endArray()
+    }
+
+    override fun serialize(value: Photo): JsonElement {
+        return buildJsonObject {
+            put("id", value.id)
+            put("date", value.date)
+            put("owner_id", value.ownerId)
+            value.text?.let { put("text", it) }
+            putJsonArray("sizes") {
+                value.preview_url?.let {
+                    addJsonObject {
+                        put("type", "s")
+                        put("url", it)
+                    }
+                }
+                value.photo_url?.let {
+                    addJsonObject {
+                        put("type", "w")
+                        put("url", it)
+                    }
+                }
+            }
+        }
+    }
+
     companion object {
         private val TAG = PhotoDtoAdapter::class.java.simpleName
     }
@@ -2,7 +2,12 @@ package dev.ragnarok.filegallery.api.adapters
 
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.util.serializeble.json.JsonElement
+import dev.ragnarok.filegallery.util.serializeble.json.addJsonObject
+import dev.ragnarok.filegallery.util.serializeble.json.buildJsonObject
 import dev.ragnarok.filegallery.util.serializeble.json.jsonPrimitive
+import dev.ragnarok.filegallery.util.serializeble.json.put
+import dev.ragnarok.filegallery.util.serializeble.json.putJsonArray
+import dev.ragnarok.filegallery.util.serializeble.json.putJsonObject
 
 class VideoDtoAdapter : AbsAdapter<Video>("Video") {
     @Throws(Exception::class)
@@ -32,6 +37,102 @@ class VideoDtoAdapter : AbsAdapter<Video>("Video") {
         return dto
     }
 
+    @Throws(Exception::class)
+    override fun deserialize(reader: JsonTokenReader): Video {
+        if (!reader.isObject()) {
+            throw Exception("$TAG error parse object")
+        }
+        val dto = Video()
+        reader.beginObject()
+        while (reader.hasNext()) {
+            when (reader.nextName()) {
+                "id" -> dto.setId(reader.nextInt())
+                "owner_id" -> dto.setOwnerId(reader.nextInt())
+                "title" -> dto.setTitle(reader.nextString())
+                "description" -> dto.setDescription(reader.nextString())
+                "duration" -> dto.setDuration(reader.nextInt())
+                "date" -> dto.setDate(reader.nextLong())
+                "repeat" -> dto.setRepeat(reader.nextBoolean())
+                "files" -> readFiles(reader, dto)
+                "image" -> readImages(reader, dto)
+                else -> reader.skipValue()
+            }
+        }
+        reader.endObject()
+        return dto
+    }
+
+    private fun readFiles(reader: JsonTokenReader, dto: Video) {
+        if (!reader.isObject()) {
+            reader.skipValue()
+            return
+        }
+        reader.beginObject()
+        while (reader.hasNext()) {
+            if (reader.nextName() == "mp4_720") {
+                dto.setLink(reader.nextString())
+            } else {
+                reader.skipValue()
+            }
+        }
+        reader.endObject()
+    }
+
+    private fun readImages(reader: JsonTokenReader, dto: Video) {
+        if (!reader.isArray()) {
+            reader.skipValue()
+            return
+        }
+        var image: String? = null
+        var found = false
+        reader.beginArray()
+        while (reader.hasNext()) {
+            found = true
+            image = null
+            if (!reader.isObject()) {
+                reader.skipValue()
+                continue
+            }
+            reader.beginObject()
+            while (reader.hasNext()) {
+                if (reader.nextName() == "url") {
+                    image = reader.nextString()
+                } else {
+                    reader.skipValue()
+                }
+            }
+            reader.endObject()
+        }
+        reader.endArray()
+        if (found) {
+            dto.setImage(image)
+        }
+    }
+
+    override fun serialize(value: Video): JsonElement {
+        return buildJsonObject {
+            put("id", value.id)
+            put("owner_id", value.ownerId)
+            value.title?.let { put("title", it) }
+            value.description?.let { put("description", it) }
+            put("duration", value.duration)
+            put("date", value.date)
+            put("repeat", value.isRepeat)
+            value.link?.let {
+                putJsonObject("files") {
+                    put("mp4_720", it)
+                }
+            }
+            value.image?.let {
+                putJsonArray("image") {
+                    addJsonObject {
+                        put("url", it)
+                    }
+                }
+            }
+        }
+    }
+
     companion object {
         private val TAG = VideoDtoAdapter::class.java.simpleName
     }
@@ -12,13 +12,18 @@ import dev.ragnarok.filegallery.model.FileRemote
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.nonNullNoEmpty
+import dev.ragnarok.filegallery.util.ProgressReporter
 import dev.ragnarok.filegallery.util.Utils.firstNonEmptyString
+import io.reactivex.rxjava3.core.Emitter
+import io.reactivex.rxjava3.core.Flowable
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.exceptions.Exceptions
+import io.reactivex.rxjava3.functions.BiFunction
 import io.reactivex.rxjava3.functions.Function
 import okhttp3.MediaType.Companion.toMediaTypeOrNull
 import okhttp3.MultipartBody
 import java.io.InputStream
+import java.util.concurrent.Callable
 
 internal class LocalServerApi(private val service: ILocalServerServiceProvider) : ILocalServerApi {
     override fun getVideos(offset: Int?, count: Int?, reverse: Boolean): Single<List<Video>> {
@@ -57,6 +62,38 @@ internal class LocalServerApi(private val service: ILocalServerServiceProvider)
             }
     }
 
+    override fun getVideoPages(
+        offset: Int,
+        pageSize: Int,
+        reverse: Boolean
+    ): Flowable<List<Video>> {
+        return pages(offset, pageSize) { getVideos(it, pageSize, reverse) }
+    }
+
+    override fun getAudioPages(
+        offset: Int,
+        pageSize: Int,
+        reverse: Boolean
+    ): Flowable<List<Audio>> {
+        return pages(offset, pageSize) { getAudios(it, pageSize, reverse) }
+    }
+
+    override fun getDiscographyPages(
+        offset: Int,
+        pageSize: Int,
+        reverse: Boolean
+    ): Flowable<List<Audio>> {
+        return pages(offset, pageSize) { getDiscography(it, pageSize, reverse) }
+    }
+
+    override fun getPhotoPages(
+        offset: Int,
+        pageSize: Int,
+        reverse: Boolean
+    ): Flowable<List<Photo>> {
+        return pages(offset, pageSize) { getPhotos(it, pageSize, reverse) }
+    }
+
     override fun searchVideos(
         query: String?,
         offset: Int?,
@@ -158,10 +195,41 @@ internal class LocalServerApi(private val service: ILocalServerServiceProvider)
     }
 
     companion object {
-        private fun wrapPercentageListener(listener: PercentagePublisher?): ProgressRequestBody.UploadCallbacks {
-            return object : ProgressRequestBody.UploadCallbacks {
-                override fun onProgressUpdate(percentage: Int) {
-                    listener?.onProgressChanged(percentage)
+        private const val MAX_PAGES_IN_FLIGHT = 2
+
+        /**
+         * Offsets are generated lazily, up to [MAX_PAGES_IN_FLIGHT] pages are requested at once
+         * and emitted in order, the page after the one being consumed is already on its way.
+         */
+        private fun <T : Any> pages(
+            start: Int,
+            pageSize: Int,
+            page: (Int) -> Single<out List<T>>
+        ): Flowable<List<T>> {
+            return Flowable.generate(
+                Callable { start },
+                BiFunction { offset: Int, emitter: Emitter<Int> ->
+                    emitter.onNext(offset)
+                    offset + pageSize
+                })
+                .concatMapEager(
+                    { offset: Int -> page(offset).toFlowable() },
+                    MAX_PAGES_IN_FLIGHT,
+                    1
+                )
+                .takeUntil { it.size < pageSize }
+        }
+
+        private fun wrapPercentageListener(listener: PercentagePublisher?): ProgressReporter.Listener {
+            return object : ProgressReporter.Listener {
+                override fun onProgress(
+                    percentage: Int,
+                    transferred: Long,
+                    total: Long,
+                    bytesPerSecond: Long,
+                    etaSeconds: Long
+                ) {
+                    listener?.onProgressChanged(percentage.coerceAtLeast(0))
                 }
             }
         }
@@ -7,6 +7,7 @@ import dev.ragnarok.filegallery.model.Audio
 import dev.ragnarok.filegallery.model.FileRemote
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.model.Video
+import io.reactivex.rxjava3.core.Flowable
 import io.reactivex.rxjava3.core.Single
 import java.io.InputStream
 
@@ -23,6 +24,22 @@ interface ILocalServerApi {
     @CheckResult
     fun getPhotos(offset: Int?, count: Int?, reverse: Boolean): Single<MutableList<Photo>>
 
+    /**
+     * Pages of [pageSize] items in order from [offset], fetched on demand. The next page is loaded
+     * while the current one is consumed, the stream completes after the first short page.
+     */
+    @CheckResult
+    fun getVideoPages(offset: Int, pageSize: Int, reverse: Boolean): Flowable<List<Video>>
+
+    @CheckResult
+    fun getAudioPages(offset: Int, pageSize: Int, reverse: Boolean): Flowable<List<Audio>>
+
+    @CheckResult
+    fun getDiscographyPages(offset: Int, pageSize: Int, reverse: Boolean): Flowable<List<Audio>>
+
+    @CheckResult
+    fun getPhotoPages(offset: Int, pageSize: Int, reverse: Boolean): Flowable<List<Photo>>
+
     @CheckResult
     fun searchVideos(
         query: String?,
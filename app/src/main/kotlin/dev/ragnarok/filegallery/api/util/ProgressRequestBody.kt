@@ -1,5 +1,6 @@
 package dev.ragnarok.filegallery.api.util
 
+import dev.ragnarok.filegallery.util.ProgressReporter
 import okhttp3.MediaType
 import okhttp3.RequestBody
 import okio.BufferedSink
@@ -8,7 +9,7 @@ import java.io.InputStream
 
 class ProgressRequestBody(
     private val stream: InputStream,
-    private val listener: UploadCallbacks?,
+    private val listener: ProgressReporter.Listener?,
     private val mediaType: MediaType?
 ) : RequestBody() {
     override fun contentType(): MediaType {
@@ -24,14 +25,16 @@ class ProgressRequestBody(
     override fun writeTo(sink: BufferedSink) {
         val fileLength = stream.available().toLong()
         val buffer = ByteArray(DEFAULT_BUFFER_SIZE)
+        val reporter = listener?.let { ProgressReporter(it) }
         var uploaded: Long = 0
         try {
             var read: Int
             while (stream.read(buffer).also { read = it } != -1) {
-                listener?.onProgressUpdate((100 * uploaded / fileLength).toInt())
-                uploaded += read.toLong()
                 sink.write(buffer, 0, read)
+                uploaded += read.toLong()
+                reporter?.update(uploaded, fileLength)
             }
+            reporter?.finish(uploaded, fileLength)
         } catch (e: Exception) {
             if (e is IOException) {
                 throw e
@@ -43,11 +46,7 @@ class ProgressRequestBody(
         }
     }
 
-    interface UploadCallbacks {
-        fun onProgressUpdate(percentage: Int)
-    }
-
     companion object {
-        private const val DEFAULT_BUFFER_SIZE = 2048
+        private const val DEFAULT_BUFFER_SIZE = 64 * 1024
     }
 }
\ No newline at end of file
@@ -0,0 +1,76 @@
+package dev.ragnarok.filegallery.db
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteOpenHelper
+import android.provider.BaseColumns
+import dev.ragnarok.filegallery.db.column.FileIndexColumns
+import dev.ragnarok.filegallery.db.column.FileIndexDirsColumns
+import dev.ragnarok.filegallery.db.column.FileIndexTrigramsColumns
+
+class FileIndexHelper(context: Context) :
+    SQLiteOpenHelper(context, "file_index.sqlite", null, 2) {
+    override fun onCreate(db: SQLiteDatabase) {
+        createFileIndexTable(db)
+        createFileIndexTrigramsTable(db)
+        createFileIndexDirsTable(db)
+    }
+
+    private fun createFileIndexTable(db: SQLiteDatabase) {
+        val sql = "CREATE TABLE IF NOT EXISTS [" + FileIndexColumns.TABLENAME + "] (\n" +
+                "  [" + BaseColumns._ID + "] INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                "  [" + FileIndexColumns.TYPE + "] INTEGER, " +
+                "  [" + FileIndexColumns.IS_DIR + "] INTEGER, " +
+                "  [" + FileIndexColumns.FILE_NAME + "] TEXT, " +
+                "  [" + FileIndexColumns.NAME_LOWER + "] TEXT, " +
+                "  [" + FileIndexColumns.FILE_PATH + "] TEXT, " +
+                "  [" + FileIndexColumns.PARENT_NAME + "] TEXT, " +
+                "  [" + FileIndexColumns.PARENT_PATH + "] TEXT, " +
+                "  [" + FileIndexColumns.MODIFICATIONS + "] BIGINT, " +
+                "  [" + FileIndexColumns.SIZE + "] BIGINT, " +
+                "  [" + FileIndexColumns.CAN_READ + "] INTEGER);"
+        db.execSQL(sql)
+        db.execSQL(
+            "CREATE UNIQUE INDEX IF NOT EXISTS [" + FileIndexColumns.TABLENAME + "_path_idx] ON [" +
+                    FileIndexColumns.TABLENAME + "] ([" + FileIndexColumns.FILE_PATH + "]);"
+        )
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS [" + FileIndexColumns.TABLENAME + "_parent_idx] ON [" +
+                    FileIndexColumns.TABLENAME + "] ([" + FileIndexColumns.PARENT_PATH + "]);"
+        )
+    }
+
+    private fun createFileIndexTrigramsTable(db: SQLiteDatabase) {
+        val sql = "CREATE TABLE IF NOT EXISTS [" + FileIndexTrigramsColumns.TABLENAME + "] (\n" +
+                "  [" + FileIndexTrigramsColumns.TRIGRAM + "] INTEGER NOT NULL, " +
+                "  [" + FileIndexTrigramsColumns.FILE_ID + "] INTEGER NOT NULL, " +
+                "  PRIMARY KEY ([" + FileIndexTrigramsColumns.TRIGRAM + "], [" + FileIndexTrigramsColumns.FILE_ID + "])) WITHOUT ROWID;"
+        db.execSQL(sql)
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS [" + FileIndexTrigramsColumns.TABLENAME + "_file_idx] ON [" +
+                    FileIndexTrigramsColumns.TABLENAME + "] ([" + FileIndexTrigramsColumns.FILE_ID + "]);"
+        )
+    }
+
+    private fun createFileIndexDirsTable(db: SQLiteDatabase) {
+        val sql = "CREATE TABLE IF NOT EXISTS [" + FileIndexDirsColumns.TABLENAME + "] (\n" +
+                "  [" + FileIndexDirsColumns.PATH + "] TEXT PRIMARY KEY, " +
+                "  [" + FileIndexDirsColumns.PARENT_PATH + "] TEXT, " +
+                "  [" + FileIndexDirsColumns.MODIFICATIONS + "] BIGINT);"
+        db.execSQL(sql)
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS [" + FileIndexDirsColumns.TABLENAME + "_parent_idx] ON [" +
+                    FileIndexDirsColumns.TABLENAME + "] ([" + FileIndexDirsColumns.PARENT_PATH + "]);"
+        )
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < 2) {
+            // the index is rebuilt from disk on the next update
+            db.execSQL("DROP TABLE IF EXISTS [" + FileIndexTrigramsColumns.TABLENAME + "]")
+            db.execSQL("DROP TABLE IF EXISTS [" + FileIndexColumns.TABLENAME + "]")
+            db.execSQL("DROP TABLE IF EXISTS [" + FileIndexDirsColumns.TABLENAME + "]")
+            onCreate(db)
+        }
+    }
+}
@@ -5,17 +5,22 @@ import android.database.sqlite.SQLiteDatabase
 import android.database.sqlite.SQLiteOpenHelper
 import android.provider.BaseColumns
 import dev.ragnarok.filegallery.db.column.FilesColumns
+import dev.ragnarok.filegallery.db.column.RemoteListingColumns
+import dev.ragnarok.filegallery.db.column.RemoteScrollColumns
 import dev.ragnarok.filegallery.db.column.SearchRequestColumns
 import dev.ragnarok.filegallery.db.column.TagDirsColumns
 import dev.ragnarok.filegallery.db.column.TagOwnerColumns
 
 class SearchRequestHelper(context: Context) :
-    SQLiteOpenHelper(context, "search_queries.sqlite", null, 1) {
+    SQLiteOpenHelper(context, "search_queries.sqlite", null, 4) {
     override fun onCreate(db: SQLiteDatabase) {
         createSearchRequestTable(db)
         createTagOwnersTable(db)
         createTagDirsTable(db)
         createFilesTable(db)
+        createFilesIndex(db)
+        createRemoteListingsTable(db)
+        createRemoteScrollTable(db)
     }
 
     private fun createSearchRequestTable(db: SQLiteDatabase) {
@@ -59,10 +64,48 @@ class SearchRequestHelper(context: Context) :
                 "  [" + FilesColumns.MODIFICATIONS + "] BIGINT, " +
                 "  [" + FilesColumns.SIZE + "] BIGINT, " +
                 "  [" + FilesColumns.CAN_READ + "] INTEGER, " +
+                "  [" + FilesColumns.FILE_NAME_HASH + "] INTEGER, " +
+                "  [" + FilesColumns.FILE_PATH_HASH + "] INTEGER, " +
                 "  CONSTRAINT [] UNIQUE ([" + BaseColumns._ID + "]) ON CONFLICT REPLACE);"
         db.execSQL(sql)
     }
 
+    private fun createFilesIndex(db: SQLiteDatabase) {
+        db.execSQL(
+            "CREATE INDEX IF NOT EXISTS [" + FilesColumns.TABLENAME + "_" + FilesColumns.PARENT_DIR + "_idx] ON [" +
+                    FilesColumns.TABLENAME + "] ([" + FilesColumns.PARENT_DIR + "]);"
+        )
+    }
+
+    private fun createRemoteListingsTable(db: SQLiteDatabase) {
+        val sql = "CREATE TABLE IF NOT EXISTS [" + RemoteListingColumns.TABLENAME + "] (\n" +
+                "  [" + RemoteListingColumns.LIST_KEY + "] TEXT PRIMARY KEY, " +
+                "  [" + RemoteListingColumns.CHECKSUM + "] BIGINT, " +
+                "  [" + RemoteListingColumns.UPDATED + "] BIGINT, " +
+                "  [" + RemoteListingColumns.DATA + "] TEXT);"
+        db.execSQL(sql)
+    }
+
+    private fun createRemoteScrollTable(db: SQLiteDatabase) {
+        val sql = "CREATE TABLE IF NOT EXISTS [" + RemoteScrollColumns.TABLENAME + "] (\n" +
+                "  [" + RemoteScrollColumns.LIST_KEY + "] TEXT PRIMARY KEY, " +
+                "  [" + RemoteScrollColumns.POSITION + "] INTEGER);"
+        db.execSQL(sql)
+    }
+
     override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {
+        if (oldVersion < 2) {
+            createFilesIndex(db)
+        }
+        if (oldVersion < 3) {
+            createRemoteListingsTable(db)
+            createRemoteScrollTable(db)
+        }
+        if (oldVersion < 4) {
+            db.execSQL("ALTER TABLE [" + FilesColumns.TABLENAME + "] ADD COLUMN [" + FilesColumns.FILE_NAME_HASH + "] INTEGER")
+            db.execSQL("ALTER TABLE [" + FilesColumns.TABLENAME + "] ADD COLUMN [" + FilesColumns.FILE_PATH_HASH + "] INTEGER")
+            // cached rows have no hashes, the folders are listed again on the next visit
+            db.delete(FilesColumns.TABLENAME, null, null)
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,8 @@
+package dev.ragnarok.filegallery.db.column
+
+object FileIndexDirsColumns {
+    const val TABLENAME = "file_index_dirs"
+    const val PATH = "path"
+    const val PARENT_PATH = "parent_path"
+    const val MODIFICATIONS = "modification"
+}
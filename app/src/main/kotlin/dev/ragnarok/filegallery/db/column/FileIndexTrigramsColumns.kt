@@ -0,0 +1,7 @@
+package dev.ragnarok.filegallery.db.column
+
+object FileIndexTrigramsColumns {
+    const val TABLENAME = "file_index_trigrams"
+    const val TRIGRAM = "trigram"
+    const val FILE_ID = "file_id"
+}
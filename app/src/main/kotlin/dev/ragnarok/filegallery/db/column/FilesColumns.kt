@@ -14,4 +14,6 @@ object FilesColumns : BaseColumns {
     const val MODIFICATIONS = "modification"
     const val SIZE = "size"
     const val CAN_READ = "can_read"
+    const val FILE_NAME_HASH = "file_name_hash"
+    const val FILE_PATH_HASH = "file_path_hash"
 }
\ No newline at end of file
@@ -0,0 +1,11 @@
+package dev.ragnarok.filegallery.db.column
+
+import android.provider.BaseColumns
+
+object RemoteListingColumns : BaseColumns {
+    const val TABLENAME = "remote_listings"
+    const val LIST_KEY = "list_key"
+    const val CHECKSUM = "checksum"
+    const val UPDATED = "updated"
+    const val DATA = "data"
+}
@@ -0,0 +1,9 @@
+package dev.ragnarok.filegallery.db.column
+
+import android.provider.BaseColumns
+
+object RemoteScrollColumns : BaseColumns {
+    const val TABLENAME = "remote_scroll_positions"
+    const val LIST_KEY = "list_key"
+    const val POSITION = "position"
+}
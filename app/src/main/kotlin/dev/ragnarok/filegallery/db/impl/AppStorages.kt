@@ -2,12 +2,24 @@ package dev.ragnarok.filegallery.db.impl
 
 import android.content.Context
 import android.content.ContextWrapper
+import dev.ragnarok.filegallery.db.interfaces.IFileIndexStorage
+import dev.ragnarok.filegallery.db.interfaces.IRemoteListingStorage
 import dev.ragnarok.filegallery.db.interfaces.ISearchRequestHelperStorage
 import dev.ragnarok.filegallery.db.interfaces.IStorages
 
 class AppStorages(base: Context) : ContextWrapper(base), IStorages {
     private val searchQueries = SearchRequestHelperStorage(this)
+    private val fileIndex = FileIndexStorage(this)
+    private val remoteListings = RemoteListingStorage(this)
     override fun searchQueriesStore(): ISearchRequestHelperStorage {
         return searchQueries
     }
-}
\ No newline at end of file
+
+    override fun fileIndexStore(): IFileIndexStorage {
+        return fileIndex
+    }
+
+    override fun remoteListingStore(): IRemoteListingStorage {
+        return remoteListings
+    }
+}
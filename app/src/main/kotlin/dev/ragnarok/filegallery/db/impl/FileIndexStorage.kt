@@ -0,0 +1,420 @@
+package dev.ragnarok.filegallery.db.impl
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
+import android.provider.BaseColumns
+import dev.ragnarok.filegallery.*
+import dev.ragnarok.filegallery.db.FileIndexHelper
+import dev.ragnarok.filegallery.db.column.FileIndexColumns
+import dev.ragnarok.filegallery.db.column.FileIndexDirsColumns
+import dev.ragnarok.filegallery.db.column.FileIndexTrigramsColumns
+import dev.ragnarok.filegallery.db.interfaces.IFileIndexStorage
+import dev.ragnarok.filegallery.model.FileItem
+import dev.ragnarok.filegallery.model.FileType
+import dev.ragnarok.filegallery.util.DirectoryScanner
+import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Single
+import java.io.File
+import java.util.*
+
+/**
+ * Recursive name index used by global search. Every indexed name is split into
+ * lowercase trigrams, a substring query intersects the posting lists of its own
+ * trigrams and only the survivors are checked with instr().
+ * Directories are re-read only when their mtime differs from the stored one.
+ * Empty directories have no index rows but keep their mtime, so files added to them
+ * later are found even though their parent did not change.
+ */
+class FileIndexStorage internal constructor(context: Context) : IFileIndexStorage {
+    private val app: Context = context.applicationContext
+    private val helper: FileIndexHelper by lazy {
+        FileIndexHelper(app)
+    }
+    private val updateLock = Any()
+
+    override fun isIndexed(root: String): Single<Boolean> {
+        return Single.fromCallable {
+            getStoredDirModification(helper.readableDatabase, root) != null
+        }
+    }
+
+    override fun updateIndex(root: String): Single<Int> {
+        return Single.fromCallable {
+            synchronized(updateLock) {
+                doUpdateIndex(root)
+            }
+        }
+    }
+
+    private fun doUpdateIndex(root: String): Int {
+        val db = helper.writableDatabase
+        var changed = 0
+        val pending = LinkedList<String>()
+        pending.push(root)
+        while (pending.isNotEmpty()) {
+            val dir = pending.pop()
+            val file = File(dir)
+            val modification = file.lastModified()
+            val stored = getStoredDirModification(db, dir)
+            if (modification == 0L || !file.isDirectory) {
+                if (stored != null) {
+                    db.beginTransaction()
+                    try {
+                        deleteSubtree(db, dir)
+                        db.setTransactionSuccessful()
+                    } finally {
+                        db.endTransaction()
+                    }
+                    changed++
+                }
+                continue
+            }
+            if (stored == modification) {
+                val children = HashSet<String>()
+                db.query(
+                    FileIndexColumns.TABLENAME,
+                    arrayOf(FileIndexColumns.FILE_PATH),
+                    FileIndexColumns.PARENT_PATH + " = ? AND " + FileIndexColumns.IS_DIR + " = 1",
+                    arrayOf(dir)
+                ).use {
+                    while (it.moveToNext()) {
+                        children.add(it.getString(0) ?: continue)
+                    }
+                }
+                db.query(
+                    FileIndexDirsColumns.TABLENAME,
+                    arrayOf(FileIndexDirsColumns.PATH),
+                    FileIndexDirsColumns.PARENT_PATH + " = ?",
+                    arrayOf(dir)
+                ).use {
+                    while (it.moveToNext()) {
+                        children.add(it.getString(0) ?: continue)
+                    }
+                }
+                for (i in children) {
+                    pending.push(i)
+                }
+                continue
+            }
+            val emptyDirs = ArrayList<String>()
+            val items = DirectoryScanner.scan(file, emptyDirs)
+            db.beginTransaction()
+            try {
+                syncDirectory(db, dir, items)
+                db.compileStatement(DIRS_UPSERT_SQL).use {
+                    it.bindString(1, dir)
+                    file.parent?.let { parent -> it.bindString(2, parent) } ?: it.bindNull(2)
+                    it.bindLong(3, modification)
+                    it.executeInsert()
+                    for (i in emptyDirs) {
+                        it.clearBindings()
+                        it.bindString(1, i)
+                        it.bindString(2, dir)
+                        it.bindLong(3, File(i).lastModified())
+                        it.executeInsert()
+                    }
+                }
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+            changed++
+            for (i in items) {
+                if (i.type == FileType.folder) {
+                    pending.push(i.file_path ?: continue)
+                }
+            }
+        }
+        return changed
+    }
+
+    private fun getStoredDirModification(db: SQLiteDatabase, dir: String): Long? {
+        db.query(
+            FileIndexDirsColumns.TABLENAME,
+            arrayOf(FileIndexDirsColumns.MODIFICATIONS),
+            FileIndexDirsColumns.PATH + " = ?",
+            arrayOf(dir)
+        ).use {
+            return if (it.moveToNext()) it.getLong(0) else null
+        }
+    }
+
+    private fun syncDirectory(db: SQLiteDatabase, dir: String, items: List<FileItem>) {
+        val existing = HashMap<String, IndexedRow>()
+        db.query(
+            FileIndexColumns.TABLENAME,
+            INDEX_SYNC_PROJECTION,
+            FileIndexColumns.PARENT_PATH + " = ?",
+            arrayOf(dir)
+        ).use {
+            while (it.moveToNext()) {
+                val path = it.getString(1) ?: continue
+                existing[path] =
+                    IndexedRow(it.getLong(0), it.getInt(2), it.getLong(3), it.getLong(4))
+            }
+        }
+        var insert: SQLiteStatement? = null
+        var insertTrigram: SQLiteStatement? = null
+        var update: SQLiteStatement? = null
+        try {
+            for (i in items) {
+                val path = i.file_path ?: continue
+                val name = i.file_name ?: continue
+                val row = existing.remove(path)
+                if (row == null) {
+                    val statement = insert ?: db.compileStatement(INDEX_INSERT_SQL)
+                        .also { insert = it }
+                    statement.clearBindings()
+                    statement.bindLong(1, i.type.toLong())
+                    statement.bindLong(2, if (i.type == FileType.folder) 1 else 0)
+                    statement.bindString(3, name)
+                    statement.bindString(4, foldName(name))
+                    statement.bindString(5, path)
+                    i.parent_name?.let { statement.bindString(6, it) } ?: statement.bindNull(6)
+                    statement.bindString(7, dir)
+                    statement.bindLong(8, i.modification)
+                    statement.bindLong(9, i.size)
+                    statement.bindLong(10, if (i.isCanRead) 1 else 0)
+                    val id = statement.executeInsert()
+                    val trigramStatement = insertTrigram ?: db.compileStatement(TRIGRAM_INSERT_SQL)
+                        .also { insertTrigram = it }
+                    for (gram in trigrams(foldName(name))) {
+                        trigramStatement.bindLong(1, gram)
+                        trigramStatement.bindLong(2, id)
+                        trigramStatement.executeInsert()
+                    }
+                } else if (row.type != i.type || row.modification != i.modification
+                    || row.size != i.size
+                ) {
+                    val statement = update ?: db.compileStatement(INDEX_UPDATE_SQL)
+                        .also { update = it }
+                    statement.bindLong(1, i.type.toLong())
+                    statement.bindLong(2, i.modification)
+                    statement.bindLong(3, i.size)
+                    statement.bindLong(4, row.id)
+                    statement.executeUpdateDelete()
+                    if (row.type == FileType.folder && i.type != FileType.folder) {
+                        deleteSubtree(db, path)
+                    }
+                }
+            }
+        } finally {
+            insert?.close()
+            insertTrigram?.close()
+            update?.close()
+        }
+        for ((path, row) in existing) {
+            deleteRow(db, row.id)
+            if (row.type == FileType.folder) {
+                deleteSubtree(db, path)
+            }
+        }
+    }
+
+    private fun deleteRow(db: SQLiteDatabase, id: Long) {
+        val args = arrayOf(id.toString())
+        db.delete(FileIndexTrigramsColumns.TABLENAME, FileIndexTrigramsColumns.FILE_ID + " = ?", args)
+        db.delete(FileIndexColumns.TABLENAME, BaseColumns._ID + " = ?", args)
+    }
+
+    private fun deleteSubtree(db: SQLiteDatabase, dir: String) {
+        val prefix = childPrefix(dir)
+        val where = "(" + FileIndexColumns.PARENT_PATH + " = ? OR (" +
+                FileIndexColumns.PARENT_PATH + " >= ? AND " + FileIndexColumns.PARENT_PATH + " < ?))"
+        val args = arrayOf(dir, prefix, prefixEnd(prefix))
+        db.delete(
+            FileIndexTrigramsColumns.TABLENAME,
+            FileIndexTrigramsColumns.FILE_ID + " IN (SELECT " + BaseColumns._ID + " FROM " +
+                    FileIndexColumns.TABLENAME + " WHERE " + where + ")",
+            args
+        )
+        db.delete(FileIndexColumns.TABLENAME, where, args)
+        db.delete(
+            FileIndexDirsColumns.TABLENAME,
+            FileIndexDirsColumns.PATH + " = ? OR (" + FileIndexDirsColumns.PATH + " >= ? AND " +
+                    FileIndexDirsColumns.PATH + " < ?)",
+            args
+        )
+    }
+
+    override fun search(
+        root: String,
+        query: String,
+        offset: Int,
+        count: Int
+    ): Single<List<FileItem>> {
+        return Single.fromCallable {
+            val folded = foldName(query)
+            val prefix = childPrefix(root)
+            val sql = StringBuilder("SELECT ")
+            for (i in INDEX_PROJECTION.indices) {
+                if (i > 0) {
+                    sql.append(", ")
+                }
+                sql.append(INDEX_PROJECTION[i])
+            }
+            sql.append(" FROM ").append(FileIndexColumns.TABLENAME)
+                .append(" WHERE (").append(FileIndexColumns.PARENT_PATH).append(" = ? OR (")
+                .append(FileIndexColumns.PARENT_PATH).append(" >= ? AND ")
+                .append(FileIndexColumns.PARENT_PATH).append(" < ?)) AND instr(")
+                .append(FileIndexColumns.NAME_LOWER).append(", ?) > 0")
+            val args = arrayListOf(root, prefix, prefixEnd(prefix), folded)
+            val grams = trigrams(folded)
+            if (grams.isNotEmpty()) {
+                sql.append(" AND ").append(BaseColumns._ID).append(" IN (")
+                var first = true
+                for (gram in grams) {
+                    if (!first) {
+                        sql.append(" INTERSECT ")
+                    }
+                    first = false
+                    sql.append("SELECT ").append(FileIndexTrigramsColumns.FILE_ID)
+                        .append(" FROM ").append(FileIndexTrigramsColumns.TABLENAME)
+                        .append(" WHERE ").append(FileIndexTrigramsColumns.TRIGRAM).append(" = ?")
+                    args.add(gram.toString())
+                }
+                sql.append(")")
+            }
+            sql.append(" ORDER BY ").append(FileIndexColumns.IS_DIR).append(" DESC, ")
+                .append(FileIndexColumns.MODIFICATIONS).append(" DESC LIMIT ")
+                .append(count).append(" OFFSET ").append(offset)
+            val cursor = helper.readableDatabase.rawQuery(sql.toString(), args.toTypedArray())
+            val data: MutableList<FileItem> = ArrayList(cursor.count)
+            cursor.use {
+                while (it.moveToNext()) {
+                    data.add(
+                        FileItem(
+                            it.getInt(FileIndexColumns.TYPE),
+                            it.getString(FileIndexColumns.FILE_NAME),
+                            it.getString(FileIndexColumns.FILE_PATH),
+                            it.getString(FileIndexColumns.PARENT_NAME),
+                            it.getString(FileIndexColumns.PARENT_PATH),
+                            it.getLong(FileIndexColumns.MODIFICATIONS),
+                            it.getLong(FileIndexColumns.SIZE),
+                            it.getBoolean(FileIndexColumns.CAN_READ)
+                        ).checkTag()
+                    )
+                }
+            }
+            data
+        }
+    }
+
+    /**
+     * Newest photo, video or audio child of [dir], only when the index of [dir]
+     * is up to date with its [modification].
+     */
+    override fun findNewestMedia(dir: String, modification: Long): Maybe<String> {
+        return Maybe.fromCallable {
+            val db = helper.readableDatabase
+            if (getStoredDirModification(db, dir) != modification) {
+                return@fromCallable null
+            }
+            db.query(
+                FileIndexColumns.TABLENAME,
+                arrayOf(FileIndexColumns.FILE_PATH),
+                FileIndexColumns.PARENT_PATH + " = ? AND " + FileIndexColumns.TYPE + " IN (" +
+                        FileType.photo + ", " + FileType.video + ", " + FileType.audio + ")",
+                arrayOf(dir),
+                null,
+                null,
+                FileIndexColumns.MODIFICATIONS + " DESC",
+                "1"
+            ).use {
+                if (it.moveToNext()) it.getString(0) else null
+            }
+        }
+    }
+
+    override fun clearIndex() {
+        synchronized(updateLock) {
+            val db = helper.writableDatabase
+            db.delete(FileIndexTrigramsColumns.TABLENAME, null, null)
+            db.delete(FileIndexColumns.TABLENAME, null, null)
+            db.delete(FileIndexDirsColumns.TABLENAME, null, null)
+        }
+    }
+
+    private class IndexedRow(
+        val id: Long,
+        val type: Int,
+        val modification: Long,
+        val size: Long
+    )
+
+    companion object {
+        private val INDEX_SYNC_PROJECTION = arrayOf(
+            BaseColumns._ID,
+            FileIndexColumns.FILE_PATH,
+            FileIndexColumns.TYPE,
+            FileIndexColumns.MODIFICATIONS,
+            FileIndexColumns.SIZE
+        )
+        private val INDEX_PROJECTION = arrayOf(
+            BaseColumns._ID,
+            FileIndexColumns.TYPE,
+            FileIndexColumns.FILE_NAME,
+            FileIndexColumns.FILE_PATH,
+            FileIndexColumns.PARENT_NAME,
+            FileIndexColumns.PARENT_PATH,
+            FileIndexColumns.MODIFICATIONS,
+            FileIndexColumns.SIZE,
+            FileIndexColumns.CAN_READ
+        )
+        private val INDEX_INSERT_SQL = "INSERT INTO " + FileIndexColumns.TABLENAME + " (" +
+                FileIndexColumns.TYPE + ", " +
+                FileIndexColumns.IS_DIR + ", " +
+                FileIndexColumns.FILE_NAME + ", " +
+                FileIndexColumns.NAME_LOWER + ", " +
+                FileIndexColumns.FILE_PATH + ", " +
+                FileIndexColumns.PARENT_NAME + ", " +
+                FileIndexColumns.PARENT_PATH + ", " +
+                FileIndexColumns.MODIFICATIONS + ", " +
+                FileIndexColumns.SIZE + ", " +
+                FileIndexColumns.CAN_READ + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        private val INDEX_UPDATE_SQL = "UPDATE " + FileIndexColumns.TABLENAME + " SET " +
+                FileIndexColumns.TYPE + " = ?, " +
+                FileIndexColumns.MODIFICATIONS + " = ?, " +
+                FileIndexColumns.SIZE + " = ? WHERE " + BaseColumns._ID + " = ?"
+        private val DIRS_UPSERT_SQL =
+            "INSERT OR REPLACE INTO " + FileIndexDirsColumns.TABLENAME + " (" +
+                    FileIndexDirsColumns.PATH + ", " +
+                    FileIndexDirsColumns.PARENT_PATH + ", " +
+                    FileIndexDirsColumns.MODIFICATIONS + ") VALUES (?, ?, ?)"
+        private val TRIGRAM_INSERT_SQL =
+            "INSERT OR IGNORE INTO " + FileIndexTrigramsColumns.TABLENAME + " (" +
+                    FileIndexTrigramsColumns.TRIGRAM + ", " +
+                    FileIndexTrigramsColumns.FILE_ID + ") VALUES (?, ?)"
+
+        private fun foldName(name: String): String {
+            return name.lowercase(Locale.ROOT)
+        }
+
+        private fun childPrefix(dir: String): String {
+            return if (dir.endsWith(File.separatorChar)) dir else dir + File.separator
+        }
+
+        /**
+         * Exclusive upper bound of the paths starting with [prefix], so subtree queries
+         * are index range scans.
+         */
+        private fun prefixEnd(prefix: String): String {
+            return prefix.substring(0, prefix.length - 1) + (prefix[prefix.length - 1] + 1)
+        }
+
+        private fun trigrams(folded: String): Set<Long> {
+            if (folded.length < 3) {
+                return emptySet()
+            }
+            val ret = LinkedHashSet<Long>(folded.length)
+            for (i in 0..folded.length - 3) {
+                ret.add(
+                    (folded[i].code.toLong() shl 32) or (folded[i + 1].code.toLong() shl 16) or
+                            folded[i + 2].code.toLong()
+                )
+            }
+            return ret
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package dev.ragnarok.filegallery.db.impl
+
+import android.content.ContentValues
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.util.Log
+import dev.ragnarok.filegallery.db.SearchRequestHelper
+import dev.ragnarok.filegallery.db.column.RemoteListingColumns
+import dev.ragnarok.filegallery.db.column.RemoteScrollColumns
+import dev.ragnarok.filegallery.db.interfaces.IRemoteListingStorage
+import dev.ragnarok.filegallery.kJson
+import dev.ragnarok.filegallery.settings.Settings
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Single
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.builtins.ListSerializer
+import java.util.zip.CRC32
+
+/**
+ * Last known listings of the local media server (fs.get folders and first media pages),
+ * stored as json of the server adapters keyed by server url and listing key. A listing is
+ * rewritten only when its checksum changes, so revalidating an unchanged folder costs one lookup.
+ * The last scroll position of a listing is kept next to it while the listing is stored.
+ */
+class RemoteListingStorage internal constructor(context: Context) : IRemoteListingStorage {
+    private val app: Context = context.applicationContext
+    private val helper: SearchRequestHelper by lazy {
+        SearchRequestHelper(app)
+    }
+
+    override fun <T> get(key: String, serializer: KSerializer<T>): Maybe<List<T>> {
+        return Maybe.fromCallable {
+            val scopedKey = scoped(key)
+            val data = helper.readableDatabase.query(
+                RemoteListingColumns.TABLENAME,
+                DATA_PROJECTION,
+                RemoteListingColumns.LIST_KEY + " = ?",
+                arrayOf(scopedKey),
+                null,
+                null,
+                null
+            ).use {
+                if (it.moveToNext()) it.getString(0) else null
+            } ?: return@fromCallable null
+            try {
+                kJson.decodeFromString(ListSerializer(serializer), data)
+            } catch (e: Exception) {
+                // written by an older adapter, the listing is fetched again
+                Log.w(TAG, "Dropping unreadable listing $key", e)
+                helper.writableDatabase.delete(
+                    RemoteListingColumns.TABLENAME,
+                    RemoteListingColumns.LIST_KEY + " = ?",
+                    arrayOf(scopedKey)
+                )
+                null
+            }
+        }
+    }
+
+    override fun <T> put(key: String, serializer: KSerializer<T>, items: List<T>): Single<Boolean> {
+        return Single.fromCallable {
+            val data = kJson.encodeToString(ListSerializer(serializer), items)
+            val checksum = CRC32().let {
+                it.update(data.toByteArray())
+                it.value
+            }
+            val db = helper.writableDatabase
+            val scopedKey = scoped(key)
+            val stored = db.query(
+                RemoteListingColumns.TABLENAME,
+                CHECKSUM_PROJECTION,
+                RemoteListingColumns.LIST_KEY + " = ?",
+                arrayOf(scopedKey),
+                null,
+                null,
+                null
+            ).use {
+                if (it.moveToNext()) it.getLong(0) else null
+            }
+            if (stored == checksum) {
+                // trimming keeps the listings used last, not the ones changed last
+                val touch = ContentValues()
+                touch.put(RemoteListingColumns.UPDATED, System.currentTimeMillis())
+                db.update(
+                    RemoteListingColumns.TABLENAME,
+                    touch,
+                    RemoteListingColumns.LIST_KEY + " = ?",
+                    arrayOf(scopedKey)
+                )
+                return@fromCallable false
+            }
+            val cv = ContentValues()
+            cv.put(RemoteListingColumns.LIST_KEY, scopedKey)
+            cv.put(RemoteListingColumns.CHECKSUM, checksum)
+            cv.put(RemoteListingColumns.UPDATED, System.currentTimeMillis())
+            cv.put(RemoteListingColumns.DATA, data)
+            db.beginTransaction()
+            try {
+                db.insertWithOnConflict(
+                    RemoteListingColumns.TABLENAME,
+                    null,
+                    cv,
+                    SQLiteDatabase.CONFLICT_REPLACE
+                )
+                trim(db)
+                db.setTransactionSuccessful()
+            } finally {
+                db.endTransaction()
+            }
+            true
+        }
+    }
+
+    override fun <T> cacheFirst(
+        key: String,
+        serializer: KSerializer<T>,
+        remote: Single<out List<T>>
+    ): Observable<List<T>> {
+        val cached = get(key, serializer).onErrorComplete()
+        val fresh = remote.flatMapMaybe { items: List<T> ->
+            put(key, serializer, items)
+                .onErrorReturnItem(true)
+                .filter { it }
+                .map { items }
+        }
+        return Observable.concat(cached.toObservable(), fresh.toObservable())
+    }
+
+    override fun getScrollPosition(key: String): Maybe<Int> {
+        return Maybe.fromCallable {
+            helper.readableDatabase.query(
+                RemoteScrollColumns.TABLENAME,
+                POSITION_PROJECTION,
+                RemoteScrollColumns.LIST_KEY + " = ?",
+                arrayOf(scoped(key)),
+                null,
+                null,
+                null
+            ).use {
+                if (it.moveToNext()) it.getInt(0) else null
+            }
+        }
+    }
+
+    override fun putScrollPosition(key: String, position: Int): Completable {
+        return Completable.fromAction {
+            val cv = ContentValues()
+            cv.put(RemoteScrollColumns.LIST_KEY, scoped(key))
+            cv.put(RemoteScrollColumns.POSITION, position)
+            helper.writableDatabase.insertWithOnConflict(
+                RemoteScrollColumns.TABLENAME,
+                null,
+                cv,
+                SQLiteDatabase.CONFLICT_REPLACE
+            )
+        }
+    }
+
+    override fun delete(key: String): Completable {
+        return Completable.fromAction {
+            helper.writableDatabase.delete(
+                RemoteListingColumns.TABLENAME,
+                RemoteListingColumns.LIST_KEY + " = ?",
+                arrayOf(scoped(key))
+            )
+        }
+    }
+
+    override fun clear() {
+        helper.writableDatabase.delete(RemoteListingColumns.TABLENAME, null, null)
+        helper.writableDatabase.delete(RemoteScrollColumns.TABLENAME, null, null)
+    }
+
+    private fun trim(db: SQLiteDatabase) {
+        db.execSQL(
+            "DELETE FROM [" + RemoteListingColumns.TABLENAME + "] WHERE [" +
+                    RemoteListingColumns.LIST_KEY + "] NOT IN (SELECT [" +
+                    RemoteListingColumns.LIST_KEY + "] FROM [" + RemoteListingColumns.TABLENAME +
+                    "] ORDER BY [" + RemoteListingColumns.UPDATED + "] DESC LIMIT " + MAX_LISTINGS + ")"
+        )
+        db.execSQL(
+            "DELETE FROM [" + RemoteScrollColumns.TABLENAME + "] WHERE [" +
+                    RemoteScrollColumns.LIST_KEY + "] NOT IN (SELECT [" +
+                    RemoteListingColumns.LIST_KEY + "] FROM [" + RemoteListingColumns.TABLENAME + "])"
+        )
+    }
+
+    private fun scoped(key: String): String {
+        return Settings.get().main().getLocalServer().url.orEmpty() + "|" + key
+    }
+
+    companion object {
+        private const val TAG = "RemoteListingStorage"
+        private const val MAX_LISTINGS = 300
+        private val DATA_PROJECTION = arrayOf(RemoteListingColumns.DATA)
+        private val CHECKSUM_PROJECTION = arrayOf(RemoteListingColumns.CHECKSUM)
+        private val POSITION_PROJECTION = arrayOf(RemoteScrollColumns.POSITION)
+    }
+}
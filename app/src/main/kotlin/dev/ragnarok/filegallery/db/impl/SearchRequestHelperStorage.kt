@@ -2,6 +2,8 @@ package dev.ragnarok.filegallery.db.impl
 
 import android.content.ContentValues
 import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteStatement
 import android.provider.BaseColumns
 import dev.ragnarok.filegallery.*
 import dev.ragnarok.filegallery.db.SearchRequestHelper
@@ -108,7 +110,9 @@ class SearchRequestHelperStorage internal constructor(context: Context) :
                             it.getString(FilesColumns.PARENT_PATH),
                             it.getLong(FilesColumns.MODIFICATIONS),
                             it.getLong(FilesColumns.SIZE),
-                            it.getBoolean(FilesColumns.CAN_READ)
+                            it.getBoolean(FilesColumns.CAN_READ),
+                            it.getInt(FilesColumns.FILE_NAME_HASH),
+                            it.getInt(FilesColumns.FILE_PATH_HASH)
                         ).checkTag()
                     )
                 }
@@ -126,24 +130,53 @@ class SearchRequestHelperStorage internal constructor(context: Context) :
                 emitter.onComplete()
                 return@create
             }
-            db.delete(
-                FilesColumns.TABLENAME,
-                FilesColumns.PARENT_DIR + " = ?", arrayOf(parent)
-            )
             try {
-                for (i in files) {
-                    val cv = ContentValues()
-                    cv.put(FilesColumns.PARENT_DIR, parent)
-                    cv.put(FilesColumns.TYPE, i.type)
-                    cv.put(FilesColumns.IS_DIR, if (i.type == FileType.folder) 1 else 0)
-                    cv.put(FilesColumns.FILE_NAME, i.file_name)
-                    cv.put(FilesColumns.FILE_PATH, i.file_path)
-                    cv.put(FilesColumns.PARENT_NAME, i.parent_name)
-                    cv.put(FilesColumns.PARENT_PATH, i.parent_path)
-                    cv.put(FilesColumns.MODIFICATIONS, i.modification)
-                    cv.put(FilesColumns.SIZE, i.size)
-                    cv.put(FilesColumns.CAN_READ, if (i.isCanRead) 1 else 0)
-                    db.insert(FilesColumns.TABLENAME, null, cv)
+                val existing = HashMap<String, CachedFileRow>()
+                db.query(
+                    FilesColumns.TABLENAME,
+                    FILES_SYNC_PROJECTION,
+                    FilesColumns.PARENT_DIR + " = ?",
+                    arrayOf(parent)
+                ).use {
+                    while (it.moveToNext()) {
+                        val path = it.getString(1) ?: continue
+                        val row = CachedFileRow(
+                            it.getLong(0),
+                            it.getInt(2),
+                            it.getLong(3),
+                            it.getLong(4),
+                            it.getInt(5) == 1
+                        )
+                        existing.put(path, row)?.let { dup -> deleteFileRow(db, dup.id) }
+                    }
+                }
+                var insert: SQLiteStatement? = null
+                var update: SQLiteStatement? = null
+                try {
+                    for (i in files) {
+                        val path = i.file_path ?: continue
+                        val row = existing.remove(path)
+                        if (row == null) {
+                            val statement = insert ?: db.compileStatement(FILES_INSERT_SQL)
+                                .also { insert = it }
+                            bindFileRow(statement, parent, i)
+                            statement.executeInsert()
+                        } else if (row.type != i.type || row.modification != i.modification
+                            || row.size != i.size || row.canRead != i.isCanRead
+                        ) {
+                            val statement = update ?: db.compileStatement(FILES_UPDATE_SQL)
+                                .also { update = it }
+                            bindFileRow(statement, parent, i)
+                            statement.bindLong(FILES_UPDATE_ID_INDEX, row.id)
+                            statement.executeUpdateDelete()
+                        }
+                    }
+                } finally {
+                    insert?.close()
+                    update?.close()
+                }
+                for (row in existing.values) {
+                    deleteFileRow(db, row.id)
                 }
                 if (!emitter.isDisposed) {
                     db.setTransactionSuccessful()
@@ -155,6 +188,34 @@ class SearchRequestHelperStorage internal constructor(context: Context) :
         }
     }
 
+    private fun deleteFileRow(db: SQLiteDatabase, id: Long) {
+        db.delete(FilesColumns.TABLENAME, BaseColumns._ID + " = ?", arrayOf(id.toString()))
+    }
+
+    private fun bindFileRow(statement: SQLiteStatement, parent: String, item: FileItem) {
+        statement.clearBindings()
+        statement.bindString(1, parent)
+        statement.bindLong(2, item.type.toLong())
+        statement.bindLong(3, if (item.type == FileType.folder) 1 else 0)
+        item.file_name?.let { statement.bindString(4, it) } ?: statement.bindNull(4)
+        item.file_path?.let { statement.bindString(5, it) } ?: statement.bindNull(5)
+        item.parent_name?.let { statement.bindString(6, it) } ?: statement.bindNull(6)
+        item.parent_path?.let { statement.bindString(7, it) } ?: statement.bindNull(7)
+        statement.bindLong(8, item.modification)
+        statement.bindLong(9, item.size)
+        statement.bindLong(10, if (item.isCanRead) 1 else 0)
+        statement.bindLong(11, item.fileNameHash.toLong())
+        statement.bindLong(12, item.filePathHash.toLong())
+    }
+
+    private class CachedFileRow(
+        val id: Long,
+        val type: Int,
+        val modification: Long,
+        val size: Long,
+        val canRead: Boolean
+    )
+
     override fun clearQueriesAll() {
         helper.writableDatabase.delete(SearchRequestColumns.TABLENAME, null, null)
     }
@@ -540,6 +601,41 @@ class SearchRequestHelperStorage internal constructor(context: Context) :
             TagDirsColumns.PATH,
             TagDirsColumns.TYPE
         )
+        private val FILES_SYNC_PROJECTION = arrayOf(
+            BaseColumns._ID,
+            FilesColumns.FILE_PATH,
+            FilesColumns.TYPE,
+            FilesColumns.MODIFICATIONS,
+            FilesColumns.SIZE,
+            FilesColumns.CAN_READ
+        )
+        private val FILES_INSERT_SQL = "INSERT INTO " + FilesColumns.TABLENAME + " (" +
+                FilesColumns.PARENT_DIR + ", " +
+                FilesColumns.TYPE + ", " +
+                FilesColumns.IS_DIR + ", " +
+                FilesColumns.FILE_NAME + ", " +
+                FilesColumns.FILE_PATH + ", " +
+                FilesColumns.PARENT_NAME + ", " +
+                FilesColumns.PARENT_PATH + ", " +
+                FilesColumns.MODIFICATIONS + ", " +
+                FilesColumns.SIZE + ", " +
+                FilesColumns.CAN_READ + ", " +
+                FilesColumns.FILE_NAME_HASH + ", " +
+                FilesColumns.FILE_PATH_HASH + ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+        private val FILES_UPDATE_SQL = "UPDATE " + FilesColumns.TABLENAME + " SET " +
+                FilesColumns.PARENT_DIR + " = ?, " +
+                FilesColumns.TYPE + " = ?, " +
+                FilesColumns.IS_DIR + " = ?, " +
+                FilesColumns.FILE_NAME + " = ?, " +
+                FilesColumns.FILE_PATH + " = ?, " +
+                FilesColumns.PARENT_NAME + " = ?, " +
+                FilesColumns.PARENT_PATH + " = ?, " +
+                FilesColumns.MODIFICATIONS + " = ?, " +
+                FilesColumns.SIZE + " = ?, " +
+                FilesColumns.CAN_READ + " = ?, " +
+                FilesColumns.FILE_NAME_HASH + " = ?, " +
+                FilesColumns.FILE_PATH_HASH + " = ? WHERE " + BaseColumns._ID + " = ?"
+        private const val FILES_UPDATE_ID_INDEX = 13
         private val FILES_PROJECTION = arrayOf(
             BaseColumns._ID, FilesColumns.PARENT_DIR,
             FilesColumns.TYPE,
@@ -550,7 +646,9 @@ class SearchRequestHelperStorage internal constructor(context: Context) :
             FilesColumns.PARENT_PATH,
             FilesColumns.MODIFICATIONS,
             FilesColumns.SIZE,
-            FilesColumns.CAN_READ
+            FilesColumns.CAN_READ,
+            FilesColumns.FILE_NAME_HASH,
+            FilesColumns.FILE_PATH_HASH
         )
     }
 
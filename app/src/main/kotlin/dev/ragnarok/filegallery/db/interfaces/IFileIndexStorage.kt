@@ -0,0 +1,13 @@
+package dev.ragnarok.filegallery.db.interfaces
+
+import dev.ragnarok.filegallery.model.FileItem
+import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Single
+
+interface IFileIndexStorage {
+    fun isIndexed(root: String): Single<Boolean>
+    fun updateIndex(root: String): Single<Int>
+    fun search(root: String, query: String, offset: Int, count: Int): Single<List<FileItem>>
+    fun findNewestMedia(dir: String, modification: Long): Maybe<String>
+    fun clearIndex()
+}
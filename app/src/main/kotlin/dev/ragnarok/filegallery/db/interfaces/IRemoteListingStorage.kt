@@ -0,0 +1,32 @@
+package dev.ragnarok.filegallery.db.interfaces
+
+import io.reactivex.rxjava3.core.Completable
+import io.reactivex.rxjava3.core.Maybe
+import io.reactivex.rxjava3.core.Observable
+import io.reactivex.rxjava3.core.Single
+import kotlinx.serialization.KSerializer
+
+interface IRemoteListingStorage {
+    fun <T> get(key: String, serializer: KSerializer<T>): Maybe<List<T>>
+
+    /**
+     * @return true when the stored listing was missing or different
+     */
+    fun <T> put(key: String, serializer: KSerializer<T>, items: List<T>): Single<Boolean>
+
+    /**
+     * Emits the stored listing first (if any), then the [remote] one only when it differs.
+     * A failed [remote] request is reported after the stored listing.
+     */
+    fun <T> cacheFirst(
+        key: String,
+        serializer: KSerializer<T>,
+        remote: Single<out List<T>>
+    ): Observable<List<T>>
+
+    fun getScrollPosition(key: String): Maybe<Int>
+    fun putScrollPosition(key: String, position: Int): Completable
+
+    fun delete(key: String): Completable
+    fun clear()
+}
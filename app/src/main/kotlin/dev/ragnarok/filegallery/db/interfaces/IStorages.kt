@@ -2,4 +2,6 @@ package dev.ragnarok.filegallery.db.interfaces
 
 interface IStorages {
     fun searchQueriesStore(): ISearchRequestHelperStorage
-}
\ No newline at end of file
+    fun fileIndexStore(): IFileIndexStorage
+    fun remoteListingStore(): IRemoteListingStorage
+}
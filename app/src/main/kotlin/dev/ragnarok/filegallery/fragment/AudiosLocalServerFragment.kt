@@ -112,7 +112,7 @@ class AudiosLocalServerFragment :
     }
 
     override fun notifyListChanged() {
-        mAudioRecyclerAdapter?.notifyDataSetChanged()
+        mAudioRecyclerAdapter?.refresh()
     }
 
     override fun displayLoading(loading: Boolean) {
@@ -137,11 +137,11 @@ class AudiosLocalServerFragment :
     }
 
     override fun notifyItemChanged(index: Int) {
-        mAudioRecyclerAdapter?.notifyItemChanged(index)
+        mAudioRecyclerAdapter?.afterCommit { mAudioRecyclerAdapter?.notifyItemChanged(index) }
     }
 
     override fun notifyDataAdded(position: Int, count: Int) {
-        mAudioRecyclerAdapter?.notifyItemRangeInserted(position, count)
+        mAudioRecyclerAdapter?.refresh()
     }
 
     override fun onQueryTextSubmit(query: String?): Boolean {
@@ -38,6 +38,7 @@ import dev.ragnarok.filegallery.media.music.MusicPlaybackService
 import dev.ragnarok.filegallery.model.*
 import dev.ragnarok.filegallery.mvp.core.IPresenterFactory
 import dev.ragnarok.filegallery.mvp.presenter.FileManagerPresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.IFileManagerView
 import dev.ragnarok.filegallery.place.PlaceFactory
 import dev.ragnarok.filegallery.place.PlaceFactory.getPhotoLocalPlace
@@ -69,6 +70,10 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
 
     private var animationDispose = Disposable.disposed()
     private var mAnimationLoaded = false
+    private val viewportListener =
+        PicassoViewportScrollListener(Constants.PICASSO_TAG, PREFETCH_COUNT) {
+            mAdapter?.getThumbnailUri(it)
+        }
 
     private val requestPhotoUpdate = registerForActivityResult(
         ActivityResultContracts.StartActivityForResult()
@@ -89,6 +94,7 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
     override fun onDestroy() {
         super.onDestroy()
         animationDispose.dispose()
+        viewportListener.reset()
     }
 
     override fun onResume() {
@@ -166,7 +172,12 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
         val columns = resources.getInteger(R.integer.files_column_count)
         mLayoutManager = StaggeredGridLayoutManager(columns, StaggeredGridLayoutManager.VERTICAL)
         mRecyclerView?.layoutManager = mLayoutManager
-        mRecyclerView?.addOnScrollListener(PicassoPauseOnScrollListener(Constants.PICASSO_TAG))
+        mRecyclerView?.addOnScrollListener(viewportListener)
+        mRecyclerView?.addOnScrollListener(object : EndlessRecyclerOnScrollListener() {
+            override fun onScrollToLastElement() {
+                presenter?.fireScrollToEnd()
+            }
+        })
         tvCurrentDir = root.findViewById(R.id.current_path)
         loading = root.findViewById(R.id.loading)
 
@@ -180,6 +191,7 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
         }
         ViewUtils.setupSwipeRefreshLayoutWithCurrentTheme(requireActivity(), mSwipeRefreshLayout)
         mAdapter = FileManagerAdapter(requireActivity(), Collections.emptyList())
+        mAdapter?.setAudioIndexLookup { presenter?.indexOfAudio(it) ?: -1 }
         mAdapter?.setClickListener(this)
         mRecyclerView?.adapter = mAdapter
 
@@ -315,6 +327,8 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
     }
 
     companion object {
+        private const val PREFETCH_COUNT = 12
+
         fun buildArgs(path: String, base: Boolean, isSelect: Boolean): Bundle {
             val args = Bundle()
             args.putString(Extra.PATH, path)
@@ -328,20 +342,10 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
             fragment.arguments = args
             return fragment
         }
-
-        fun isExtension(str: String, ext: Set<String>): Boolean {
-            var ret = false
-            for (i in ext) {
-                if (str.endsWith(i, true)) {
-                    ret = true
-                    break
-                }
-            }
-            return ret
-        }
     }
 
     override fun displayData(items: ArrayList<FileItem>) {
+        viewportListener.reset()
         mAdapter?.setItems(items)
     }
 
@@ -410,7 +414,8 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
     }
 
     override fun notifyAllChanged() {
-        mAdapter?.notifyDataSetChanged()
+        viewportListener.reset()
+        mAdapter?.refresh()
     }
 
     override fun updatePathString(file: String) {
@@ -421,11 +426,11 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
     }
 
     override fun restoreScroll(scroll: Parcelable) {
-        mLayoutManager?.onRestoreInstanceState(scroll)
+        mAdapter?.afterCommit { mLayoutManager?.onRestoreInstanceState(scroll) }
     }
 
-    override fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean) {
-        getPhotoLocalPlace(parcelNativePointer, position, reversed).setActivityResultLauncher(
+    override fun displayGallery(source: GallerySource<*>, position: Int) {
+        getPhotoLocalPlace(GallerySource.register(source), position, false).setActivityResultLauncher(
             requestPhotoUpdate
         ).tryOpenWith(requireActivity())
     }
@@ -441,11 +446,11 @@ class FileManagerFragment : BaseMvpFragment<FileManagerPresenter, IFileManagerVi
     }
 
     override fun onScrollTo(pos: Int) {
-        mLayoutManager?.scrollToPosition(pos)
+        mAdapter?.afterCommit { mLayoutManager?.scrollToPosition(pos) }
     }
 
     override fun notifyItemChanged(pos: Int) {
-        mAdapter?.notifyItemChanged(pos)
+        mAdapter?.afterCommit { mAdapter?.notifyItemChanged(pos) }
     }
 
     override fun canBackPressed(): Boolean {
@@ -4,7 +4,6 @@ import android.animation.Animator
 import android.animation.ObjectAnimator
 import android.app.Activity
 import android.os.Bundle
-import android.os.Parcelable
 import android.view.LayoutInflater
 import android.view.View
 import android.view.ViewGroup
@@ -32,6 +31,7 @@ import dev.ragnarok.filegallery.model.*
 import dev.ragnarok.filegallery.module.parcel.ParcelNative
 import dev.ragnarok.filegallery.mvp.core.IPresenterFactory
 import dev.ragnarok.filegallery.mvp.presenter.FileManagerRemotePresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.IFileManagerRemoteView
 import dev.ragnarok.filegallery.place.PlaceFactory
 import dev.ragnarok.filegallery.settings.CurrentTheme
@@ -64,7 +64,7 @@ class FileManagerRemoteFragment :
 
     override fun onBackPressed(): Boolean {
         if (presenter?.canLoadUp() == true) {
-            mLayoutManager?.onSaveInstanceState()?.let { presenter?.backupDirectoryScroll(it) }
+            backupDirectoryScroll()
             presenter?.loadUp()
             return false
         }
@@ -124,7 +124,7 @@ class FileManagerRemoteFragment :
         mSwipeRefreshLayout?.setOnRefreshListener {
             mSwipeRefreshLayout?.isRefreshing = false
             if (presenter?.canRefresh() == true) {
-                mLayoutManager?.onSaveInstanceState()?.let { presenter?.backupDirectoryScroll(it) }
+                backupDirectoryScroll()
                 presenter?.loadFiles()
             }
         }
@@ -155,7 +155,7 @@ class FileManagerRemoteFragment :
 
     override fun onClick(position: Int, item: FileRemote) {
         if (item.type == FileType.folder) {
-            mLayoutManager?.onSaveInstanceState()?.let { presenter?.backupDirectoryScroll(it) }
+            backupDirectoryScroll()
             presenter?.goFolder(item)
         } else {
             presenter?.onClickFile(item)
@@ -249,8 +249,8 @@ class FileManagerRemoteFragment :
         }
     }
 
-    override fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean) {
-        PlaceFactory.getPhotoLocalServerPlace(parcelNativePointer, position, reversed)
+    override fun displayGallery(source: GallerySource<*>, position: Int) {
+        PlaceFactory.getPhotoLocalPlace(GallerySource.register(source), position, false)
             .setActivityResultLauncher(
                 requestPhotoUpdate
             ).tryOpenWith(requireActivity())
@@ -267,7 +267,7 @@ class FileManagerRemoteFragment :
     }
 
     override fun notifyAllChanged() {
-        mAdapter?.notifyDataSetChanged()
+        mAdapter?.refresh()
     }
 
     override fun updatePathString(file: String?) {
@@ -281,15 +281,20 @@ class FileManagerRemoteFragment :
         }
     }
 
-    override fun restoreScroll(scroll: Parcelable) {
-        mLayoutManager?.onRestoreInstanceState(scroll)
+    private fun backupDirectoryScroll() {
+        val positions = mLayoutManager?.findFirstVisibleItemPositions(null) ?: return
+        positions.minOrNull()?.let { presenter?.backupDirectoryScroll(it.coerceAtLeast(0)) }
+    }
+
+    override fun restoreScroll(position: Int) {
+        mAdapter?.afterCommit { mLayoutManager?.scrollToPosition(position) }
     }
 
     override fun onScrollTo(pos: Int) {
-        mLayoutManager?.scrollToPosition(pos)
+        mAdapter?.afterCommit { mLayoutManager?.scrollToPosition(pos) }
     }
 
     override fun notifyItemChanged(pos: Int) {
-        mAdapter?.notifyItemChanged(pos)
+        mAdapter?.afterCommit { mAdapter?.notifyItemChanged(pos) }
     }
 }
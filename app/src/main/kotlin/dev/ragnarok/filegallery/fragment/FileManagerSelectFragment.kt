@@ -231,7 +231,7 @@ class FileManagerSelectFragment :
     }
 
     override fun notifyAllChanged() {
-        mAdapter?.notifyDataSetChanged()
+        mAdapter?.refresh()
     }
 
     override fun updatePathString(file: String) {
@@ -242,14 +242,14 @@ class FileManagerSelectFragment :
     }
 
     override fun restoreScroll(scroll: Parcelable) {
-        mLayoutManager?.onRestoreInstanceState(scroll)
+        mAdapter?.afterCommit { mLayoutManager?.onRestoreInstanceState(scroll) }
     }
 
     override fun onScrollTo(pos: Int) {
-        mLayoutManager?.scrollToPosition(pos)
+        mAdapter?.afterCommit { mLayoutManager?.scrollToPosition(pos) }
     }
 
     override fun notifyItemChanged(pos: Int) {
-        mAdapter?.notifyItemChanged(pos)
+        mAdapter?.afterCommit { mAdapter?.notifyItemChanged(pos) }
     }
 }
@@ -53,8 +53,10 @@ class PhotosLocalServerFragment :
     private var mPhotoRecyclerAdapter: LocalServerPhotosAdapter? = null
     private var recyclerView: RecyclerView? = null
     override fun scrollTo(position: Int) {
-        mPhotoRecyclerAdapter?.updateCurrentPosition(position)
-        recyclerView?.scrollToPosition(position)
+        mPhotoRecyclerAdapter?.afterCommit {
+            mPhotoRecyclerAdapter?.updateCurrentPosition(position)
+            recyclerView?.scrollToPosition(position)
+        }
     }
 
     override fun onCreateView(
@@ -113,7 +115,7 @@ class PhotosLocalServerFragment :
     }
 
     override fun notifyListChanged() {
-        mPhotoRecyclerAdapter?.notifyDataSetChanged()
+        mPhotoRecyclerAdapter?.refresh()
     }
 
     override fun displayLoading(loading: Boolean) {
@@ -127,11 +129,11 @@ class PhotosLocalServerFragment :
     }
 
     override fun notifyItemChanged(index: Int) {
-        mPhotoRecyclerAdapter?.notifyItemChanged(index)
+        mPhotoRecyclerAdapter?.afterCommit { mPhotoRecyclerAdapter?.notifyItemChanged(index) }
     }
 
     override fun notifyDataAdded(position: Int, count: Int) {
-        mPhotoRecyclerAdapter?.notifyItemRangeInserted(position, count)
+        mPhotoRecyclerAdapter?.refresh()
     }
 
     override fun onQueryTextSubmit(query: String?): Boolean {
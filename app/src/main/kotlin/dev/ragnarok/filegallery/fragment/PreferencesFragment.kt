@@ -44,6 +44,7 @@ import dev.ragnarok.filegallery.activity.ActivityFeatures
 import dev.ragnarok.filegallery.activity.ActivityUtils
 import dev.ragnarok.filegallery.activity.EnterPinActivity
 import dev.ragnarok.filegallery.activity.FileManagerSelectActivity
+import dev.ragnarok.filegallery.api.HttpTransport
 import dev.ragnarok.filegallery.api.adapters.AbsAdapter.Companion.asJsonObject
 import dev.ragnarok.filegallery.api.adapters.AbsAdapter.Companion.asJsonObjectSafe
 import dev.ragnarok.filegallery.api.adapters.AbsAdapter.Companion.asPrimitiveSafe
@@ -52,6 +53,7 @@ import dev.ragnarok.filegallery.listener.BackPressCallback
 import dev.ragnarok.filegallery.listener.CanBackPressedCallback
 import dev.ragnarok.filegallery.listener.OnSectionResumeCallback
 import dev.ragnarok.filegallery.listener.UpdatableNavigation
+import dev.ragnarok.filegallery.media.exo.MediaCache
 import dev.ragnarok.filegallery.model.LocalServerSettings
 import dev.ragnarok.filegallery.model.PlayerCoverBackgroundSettings
 import dev.ragnarok.filegallery.model.SectionItem
@@ -75,6 +77,7 @@ import dev.ragnarok.filegallery.view.MySearchView
 import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.Disposable
+import okhttp3.HttpUrl.Companion.toHttpUrlOrNull
 import java.io.*
 import java.nio.charset.StandardCharsets
 import java.util.concurrent.TimeUnit
@@ -655,6 +658,42 @@ class PreferencesFragment : AbsPreferencesFragment(), PreferencesAdapter.OnScree
                 }
             }
 
+            editText("media_cache_size", parentFragmentManager) {
+                defaultValue = "256"
+                textInputType = InputType.TYPE_CLASS_NUMBER
+                titleRes = R.string.media_cache_size
+                summaryRes = R.string.need_restart
+                isTrim = true
+                onTextBeforeChanged { its ->
+                    val sz = its.toString().trim { it <= ' ' }.toIntOrNull()
+                    sz != null && sz >= 0
+                }
+            }
+
+            editText("max_requests_per_host", parentFragmentManager) {
+                defaultValue = "16"
+                textInputType = InputType.TYPE_CLASS_NUMBER
+                titleRes = R.string.max_requests_per_host
+                isTrim = true
+                onTextBeforeChanged { its ->
+                    val sz = its.toString().trim { it <= ' ' }.toIntOrNull()
+                    sz != null && sz > 0
+                }
+                onTextChanged { its ->
+                    its?.toString()?.trim()?.toIntOrNull()?.let {
+                        HttpTransport.setMaxRequestsPerHost(it)
+                    }
+                }
+            }
+
+            pref("network_stats") {
+                titleRes = R.string.network_stats
+                onClick {
+                    showNetworkStats()
+                    true
+                }
+            }
+
             singleChoice(
                 "rendering_mode",
                 selItems(
@@ -693,6 +732,9 @@ class PreferencesFragment : AbsPreferencesFragment(), PreferencesAdapter.OnScree
                 onClick {
                     Includes.stores.searchQueriesStore().clearQueriesAll()
                     Includes.stores.searchQueriesStore().clearFilesAll()
+                    Includes.stores.fileIndexStore().clearIndex()
+                    Includes.stores.remoteListingStore().clear()
+                    MediaCache.clear(requireActivity())
                     cleanUICache(requireActivity(), false)
                     cleanCache(requireActivity(), true)
                     requireActivity().recreate()
@@ -791,6 +833,35 @@ class PreferencesFragment : AbsPreferencesFragment(), PreferencesAdapter.OnScree
         }
     }
 
+    private fun showNetworkStats() {
+        val metrics = HttpTransport.metrics()
+        val host = Settings.get().main().getLocalServer().url?.toHttpUrlOrNull()?.host
+        val cache = MediaCache.stats()
+        MaterialAlertDialogBuilder(requireActivity())
+            .setTitle(R.string.network_stats)
+            .setMessage(
+                getString(
+                    R.string.network_stats_info,
+                    metrics.calls,
+                    metrics.newConnections,
+                    metrics.reusedConnections,
+                    metrics.connections,
+                    metrics.idleConnections,
+                    host?.let { HttpTransport.activeRequests(it) } ?: 0,
+                    Settings.get().main().getMaxRequestsPerHost()
+                ) + "\n" + getString(
+                    R.string.media_cache_stats_info,
+                    Utils.BytesToSize(cache.cachedBytes),
+                    Utils.BytesToSize(cache.hitBytes),
+                    Utils.BytesToSize(cache.missBytes),
+                    (cache.hitRate * 100).toInt(),
+                    cache.ignored
+                )
+            )
+            .setPositiveButton(R.string.button_ok, null)
+            .show()
+    }
+
     private val requestPin = registerForActivityResult(
         ActivityResultContracts.StartActivityForResult()
     ) { result: ActivityResult ->
@@ -27,6 +27,7 @@ import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.model.tags.TagDir
 import dev.ragnarok.filegallery.mvp.core.IPresenterFactory
 import dev.ragnarok.filegallery.mvp.presenter.TagDirPresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.ITagDirView
 import dev.ragnarok.filegallery.place.PlaceFactory
 import dev.ragnarok.filegallery.settings.Settings
@@ -50,6 +51,7 @@ class TagDirFragment : BaseMvpFragment<TagDirPresenter, ITagDirView>(), ITagDirV
         mLayoutManager = StaggeredGridLayoutManager(columns, StaggeredGridLayoutManager.VERTICAL)
         recyclerView.layoutManager = mLayoutManager
         mAdapter = TagDirAdapter(requireActivity(), emptyList())
+        mAdapter?.setAudioIndexLookup { presenter?.indexOfAudio(it) ?: -1 }
         mAdapter?.setClickListener(this)
         recyclerView.adapter = mAdapter
 
@@ -118,23 +120,23 @@ class TagDirFragment : BaseMvpFragment<TagDirPresenter, ITagDirView>(), ITagDirV
     }
 
     override fun notifyChanges() {
-        mAdapter?.notifyDataSetChanged()
+        mAdapter?.refresh()
     }
 
     override fun notifyRemove(index: Int) {
-        mAdapter?.notifyItemRemoved(index)
+        mAdapter?.refresh()
     }
 
     override fun onScrollTo(pos: Int) {
-        mLayoutManager?.scrollToPosition(pos)
+        mAdapter?.afterCommit { mLayoutManager?.scrollToPosition(pos) }
     }
 
     override fun notifyItemChanged(pos: Int) {
-        mAdapter?.notifyItemChanged(pos)
+        mAdapter?.afterCommit { mAdapter?.notifyItemChanged(pos) }
     }
 
-    override fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean) {
-        PlaceFactory.getPhotoLocalPlace(parcelNativePointer, position, reversed)
+    override fun displayGallery(source: GallerySource<*>, position: Int) {
+        PlaceFactory.getPhotoLocalPlace(GallerySource.register(source), position, false)
             .setActivityResultLauncher(
                 requestPhotoUpdate
             ).tryOpenWith(requireActivity())
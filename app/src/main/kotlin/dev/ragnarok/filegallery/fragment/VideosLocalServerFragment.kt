@@ -84,7 +84,7 @@ class VideosLocalServerFragment :
     }
 
     override fun notifyListChanged() {
-        mVideoRecyclerAdapter?.notifyDataSetChanged()
+        mVideoRecyclerAdapter?.refresh()
     }
 
     override fun displayLoading(loading: Boolean) {
@@ -92,11 +92,11 @@ class VideosLocalServerFragment :
     }
 
     override fun notifyItemChanged(index: Int) {
-        mVideoRecyclerAdapter?.notifyItemChanged(index)
+        mVideoRecyclerAdapter?.afterCommit { mVideoRecyclerAdapter?.notifyItemChanged(index) }
     }
 
     override fun notifyDataAdded(position: Int, count: Int) {
-        mVideoRecyclerAdapter?.notifyItemRangeInserted(position, count)
+        mVideoRecyclerAdapter?.refresh()
     }
 
     override fun onQueryTextSubmit(query: String?): Boolean {
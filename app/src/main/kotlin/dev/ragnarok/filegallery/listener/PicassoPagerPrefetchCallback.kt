@@ -0,0 +1,96 @@
+package dev.ragnarok.filegallery.listener
+
+import androidx.recyclerview.widget.RecyclerView
+import androidx.viewpager2.widget.ViewPager2
+import com.squareup.picasso3.Picasso
+import com.squareup.picasso3.RequestCreator
+import dev.ragnarok.filegallery.picasso.PicassoInstance.Companion.with
+import dev.ragnarok.filegallery.util.Logger
+
+/**
+ * Fetches the pages around the selected one into the picasso memory cache, so that
+ * swiping shows them without decoding. [distance] pages are fetched in the swipe direction
+ * and one behind it. The range is reported as the viewport of [tag], so fetches left behind
+ * after a change of direction are dropped before they start.
+ *
+ * @param request passes the request of the page at the given position to the callback, now or
+ * later, and not at all if the page should not be fetched. The pages must be loaded with
+ * the same request and [tag] for the fetched bitmaps to be used.
+ */
+class PicassoPagerPrefetchCallback(
+    private val tag: String,
+    private val distance: Int,
+    private val request: (Int, (RequestCreator) -> Unit) -> Unit
+) : ViewPager2.OnPageChangeCallback() {
+    private var current = RecyclerView.NO_POSITION
+    private var forward = true
+    private var hits = 0
+    private var misses = 0
+
+    override fun onPageSelected(position: Int) {
+        if (position == current) {
+            return
+        }
+        if (current != RecyclerView.NO_POSITION) {
+            forward = position > current
+        }
+        current = position
+        val first = (if (forward) position - 1 else position - distance).coerceAtLeast(0)
+        val last = if (forward) position + distance else position + 1
+        with().setViewport(tag, first, last, 0)
+        // nearest first, the dispatcher ranks them the same way
+        for (i in 1..distance) {
+            val next = if (forward) position + i else position - i
+            if (next < 0) {
+                break
+            }
+            fetch(next)
+        }
+        val behind = if (forward) position - 1 else position + 1
+        if (behind >= 0) {
+            fetch(behind)
+        }
+    }
+
+    private fun fetch(position: Int) {
+        request(position) {
+            it.tag(tag).position(position).priority(Picasso.Priority.LOW).fetch()
+        }
+    }
+
+    /**
+     * Called by the pager when a page is bound, only for pages [request] would fetch.
+     */
+    fun onPageShown(fromMemory: Boolean) {
+        if (fromMemory) {
+            hits++
+        } else {
+            misses++
+        }
+    }
+
+    fun reset() {
+        if (hits + misses > 0) {
+            Logger.d(TAG, "Prefetch hit rate $hits/${hits + misses}")
+        }
+        current = RecyclerView.NO_POSITION
+        forward = true
+        hits = 0
+        misses = 0
+        with().clearViewport(tag)
+    }
+
+    companion object {
+        private val TAG = PicassoPagerPrefetchCallback::class.java.simpleName
+
+        /**
+         * Pages to fetch ahead so that the fetched bitmaps fit into [budget] bytes.
+         */
+        fun distanceFor(pageBytes: Long, budget: Long, max: Int): Int {
+            if (pageBytes <= 0) {
+                return max
+            }
+            return (budget / pageBytes).toInt().coerceIn(1, max)
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package dev.ragnarok.filegallery.listener
+
+import androidx.recyclerview.widget.LinearLayoutManager
+import androidx.recyclerview.widget.RecyclerView
+import androidx.recyclerview.widget.StaggeredGridLayoutManager
+import com.squareup.picasso3.Picasso
+import dev.ragnarok.filegallery.picasso.PicassoInstance.Companion.with
+
+/**
+ * Reports the visible positions to picasso, so that queued thumbnails are decoded from
+ * the visible ones outwards and the ones that scrolled far away are deferred.
+ * When [prefetchUri] is set, the next [prefetch] items in the scroll direction are fetched.
+ */
+class PicassoViewportScrollListener(
+    private val tag: String,
+    private val prefetch: Int = 0,
+    private val prefetchUri: ((Int) -> String?)? = null
+) : RecyclerView.OnScrollListener() {
+    private var first = RecyclerView.NO_POSITION
+    private var last = RecyclerView.NO_POSITION
+    private var prefetchedFrom = RecyclerView.NO_POSITION
+    private var prefetchedTo = RecyclerView.NO_POSITION
+
+    override fun onScrolled(recyclerView: RecyclerView, dx: Int, dy: Int) {
+        val manager = recyclerView.layoutManager ?: return
+        var nFirst = RecyclerView.NO_POSITION
+        var nLast = RecyclerView.NO_POSITION
+        when (manager) {
+            is StaggeredGridLayoutManager -> {
+                for (i in manager.findFirstVisibleItemPositions(null)) {
+                    if (i != RecyclerView.NO_POSITION && (nFirst == RecyclerView.NO_POSITION || i < nFirst)) {
+                        nFirst = i
+                    }
+                }
+                for (i in manager.findLastVisibleItemPositions(null)) {
+                    if (i > nLast) {
+                        nLast = i
+                    }
+                }
+            }
+            is LinearLayoutManager -> {
+                nFirst = manager.findFirstVisibleItemPosition()
+                nLast = manager.findLastVisibleItemPosition()
+            }
+        }
+        if (nFirst == RecyclerView.NO_POSITION || nLast == RecyclerView.NO_POSITION
+            || (nFirst == first && nLast == last)
+        ) {
+            return
+        }
+        val forward = nFirst > first || (nFirst == first && nLast > last)
+        first = nFirst
+        last = nLast
+        with().setViewport(tag, first, last, (last - first + 1).coerceAtLeast(prefetch))
+        prefetch(manager.itemCount, forward)
+    }
+
+    private fun prefetch(count: Int, forward: Boolean) {
+        val uri = prefetchUri ?: return
+        if (prefetch <= 0) {
+            return
+        }
+        val from: Int
+        val to: Int
+        if (forward) {
+            from = last + 1
+            to = (last + prefetch).coerceAtMost(count - 1)
+        } else {
+            from = (first - prefetch).coerceAtLeast(0)
+            to = first - 1
+        }
+        for (i in from..to) {
+            if (i in prefetchedFrom..prefetchedTo) {
+                continue
+            }
+            uri(i)?.let {
+                with().load(it).tag(tag).position(i).priority(Picasso.Priority.LOW).fetch()
+            }
+        }
+        prefetchedFrom = from
+        prefetchedTo = to
+    }
+
+    fun reset() {
+        first = RecyclerView.NO_POSITION
+        last = RecyclerView.NO_POSITION
+        prefetchedFrom = RecyclerView.NO_POSITION
+        prefetchedTo = RecyclerView.NO_POSITION
+        with().clearViewport(tag)
+    }
+}
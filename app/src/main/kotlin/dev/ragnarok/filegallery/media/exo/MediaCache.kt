@@ -0,0 +1,152 @@
+package dev.ragnarok.filegallery.media.exo
+
+import android.content.Context
+import com.google.android.exoplayer2.database.StandaloneDatabaseProvider
+import com.google.android.exoplayer2.upstream.DataSource
+import com.google.android.exoplayer2.upstream.DataSpec
+import com.google.android.exoplayer2.upstream.TransferListener
+import com.google.android.exoplayer2.upstream.cache.CacheDataSource
+import com.google.android.exoplayer2.upstream.cache.LeastRecentlyUsedCacheEvictor
+import com.google.android.exoplayer2.upstream.cache.SimpleCache
+import dev.ragnarok.filegallery.Constants
+import dev.ragnarok.filegallery.settings.Settings
+import java.io.File
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * On-disk cache of remote audio and video streams shared by all players.
+ * Bytes are written while they are played, so replays, seeks back and repeat-one
+ * are served from disk. The budget comes from the settings (megabytes, 0 disables it)
+ * and is applied on the next start, old entries are evicted least recently used first.
+ */
+object MediaCache {
+    private const val DIR = "exo_media"
+
+    class Stats(
+        val hitBytes: Long,
+        val missBytes: Long,
+        val ignored: Long,
+        val cachedBytes: Long
+    ) {
+        val hitRate: Float
+            get() = if (hitBytes + missBytes > 0) hitBytes.toFloat() / (hitBytes + missBytes) else 0f
+    }
+
+    private val hitBytes = AtomicLong()
+    private val missBytes = AtomicLong()
+    private val ignored = AtomicLong()
+
+    @Volatile
+    private var cache: SimpleCache? = null
+    private var disabled = false
+
+    private val listener = object : CacheDataSource.EventListener {
+        override fun onCachedBytesRead(cacheSizeBytes: Long, cachedBytesRead: Long) {
+            hitBytes.addAndGet(cachedBytesRead)
+        }
+
+        override fun onCacheIgnored(reason: Int) {
+            ignored.incrementAndGet()
+        }
+    }
+
+    private val upstreamListener = object : TransferListener {
+        override fun onTransferInitializing(
+            source: DataSource,
+            dataSpec: DataSpec,
+            isNetwork: Boolean
+        ) {
+        }
+
+        override fun onTransferStart(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+        }
+
+        override fun onBytesTransferred(
+            source: DataSource,
+            dataSpec: DataSpec,
+            isNetwork: Boolean,
+            bytesTransferred: Int
+        ) {
+            missBytes.addAndGet(bytesTransferred.toLong())
+        }
+
+        override fun onTransferEnd(source: DataSource, dataSpec: DataSpec, isNetwork: Boolean) {
+        }
+    }
+
+    private fun getCache(context: Context): SimpleCache? {
+        cache?.let { return it }
+        synchronized(this) {
+            if (disabled) {
+                return null
+            }
+            cache?.let { return it }
+            val budget = Settings.get().main().getMediaCacheSize().toLong() * 1024 * 1024
+            if (budget <= 0) {
+                disabled = true
+                return null
+            }
+            val app = context.applicationContext
+            return try {
+                SimpleCache(
+                    File(app.cacheDir, DIR),
+                    LeastRecentlyUsedCacheEvictor(budget),
+                    StandaloneDatabaseProvider(app)
+                ).also { cache = it }
+            } catch (e: Exception) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+                disabled = true
+                null
+            }
+        }
+    }
+
+    /**
+     * Wraps [upstream] with the cache, or returns it as is when the cache is disabled.
+     */
+    fun factory(context: Context, upstream: DataSource.Factory): DataSource.Factory {
+        val simpleCache = getCache(context) ?: return upstream
+        return CacheDataSource.Factory()
+            .setCache(simpleCache)
+            .setUpstreamDataSourceFactory {
+                upstream.createDataSource().apply { addTransferListener(upstreamListener) }
+            }
+            .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR)
+            .setEventListener(listener)
+    }
+
+    fun stats(): Stats {
+        return Stats(hitBytes.get(), missBytes.get(), ignored.get(), cache?.cacheSpace ?: 0)
+    }
+
+    /**
+     * Empties the open cache, or deletes the directory and index of one not opened in this process.
+     */
+    fun clear(context: Context) {
+        synchronized(this) {
+            val simpleCache = cache
+            if (simpleCache == null) {
+                val app = context.applicationContext
+                try {
+                    SimpleCache.delete(File(app.cacheDir, DIR), StandaloneDatabaseProvider(app))
+                } catch (e: Exception) {
+                    if (Constants.IS_DEBUG) {
+                        e.printStackTrace()
+                    }
+                }
+                return
+            }
+            for (i in simpleCache.keys) {
+                try {
+                    simpleCache.removeResource(i)
+                } catch (e: Exception) {
+                    if (Constants.IS_DEBUG) {
+                        e.printStackTrace()
+                    }
+                }
+            }
+        }
+    }
+}
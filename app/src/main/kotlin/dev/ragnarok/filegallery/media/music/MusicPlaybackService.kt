@@ -59,6 +59,7 @@ class MusicPlaybackService : Service() {
     private var mMediaSession: MediaSessionCompat? = null
     private var mTransportController: MediaControllerCompat.TransportControls? = null
     private var mPlayPos = -1
+    private var mNextPlayPos = -1
     private var coverAudio: String? = null
     private var coverBitmap: Bitmap? = null
     private var albumTitle: String? = null
@@ -386,6 +387,63 @@ class MusicPlaybackService : Service() {
             }
             val current = mPlayList?.get(mPlayPos)
             openFile(current, UpdateMeta)
+            prepareNextTrack()
+        }
+    }
+
+    /**
+     * Appends the track that follows the current one (by the queue order and the repeat mode)
+     * to the player, so it is buffered before the current one ends, and prefetches its cover.
+     */
+    private fun prepareNextTrack() {
+        synchronized(this) {
+            if (!isInitialized && !isPreparing) {
+                return
+            }
+            val pos = getNextPosition(false)
+            val next = if (pos >= 0) mPlayList?.getOrNull(pos) else null
+            mNextPlayPos = if (next != null) pos else -1
+            mPlayer?.setNextDataSource(next)
+            next?.thumb_image?.let {
+                if (it != coverAudio) {
+                    PicassoInstance.with().load(it).fetch()
+                }
+            }
+        }
+    }
+
+    /**
+     * The player moved to the pre-buffered track by itself.
+     */
+    private fun onTrackAdvanced() {
+        synchronized(this) {
+            if (mNextPlayPos < 0) {
+                return
+            }
+            mPlayPos = mNextPlayPos
+            mNextPlayPos = -1
+            mPlayer?.dropPlayed()
+            updateTrackMeta(currentTrack, true)
+            prepareNextTrack()
+        }
+    }
+
+    /**
+     * A playback error with a track pre-buffered. ExoPlayer reports a failing next item
+     * against the current one, so the current one goes on without it and the dropped
+     * track is opened normally once the current one ends.
+     *
+     * @return false when nothing was queued, the current track itself failed
+     */
+    private fun dropNextTrack(): Boolean {
+        synchronized(this) {
+            if (mNextPlayPos < 0) {
+                return false
+            }
+            mNextPlayPos = -1
+            mPlayer?.setNextDataSource(null)
+            mPlayer?.retry()
+            return true
         }
     }
 
@@ -497,7 +555,15 @@ class MusicPlaybackService : Service() {
                 stop(true)
                 return
             }
+            // the new source replaces the pre-buffered track too
+            mNextPlayPos = -1
+            mPlayer?.setDataSource(audio)
+            updateTrackMeta(audio, UpdateMeta)
+        }
+    }
 
+    private fun updateTrackMeta(audio: Audio?, UpdateMeta: Boolean) {
+        synchronized(this) {
             if (UpdateMeta) {
                 errorsCount = 0
                 coverAudio = null
@@ -505,8 +571,7 @@ class MusicPlaybackService : Service() {
                 coverBitmap = null
                 onceCloseMiniPlayer = false
             }
-            mPlayer?.setDataSource(audio)
-            if (audio.thumb_image != null && UpdateMeta) {
+            if (audio?.thumb_image != null && UpdateMeta) {
                 coverAudio = audio.thumb_image
                 albumTitle = audio.artist
                 fetchCoverAndUpdateMetadata()
@@ -568,6 +633,7 @@ class MusicPlaybackService : Service() {
                     mPlayList?.clear()
                     mPlayListOrig?.let { mPlayList?.addAll(it) }
                     notifyChange(META_CHANGED)
+                    prepareNextTrack()
                 }
             }
         }
@@ -578,6 +644,7 @@ class MusicPlaybackService : Service() {
             synchronized(this) {
                 mRepeatMode = repeatmode
                 notifyChange(REPEATMODE_CHANGED)
+                prepareNextTrack()
             }
         }
 
@@ -729,6 +796,7 @@ class MusicPlaybackService : Service() {
             }
             mPlayList?.insertAfter(current, audio)
             notifyChange(QUEUE_CHANGED)
+            prepareNextTrack()
         }
     }
 
@@ -923,6 +991,7 @@ class MusicPlaybackService : Service() {
         var isInitialized = false
         var isPreparing = false
         val factory = Utils.getExoPlayerFactory(
+            service,
             Constants.USER_AGENT
         )
         val factoryLocal =
@@ -940,8 +1009,21 @@ class MusicPlaybackService : Service() {
                 remoteUrl,
                 "file:///android_asset/audio_error.ogg"
             )
-            val mediaSource: MediaSource =
-                if (url?.contains("file://") == true || url?.contains("content://") == true || url?.contains(
+            mCurrentMediaPlayer.setMediaSource(createMediaSource(url))
+            mCurrentMediaPlayer.prepare()
+            mCurrentMediaPlayer.setAudioAttributes(
+                AudioAttributes.Builder().setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
+                    .setUsage(C.USAGE_MEDIA).build(), true
+            )
+            val intent = Intent(AudioEffect.ACTION_OPEN_AUDIO_EFFECT_CONTROL_SESSION)
+            intent.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId)
+            intent.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, mService.get()?.packageName)
+            mService.get()?.sendBroadcast(intent)
+            mService.get()?.notifyChange(PLAYSTATE_CHANGED)
+        }
+
+        private fun createMediaSource(url: String?): MediaSource {
+            return if (url?.contains("file://") == true || url?.contains("content://") == true || url?.contains(
                         RawResourceDataSource.RAW_RESOURCE_SCHEME
                     ) == true
                 ) {
@@ -952,17 +1034,37 @@ class MusicPlaybackService : Service() {
                         factory
                     ).createMediaSource(makeMediaItem(url))
                 }
-            mCurrentMediaPlayer.setMediaSource(mediaSource)
+        }
+
+        /**
+         * Replaces everything queued after the current item with [audio].
+         */
+        fun setNextDataSource(audio: Audio?) {
+            val current = mCurrentMediaPlayer.currentMediaItemIndex
+            val count = mCurrentMediaPlayer.mediaItemCount
+            if (count > current + 1) {
+                mCurrentMediaPlayer.removeMediaItems(current + 1, count)
+            }
+            audio?.url?.let {
+                mCurrentMediaPlayer.addMediaSource(createMediaSource(it))
+            }
+        }
+
+        /**
+         * Prepares the current item again after an error, it resumes where it stopped.
+         */
+        fun retry() {
             mCurrentMediaPlayer.prepare()
-            mCurrentMediaPlayer.setAudioAttributes(
-                AudioAttributes.Builder().setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
-                    .setUsage(C.USAGE_MEDIA).build(), true
-            )
-            val intent = Intent(AudioEffect.ACTION_OPEN_AUDIO_EFFECT_CONTROL_SESSION)
-            intent.putExtra(AudioEffect.EXTRA_AUDIO_SESSION, audioSessionId)
-            intent.putExtra(AudioEffect.EXTRA_PACKAGE_NAME, mService.get()?.packageName)
-            mService.get()?.sendBroadcast(intent)
-            mService.get()?.notifyChange(PLAYSTATE_CHANGED)
+        }
+
+        /**
+         * Removes the items before the current one after a gapless transition.
+         */
+        fun dropPlayed() {
+            val current = mCurrentMediaPlayer.currentMediaItemIndex
+            if (current > 0) {
+                mCurrentMediaPlayer.removeMediaItems(0, current)
+            }
         }
 
         fun setDataSource(audio: Audio) {
@@ -1038,6 +1140,12 @@ class MusicPlaybackService : Service() {
                     }
                 }
 
+                override fun onMediaItemTransition(mediaItem: MediaItem?, reason: Int) {
+                    if (reason == Player.MEDIA_ITEM_TRANSITION_REASON_AUTO && isInitialized) {
+                        mService.get()?.onTrackAdvanced()
+                    }
+                }
+
                 override fun onPlayWhenReadyChanged(
                     playWhenReady: Boolean,
                     @PlayWhenReadyChangeReason reason: Int
@@ -1054,7 +1162,7 @@ class MusicPlaybackService : Service() {
                         if (it.errorsCount > 10) {
                             it.errorsCount = 0
                             it.stopSelf()
-                        } else {
+                        } else if (!it.dropNextTrack()) {
                             val playbackPos = mCurrentMediaPlayer.currentPosition
                             it.playCurrentTrack(false)
                             mCurrentMediaPlayer.seekTo(playbackPos)
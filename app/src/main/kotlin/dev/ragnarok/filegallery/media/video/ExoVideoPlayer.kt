@@ -153,7 +153,7 @@ class ExoVideoPlayer(
             return if (url?.contains("file://") == true || url?.contains("content://") == true) {
                 ProgressiveMediaSource.Factory(DefaultDataSource.Factory(context))
                     .createMediaSource(Utils.makeMediaItem(url))
-            } else ProgressiveMediaSource.Factory(Utils.getExoPlayerFactory(userAgent))
+            } else ProgressiveMediaSource.Factory(Utils.getExoPlayerFactory(context, userAgent))
                 .createMediaSource(Utils.makeMediaItem(url))
         }
     }
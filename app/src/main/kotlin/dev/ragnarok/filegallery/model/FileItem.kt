@@ -19,6 +19,13 @@ class FileItem : Parcelable {
     var isHasTag = false
         private set
 
+    // CRC32 of the name and path, computed once, they are the audio id and owner id of the file
+    val fileNameHash: Int
+    val filePathHash: Int
+
+    /**
+     * @param fileNameHash hash read from the files cache, computed from [file_name] when not given
+     */
     constructor(
         @FileType type: Int,
         file_name: String?,
@@ -27,7 +34,9 @@ class FileItem : Parcelable {
         parent_path: String?,
         modification: Long,
         size: Long,
-        canRead: Boolean
+        canRead: Boolean,
+        fileNameHash: Int = hashName(file_name),
+        filePathHash: Int = hashName(file_path)
     ) {
         this.type = type
         this.file_name = file_name
@@ -37,6 +46,8 @@ class FileItem : Parcelable {
         this.size = size
         isCanRead = canRead
         this.modification = modification
+        this.fileNameHash = fileNameHash
+        this.filePathHash = filePathHash
     }
 
     constructor(`in`: Parcel) {
@@ -50,6 +61,8 @@ class FileItem : Parcelable {
         isCanRead = `in`.readByte().toInt() != 0
         isSelected = `in`.readByte().toInt() != 0
         isHasTag = `in`.readByte().toInt() != 0
+        fileNameHash = `in`.readInt()
+        filePathHash = `in`.readInt()
     }
 
     fun checkTag(): FileItem {
@@ -57,11 +70,6 @@ class FileItem : Parcelable {
         return this
     }
 
-    val fileNameHash: Int
-        get() = file_name?.let { calculateCRC32(it) } ?: -1
-    val filePathHash: Int
-        get() = file_path?.let { calculateCRC32(it) } ?: -1
-
     fun setSelected(selected: Boolean): FileItem {
         isSelected = selected
         return this
@@ -86,6 +94,8 @@ class FileItem : Parcelable {
         dest.writeByte((if (isCanRead) 1 else 0).toByte())
         dest.writeByte((if (isSelected) 1 else 0).toByte())
         dest.writeByte((if (isHasTag) 1 else 0).toByte())
+        dest.writeInt(fileNameHash)
+        dest.writeInt(filePathHash)
     }
 
     companion object CREATOR : Parcelable.Creator<FileItem> {
@@ -96,5 +106,9 @@ class FileItem : Parcelable {
         override fun newArray(size: Int): Array<FileItem?> {
             return arrayOfNulls(size)
         }
+
+        fun hashName(value: String?): Int {
+            return value?.let { calculateCRC32(it) } ?: -1
+        }
     }
 }
\ No newline at end of file
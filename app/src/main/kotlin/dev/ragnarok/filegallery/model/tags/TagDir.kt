@@ -17,6 +17,12 @@ class TagDir : Parcelable {
     var path: String? = null
         private set
 
+    // kept in step with name and path, they are the audio id and owner id of the file
+    var fileNameHash = -1
+        private set
+    var filePathHash = -1
+        private set
+
     @get:FileType
     @FileType
     var type = FileType.folder
@@ -27,8 +33,8 @@ class TagDir : Parcelable {
     constructor(`in`: Parcel) {
         id = `in`.readInt()
         owner_id = `in`.readInt()
-        name = `in`.readString()
-        path = `in`.readString()
+        setName(`in`.readString())
+        setPath(`in`.readString())
         type = `in`.readInt()
         size = `in`.readLong()
         isSelected = `in`.readByte().toInt() != 0
@@ -53,11 +59,6 @@ class TagDir : Parcelable {
         return this
     }
 
-    val fileNameHash: Int
-        get() = calculateCRC32(name!!)
-    val filePathHash: Int
-        get() = calculateCRC32(path!!)
-
     fun setId(id: Int): TagDir {
         this.id = id
         return this
@@ -75,11 +76,13 @@ class TagDir : Parcelable {
 
     fun setName(name: String?): TagDir {
         this.name = name
+        fileNameHash = name?.let { calculateCRC32(it) } ?: -1
         return this
     }
 
     fun setPath(path: String?): TagDir {
         this.path = path
+        filePathHash = path?.let { calculateCRC32(it) } ?: -1
         return this
     }
 
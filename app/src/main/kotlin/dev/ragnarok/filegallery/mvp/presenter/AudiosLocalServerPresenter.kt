@@ -3,6 +3,7 @@ package dev.ragnarok.filegallery.mvp.presenter
 import android.content.Context
 import android.os.Bundle
 import dev.ragnarok.filegallery.Includes.networkInterfaces
+import dev.ragnarok.filegallery.Includes.stores
 import dev.ragnarok.filegallery.api.interfaces.ILocalServerApi
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.media.music.MusicPlaybackService.Companion.startForPlayList
@@ -14,8 +15,12 @@ import dev.ragnarok.filegallery.place.PlaceFactory.getPlayerPlace
 import dev.ragnarok.filegallery.settings.Settings.get
 import dev.ragnarok.filegallery.util.FindAt
 import dev.ragnarok.filegallery.util.Utils
+import dev.ragnarok.filegallery.util.rxutils.PageSubscriber
+import dev.ragnarok.filegallery.util.rxutils.RxUtils
+import dev.ragnarok.filegallery.util.rxutils.io.AndroidSchedulers
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.schedulers.Schedulers
 import java.util.concurrent.TimeUnit
 
 class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
@@ -23,7 +28,9 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
     private val audios: MutableList<Audio>
     private val fInteractor: ILocalServerApi
     private var actualDataDisposable = Disposable.disposed()
-    private var Foffset = 0
+    private var pages: PageSubscriber<List<Audio>>? = null
+    private var firstPage = true
+    private var shownKey: String? = null
     private var actualDataReceived = false
     private var endOfContent = false
     private var actualDataLoading = false
@@ -56,21 +63,47 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
         viewHost.displayList(audios)
     }
 
-    private fun loadActualData(offset: Int) {
+    private fun loadActualData() {
         actualDataLoading = true
+        endOfContent = false
+        firstPage = true
         resolveRefreshingView()
-        appendDisposable((if (discography) fInteractor.getDiscography(
+        if (audios.isEmpty()) {
+            appendDisposable(stores.remoteListingStore().get(cacheKey(), Audio.serializer())
+                .fromIOToMain()
+                .subscribe({ onCachedDataReceived(it) }, RxUtils.ignore()))
+        }
+        subscribePages(0)
+    }
+
+    private fun subscribePages(offset: Int) {
+        pages?.dispose()
+        pages = (if (discography) fInteractor.getDiscographyPages(
             offset,
             GET_COUNT,
             reverse
-        ) else fInteractor.getAudios(offset, GET_COUNT, reverse))
-            .fromIOToMain()
-            .subscribe({
-                onActualDataReceived(
-                    offset,
-                    it
-                )
-            }) { t: Throwable -> onActualDataGetError(t) })
+        ) else fInteractor.getAudioPages(offset, GET_COUNT, reverse))
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread(), false, 1)
+            .subscribeWith(
+                PageSubscriber({ onActualDataReceived(it) }, {
+                    pages = null
+                    onActualDataGetError(it)
+                }) { endOfContent = true })
+    }
+
+    /**
+     * A failed stream is over, the next scroll starts a new one after the loaded items.
+     */
+    private fun loadNextPage() {
+        actualDataLoading = true
+        resolveRefreshingView()
+        val current = pages
+        if (current == null) {
+            subscribePages(if (firstPage) 0 else audios.size)
+        } else {
+            current.requestNext()
+        }
     }
 
     private fun onActualDataGetError(t: Throwable) {
@@ -84,22 +117,51 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
         resolveRefreshingView()
     }
 
-    private fun onActualDataReceived(offset: Int, data: List<Audio>) {
-        Foffset = offset + GET_COUNT
+    private fun cacheKey(): String {
+        return (if (discography) "discography:" else "audios:") + reverse
+    }
+
+    private fun onCachedDataReceived(data: List<Audio>) {
+        if (!firstPage || audios.isNotEmpty()) {
+            return
+        }
+        audios.addAll(data)
+        shownKey = cacheKey()
+        view?.notifyListChanged()
+    }
+
+    private fun onActualDataReceived(data: List<Audio>) {
+        if (firstPage) {
+            firstPage = false
+            val key = cacheKey()
+            appendDisposable(stores.remoteListingStore().put(key, Audio.serializer(), data)
+                .onErrorReturnItem(true)
+                .fromIOToMain()
+                .subscribe { changed -> onFirstPageReceived(key, data, changed) })
+            return
+        }
+        actualDataLoading = false
+        shownKey = null
+        val startSize = audios.size
+        audios.addAll(data)
+        view?.notifyDataAdded(
+            startSize,
+            data.size
+        )
+        resolveRefreshingView()
+    }
+
+    /**
+     * The stored copy already on screen is kept when the server sent the same page.
+     */
+    private fun onFirstPageReceived(key: String, data: List<Audio>, changed: Boolean) {
         actualDataLoading = false
-        endOfContent = data.isEmpty()
         actualDataReceived = true
-        if (offset == 0) {
+        if (changed || shownKey != key) {
             audios.clear()
             audios.addAll(data)
+            shownKey = key
             view?.notifyListChanged()
-        } else {
-            val startSize = audios.size
-            audios.addAll(data)
-            view?.notifyDataAdded(
-                startSize,
-                data.size
-            )
         }
         resolveRefreshingView()
     }
@@ -112,7 +174,7 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
         } else {
             true
         }
-        loadActualData(0)
+        loadActualData()
     }
 
     private fun resolveRefreshingView() {
@@ -123,6 +185,7 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
 
     override fun onDestroyed() {
         actualDataDisposable.dispose()
+        pages?.dispose()
         super.onDestroyed()
     }
 
@@ -131,7 +194,7 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
             if (search_at.isSearchMode()) {
                 search(false)
             } else {
-                loadActualData(Foffset)
+                loadNextPage()
             }
             return false
         }
@@ -139,6 +202,8 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
     }
 
     private fun doSearch() {
+        pages?.dispose()
+        pages = null
         actualDataLoading = true
         resolveRefreshingView()
         appendDisposable((if (discography) fInteractor.searchDiscography(
@@ -168,6 +233,7 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
         actualDataLoading = false
         actualDataReceived = true
         endOfContent = search_at.isEnded()
+        shownKey = null
         if (this.search_at.getOffset() == 0) {
             audios.clear()
             audios.addAll(data)
@@ -242,7 +308,7 @@ class AudiosLocalServerPresenter(savedInstanceState: Bundle?) :
             search_at.reset(false)
             search(sleep_search)
         } else {
-            loadActualData(0)
+            loadActualData()
         }
     }
 
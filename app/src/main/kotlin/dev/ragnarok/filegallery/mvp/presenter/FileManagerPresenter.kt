@@ -2,28 +2,31 @@ package dev.ragnarok.filegallery.mvp.presenter
 
 import android.net.Uri
 import android.os.Bundle
-import android.os.Environment
 import android.os.Parcelable
 import dev.ragnarok.filegallery.Includes
 import dev.ragnarok.filegallery.R
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.model.*
 import dev.ragnarok.filegallery.model.tags.TagOwner
-import dev.ragnarok.filegallery.module.parcel.ParcelFlags
-import dev.ragnarok.filegallery.module.parcel.ParcelNative
 import dev.ragnarok.filegallery.mvp.presenter.base.RxSupportPresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.IFileManagerView
-import dev.ragnarok.filegallery.settings.Settings
 import dev.ragnarok.filegallery.upload.IUploadManager
 import dev.ragnarok.filegallery.upload.UploadDestination
 import dev.ragnarok.filegallery.upload.UploadDestination.Companion.forRemotePlay
 import dev.ragnarok.filegallery.upload.UploadIntent
+import dev.ragnarok.filegallery.util.DirectoryScanner
 import dev.ragnarok.filegallery.util.Objects.safeEquals
+import dev.ragnarok.filegallery.util.PathHashIndex
+import dev.ragnarok.filegallery.util.rxutils.RxUtils
+import io.reactivex.rxjava3.core.BackpressureStrategy
 import io.reactivex.rxjava3.core.Completable
-import io.reactivex.rxjava3.core.Single
+import io.reactivex.rxjava3.core.Flowable
+import io.reactivex.rxjava3.core.FlowableEmitter
+import io.reactivex.rxjava3.schedulers.Schedulers
 import java.io.File
-import java.io.FilenameFilter
 import java.util.*
+import kotlin.math.max
 
 class FileManagerPresenter(
     private var path: File,
@@ -32,6 +35,11 @@ class FileManagerPresenter(
 ) : RxSupportPresenter<IFileManagerView>(savedInstanceState) {
     private val fileList: ArrayList<FileItem> = ArrayList()
     private val fileListSearch: ArrayList<FileItem> = ArrayList()
+    private val pathIndex = PathHashIndex<FileItem> { it.filePathHash }
+    private var scrolledItem: FileItem? = null
+
+    // roots whose index was brought up to date since the presenter was created
+    private val refreshedIndexRoots = HashSet<String>()
     private var isLoading = false
     private val basePath = path.absolutePath
     private val directoryScrollPositions = HashMap<String, Parcelable>()
@@ -45,47 +53,8 @@ class FileManagerPresenter(
         view?.updateSelectedMode(selectedOwner != null)
     }
 
-    @Suppress("DEPRECATION")
-    private val filter: FilenameFilter = FilenameFilter { dir: File, filename: String ->
-        val sel = File(dir, filename)
-        if (sel.absolutePath == File(
-                Environment.getExternalStorageDirectory(),
-                "Android"
-            ).absolutePath
-        ) {
-            return@FilenameFilter false
-        }
-        var ret = !sel.isHidden && sel.canRead() && (sel.isDirectory && (sel.list()?.size
-            ?: 0) > 0 || !sel.isDirectory)
-        // Filters based on whether the file is hidden or not
-        if (!sel.isDirectory && ret) {
-            ret = false
-            for (i in Settings.get().main().photoExt()) {
-                if (sel.extension.contains(i, true)) {
-                    ret = true
-                    break
-                }
-            }
-            if (!ret) {
-                for (i in Settings.get().main().audioExt()) {
-                    if (sel.extension.contains(i, true)) {
-                        ret = true
-                        break
-                    }
-                }
-            }
-            if (!ret) {
-                for (i in Settings.get().main().videoExt()) {
-                    if (sel.extension.contains(i, true)) {
-                        ret = true
-                        break
-                    }
-                }
-            }
-        }
-        ret
-    }
     private var q: String? = null
+    private var searchEnded = true
 
     fun canRefresh(): Boolean {
         return q == null
@@ -104,6 +73,8 @@ class FileManagerPresenter(
         } else {
             query
         }
+        searchEnded = true
+        pathIndex.invalidate()
         if (q == null) {
             fileListSearch.clear()
             view?.resolveEmptyText(fileList.isEmpty())
@@ -129,14 +100,21 @@ class FileManagerPresenter(
                 isLoading = true
                 view?.resolveEmptyText(false)
                 view?.resolveLoading(isLoading)
-                appendDisposable(rxSearchFiles().fromIOToMain().subscribe({
-                    fileListSearch.clear()
-                    fileListSearch.addAll(it)
-                    isLoading = false
-                    view?.resolveEmptyText(fileListSearch.isEmpty())
-                    view?.resolveLoading(isLoading)
-                    view?.displayData(fileListSearch)
-                    view?.updatePathString(q ?: return@subscribe)
+                val query = q ?: return
+                val root = path.absolutePath
+                val fileIndex = Includes.stores.fileIndexStore()
+                appendDisposable(fileIndex.isIndexed(root).flatMap {
+                    if (it) {
+                        fileIndex.search(root, query, 0, SEARCH_COUNT)
+                    } else {
+                        fileIndex.updateIndex(root)
+                            .flatMap { fileIndex.search(root, query, 0, SEARCH_COUNT) }
+                    }
+                }.fromIOToMain().subscribe({
+                    onSearchPage(query, 0, it)
+                    if (refreshedIndexRoots.add(root)) {
+                        refreshSearchIndex(root)
+                    }
                 }, {
                     view?.showThrowable(it)
                     isLoading = false
@@ -146,6 +124,63 @@ class FileManagerPresenter(
         }
     }
 
+    private fun onSearchPage(query: String, offset: Int, items: List<FileItem>) {
+        if (offset == 0) {
+            fileListSearch.clear()
+        }
+        fileListSearch.addAll(items)
+        pathIndex.invalidate()
+        searchEnded = items.size < SEARCH_COUNT
+        isLoading = false
+        view?.resolveEmptyText(fileListSearch.isEmpty())
+        view?.resolveLoading(isLoading)
+        view?.displayData(fileListSearch)
+        view?.updatePathString(query)
+    }
+
+    /**
+     * Walks [root] once for changes made since it was indexed, then searches the
+     * query shown at that moment again.
+     */
+    private fun refreshSearchIndex(root: String) {
+        val fileIndex = Includes.stores.fileIndexStore()
+        appendDisposable(fileIndex.updateIndex(root).fromIOToMain().subscribe({
+            val query = q
+            if (isLoading || query == null || path.absolutePath != root) {
+                return@subscribe
+            }
+            val count = max(fileListSearch.size, SEARCH_COUNT)
+            appendDisposable(fileIndex.search(root, query, 0, count).fromIOToMain().subscribe({
+                if (!isLoading && q == query) {
+                    onSearchPage(query, 0, it)
+                }
+            }, RxUtils.ignore()))
+        }, {
+            refreshedIndexRoots.remove(root)
+        }))
+    }
+
+    fun fireScrollToEnd() {
+        val query = q
+        if (isLoading || searchEnded || query == null) {
+            return
+        }
+        isLoading = true
+        view?.resolveLoading(isLoading)
+        val offset = fileListSearch.size
+        appendDisposable(
+            Includes.stores.fileIndexStore()
+                .search(path.absolutePath, query, offset, SEARCH_COUNT)
+                .fromIOToMain().subscribe({
+                    onSearchPage(query, offset, it)
+                }, {
+                    view?.showThrowable(it)
+                    isLoading = false
+                    view?.resolveLoading(isLoading)
+                })
+        )
+    }
+
     override fun onGuiCreated(viewHost: IFileManagerView) {
         super.onGuiCreated(viewHost)
         viewHost.displayData(if (q == null) fileList else fileListSearch)
@@ -155,12 +190,6 @@ class FileManagerPresenter(
         viewHost.updateSelectedMode(selectedOwner != null)
     }
 
-    private class ItemModificationComparator : Comparator<FileItem> {
-        override fun compare(lhs: FileItem, rhs: FileItem): Int {
-            return rhs.modification.compareTo(lhs.modification)
-        }
-    }
-
     fun backupDirectoryScroll(scroll: Parcelable) {
         directoryScrollPositions[path.absolutePath] = scroll
     }
@@ -215,6 +244,7 @@ class FileManagerPresenter(
                 .subscribe({
                     fileList.clear()
                     fileList.addAll(it)
+                    pathIndex.invalidate()
                     isLoading = false
                     view?.resolveEmptyText(fileList.isEmpty())
                     view?.resolveLoading(isLoading)
@@ -246,9 +276,34 @@ class FileManagerPresenter(
         isLoading = true
         view?.resolveEmptyText(false)
         view?.resolveLoading(isLoading)
+        val progressive = fileList.isEmpty()
+        val scanned = if (progressive) fileList else ArrayList()
         appendDisposable(rxLoadFileList().fromIOToMain().subscribe({
-            fileList.clear()
-            fileList.addAll(it)
+            // every chunk is sorted, merging keeps the shown list sorted without a full sort
+            DirectoryScanner.merge(scanned, it)
+            if (progressive) {
+                pathIndex.invalidate()
+                view?.resolveEmptyText(false)
+                view?.resolveLoading(false)
+                view?.notifyAllChanged()
+            }
+        }, {
+            if (progressive) {
+                // a partly read folder must not look complete, the list was empty before
+                fileList.clear()
+                pathIndex.invalidate()
+                view?.notifyAllChanged()
+            }
+            view?.showThrowable(it)
+            isLoading = false
+            view?.resolveEmptyText(fileList.isEmpty())
+            view?.resolveLoading(isLoading)
+        }, {
+            if (!progressive) {
+                fileList.clear()
+                fileList.addAll(scanned)
+            }
+            pathIndex.invalidate()
             isLoading = false
             view?.resolveEmptyText(fileList.isEmpty())
             view?.resolveLoading(isLoading)
@@ -257,133 +312,57 @@ class FileManagerPresenter(
             if (k != null) {
                 view?.restoreScroll(k)
             }
-        }, {
-            view?.showThrowable(it)
-            isLoading = false
-            view?.resolveLoading(isLoading)
         }))
     }
 
-    private fun rxSearchFiles(): Single<ArrayList<FileItem>> {
-        return Single.create {
-            val fileListTmp = ArrayList<FileItem>()
-            searchFile(fileListTmp, path)
-            val dirsList = ArrayList<FileItem>()
-            val flsList = ArrayList<FileItem>()
-            for (i in fileListTmp) {
-                if (i.type == FileType.folder) dirsList.add(i) else flsList.add(i)
+    private fun rxLoadFileList(): Flowable<List<FileItem>> {
+        val dir = path
+        return Flowable.create({ emitter: FlowableEmitter<List<FileItem>> ->
+            val fileListTmp = if (dir.exists()) DirectoryScanner.scan(dir) {
+                emitter.onNext(it)
+                !emitter.isCancelled
+            } else ArrayList<FileItem>()
+            if (emitter.isCancelled) {
+                return@create
             }
-            Collections.sort(dirsList, ItemModificationComparator())
-            Collections.sort(flsList, ItemModificationComparator())
-            fileListTmp.clear()
-            fileListTmp.addAll(dirsList)
-            fileListTmp.addAll(flsList)
-            it.onSuccess(fileListTmp)
-        }
-    }
-
-    private fun searchFile(files: ArrayList<FileItem>, dir: File) {
-        if (dir.exists() && dir.canRead()) {
-            val fList = dir.list(filter)
-            if (fList != null) {
-                for (i in fList.indices) {
-                    // Convert into file path
-                    val file = File(dir, fList[i])
-                    if (file.isDirectory) {
-                        searchFile(files, file)
-                    }
-                    val canRead = file.canRead()
-                    val mod = file.lastModified()
-
-                    if (file.name.lowercase(Locale.getDefault())
-                            .contains(q?.lowercase(Locale.getDefault()).toString())
-                    ) {
-                        files.add(
-                            FileItem(
-                                getExt(file),
-                                fList[i],
-                                file.absolutePath,
-                                dir.name,
-                                dir.absolutePath,
-                                mod,
-                                if (file.isDirectory) getFolderFilesCount(file) else file.length(),
-                                canRead
-                            ).checkTag()
-                        )
-                    }
-                }
-            }
-        }
+            Includes.stores.searchQueriesStore().insertFiles(dir.absolutePath, fileListTmp)
+                .blockingAwait()
+            emitter.onComplete()
+        }, BackpressureStrategy.BUFFER)
     }
 
-    private fun getFolderFilesCount(file: File): Long {
-        if (!Settings.get().main().isEnable_dirs_files_count()) {
-            return -1
-        }
-        return file.listFiles()?.size?.toLong() ?: -1
+    private fun indexOf(item: FileItem): Int {
+        val list = if (q == null) fileList else fileListSearch
+        return pathIndex.indexOf(list, item.filePathHash) { it === item }
     }
 
-    private fun rxLoadFileList(): Single<ArrayList<FileItem>> {
-        return Single.create {
-            val fileListTmp = ArrayList<FileItem>()
-            if (path.exists() && path.canRead()) {
-                val fList = path.list(filter)
-                if (fList != null) {
-                    for (i in fList.indices) {
-                        // Convert into file path
-                        val file = File(path, fList[i])
-                        val canRead = file.canRead()
-                        val mod = file.lastModified()
-
-                        fileListTmp.add(
-                            i,
-                            FileItem(
-                                getExt(file),
-                                fList[i],
-                                file.absolutePath,
-                                path.name,
-                                path.absolutePath,
-                                mod,
-                                if (file.isDirectory) getFolderFilesCount(file) else file.length(),
-                                canRead
-                            ).checkTag()
-                        )
-                    }
-                    val dirsList = ArrayList<FileItem>()
-                    val flsList = ArrayList<FileItem>()
-                    for (i in fileListTmp) {
-                        if (i.type == FileType.folder) dirsList.add(i) else flsList.add(i)
-                    }
-                    Collections.sort(dirsList, ItemModificationComparator())
-                    Collections.sort(flsList, ItemModificationComparator())
-                    fileListTmp.clear()
-                    fileListTmp.addAll(dirsList)
-                    fileListTmp.addAll(flsList)
-                }
-            }
-            Includes.stores.searchQueriesStore().insertFiles(path.absolutePath, fileListTmp)
-                .blockingAwait()
-            it.onSuccess(fileListTmp)
-        }
+    /**
+     * Position of the file played as [audio], its id and owner id are the hashes of the file.
+     */
+    fun indexOfAudio(audio: Audio): Int {
+        val list = if (q == null) fileList else fileListSearch
+        return pathIndex.indexOf(list, audio.ownerId) { it.fileNameHash == audio.id }
     }
 
     fun scrollTo(item: String): Boolean {
-        var ret = false
         val list = if (q == null) fileList else fileListSearch
-        for (i in list.indices) {
-            if (!ret && list[i].file_path == item) {
-                list[i].isSelected = true
-                view?.notifyItemChanged(i)
-                view?.onScrollTo(i)
-                ret = true
-            } else {
-                if (list[i].isSelected) {
-                    list[i].isSelected = false
-                    view?.notifyItemChanged(i)
-                }
+        scrolledItem?.let {
+            it.isSelected = false
+            val pos = indexOf(it)
+            if (pos != -1) {
+                view?.notifyItemChanged(pos)
             }
         }
-        return ret
+        scrolledItem = null
+        val pos = pathIndex.indexOf(list, FileItem.hashName(item)) { it.file_path == item }
+        if (pos == -1) {
+            return false
+        }
+        list[pos].isSelected = true
+        scrolledItem = list[pos]
+        view?.notifyItemChanged(pos)
+        view?.onScrollTo(pos)
+        return true
     }
 
     private fun doFixDirTime(dir: String, isRoot: Boolean) {
@@ -444,8 +423,7 @@ class FileManagerPresenter(
                     Includes.stores.searchQueriesStore().deleteTagDirByPath(op)
                         .fromIOToMain().subscribe({
                             item.checkTag()
-                            val list = if (q == null) fileList else fileListSearch
-                            view?.notifyItemChanged(list.indexOf(item))
+                            view?.notifyItemChanged(indexOf(item))
                         }, {
                             view?.showThrowable(it)
                         })
@@ -457,8 +435,7 @@ class FileManagerPresenter(
                     .insertTagDir((selectedOwner ?: return).id, item)
                     .fromIOToMain().subscribe({
                         item.checkTag()
-                        val list = if (q == null) fileList else fileListSearch
-                        view?.notifyItemChanged(list.indexOf(item))
+                        view?.notifyItemChanged(indexOf(item))
                     }, {
                         view?.showThrowable(it)
                     })
@@ -475,8 +452,7 @@ class FileManagerPresenter(
                         Includes.stores.searchQueriesStore().deleteTagDirByPath(op)
                             .fromIOToMain().subscribe({
                                 item.checkTag()
-                                val list = if (q == null) fileList else fileListSearch
-                                view?.notifyItemChanged(list.indexOf(item))
+                                view?.notifyItemChanged(indexOf(item))
                             }, {
                                 view?.showThrowable(it)
                             })
@@ -488,8 +464,7 @@ class FileManagerPresenter(
                         .insertTagDir((selectedOwner ?: return).id, item)
                         .fromIOToMain().subscribe({
                             item.checkTag()
-                            val list = if (q == null) fileList else fileListSearch
-                            view?.notifyItemChanged(list.indexOf(item))
+                            view?.notifyItemChanged(indexOf(item))
                         }, {
                             view?.showThrowable(it)
                         })
@@ -499,16 +474,11 @@ class FileManagerPresenter(
         }
         if (item.type == FileType.photo) {
             val list = if (q == null) fileList else fileListSearch
-            var index = 0
-            var o = 0
-            val mem = ParcelNative.create(ParcelFlags.NULL_LIST)
-            for (i in list) {
-                if (i.type != FileType.photo && i.type != FileType.video) {
-                    continue
-                }
-                if (i.file_path == item.file_path) {
-                    index = o
-                }
+            val (source, index) = GallerySource.of(
+                list,
+                { it.type == FileType.photo || it.type == FileType.video },
+                { it.file_path == item.file_path }
+            ) { i ->
                 val photo = Photo()
                 photo.setId(i.fileNameHash)
                 photo.setOwnerId(i.filePathHash)
@@ -520,11 +490,9 @@ class FileManagerPresenter(
                     i.type == FileType.video || i.file_name.toString().endsWith("gif", true)
                 )
                 photo.setText(i.file_name)
-                mem.writeParcelable(photo)
-                o++
+                photo
             }
-            mem.writeFirstInt(o)
-            view?.displayGalleryUnSafe(mem.nativePointer, index, false)
+            view?.displayGallery(source, index)
         } else if (item.type == FileType.video) {
             val v = Video()
             v.setId(item.fileNameHash)
@@ -629,30 +597,16 @@ class FileManagerPresenter(
         uploadManager.enqueue(listOf(intent))
     }
 
-    @FileType
-    private fun getExt(file: File): Int {
-        if (file.isDirectory) {
-            return FileType.folder
-        }
-        for (i in Settings.get().main().photoExt()) {
-            if (file.extension.contains(i, true)) {
-                return FileType.photo
-            }
-        }
-        for (i in Settings.get().main().videoExt()) {
-            if (file.extension.contains(i, true)) {
-                return FileType.video
-            }
-        }
-        for (i in Settings.get().main().audioExt()) {
-            if (file.extension.contains(i, true)) {
-                return FileType.audio
-            }
-        }
-        return FileType.error
+    companion object {
+        private const val SEARCH_COUNT = 200
     }
 
     init {
         loadFiles(back = false, caches = true)
+        appendDisposable(
+            Includes.stores.fileIndexStore().updateIndex(basePath)
+                .subscribeOn(Schedulers.io())
+                .subscribe(RxUtils.ignore(), RxUtils.ignore())
+        )
     }
 }
\ No newline at end of file
@@ -1,16 +1,16 @@
 package dev.ragnarok.filegallery.mvp.presenter
 
 import android.os.Bundle
-import android.os.Parcelable
 import dev.ragnarok.filegallery.Includes
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.model.*
-import dev.ragnarok.filegallery.module.parcel.ParcelFlags
-import dev.ragnarok.filegallery.module.parcel.ParcelNative
 import dev.ragnarok.filegallery.mvp.presenter.base.RxSupportPresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.IFileManagerRemoteView
 import dev.ragnarok.filegallery.nonNullNoEmpty
+import dev.ragnarok.filegallery.subscribeIOAndIgnoreResults
 import dev.ragnarok.filegallery.util.Objects.safeEquals
+import io.reactivex.rxjava3.core.Single
 import java.util.*
 
 class FileManagerRemotePresenter(
@@ -19,7 +19,7 @@ class FileManagerRemotePresenter(
     private val fileList: ArrayList<FileRemote> = ArrayList()
     private val fileListSearch: ArrayList<FileRemote> = ArrayList()
     private var isLoading = false
-    private val directoryScrollPositions = HashMap<String?, Parcelable>()
+    private val directoryScrollPositions = HashMap<String?, Int>()
     private var q: String? = null
     private var path: ArrayList<String> = ArrayList()
 
@@ -96,8 +96,13 @@ class FileManagerRemotePresenter(
         viewHost.resolveLoading(isLoading)
     }
 
-    fun backupDirectoryScroll(scroll: Parcelable) {
-        directoryScrollPositions[buildPath()] = scroll
+    fun backupDirectoryScroll(position: Int) {
+        val dir = buildPath()
+        directoryScrollPositions[dir] = position
+        appendDisposable(
+            Includes.stores.remoteListingStore().putScrollPosition("fs:$dir", position)
+                .subscribeIOAndIgnoreResults()
+        )
     }
 
     fun loadUp() {
@@ -123,16 +128,11 @@ class FileManagerRemotePresenter(
     fun onClickFile(item: FileRemote) {
         if (item.type == FileType.photo) {
             val list = if (q == null) fileList else fileListSearch
-            var index = 0
-            var o = 0
-            val mem = ParcelNative.create(ParcelFlags.NULL_LIST)
-            for (i in list) {
-                if (i.type != FileType.photo && i.type != FileType.video) {
-                    continue
-                }
-                if (i.id == item.id && i.owner_Id == item.owner_Id) {
-                    index = o
-                }
+            val (source, index) = GallerySource.of(
+                list,
+                { it.type == FileType.photo || it.type == FileType.video },
+                { it.id == item.id && it.owner_Id == item.owner_Id }
+            ) { i ->
                 val photo = Photo()
                 photo.setId(i.id)
                 photo.setOwnerId(i.owner_Id)
@@ -144,11 +144,9 @@ class FileManagerRemotePresenter(
                     i.type == FileType.video || i.file_name.toString().endsWith("gif", true)
                 )
                 photo.setText(i.file_name)
-                mem.writeParcelable(photo)
-                o++
+                photo
             }
-            mem.writeFirstInt(o)
-            view?.displayGalleryUnSafe(mem.nativePointer, index, false)
+            view?.displayGallery(source, index)
         } else if (item.type == FileType.video) {
             val v = Video()
             v.setId(item.id)
@@ -239,22 +237,37 @@ class FileManagerRemotePresenter(
         isLoading = true
         view?.resolveEmptyText(false)
         view?.resolveLoading(isLoading)
+        val dir = buildPath()
+        val key = "fs:$dir"
+        val store = Includes.stores.remoteListingStore()
+        val position = directoryScrollPositions.remove(dir)?.let { Single.just(it) }
+            ?: store.getScrollPosition(key).onErrorComplete().defaultIfEmpty(-1)
+        var scrollPending = true
         appendDisposable(
-            Includes.networkInterfaces.localServerApi().fsGet(buildPath()).fromIOToMain()
-                .subscribe({
+            position.flatMapObservable { scroll ->
+                store.cacheFirst(
+                    key,
+                    FileRemote.serializer(),
+                    Includes.networkInterfaces.localServerApi().fsGet(dir)
+                ).map { Pair(it, scroll) }
+            }.fromIOToMain()
+                .subscribe({ (items, scroll) ->
                     fileList.clear()
-                    fileList.addAll(it)
-                    isLoading = false
+                    fileList.addAll(items)
                     view?.resolveEmptyText(fileList.isEmpty())
-                    view?.resolveLoading(isLoading)
                     view?.notifyAllChanged()
-                    val k = directoryScrollPositions.remove(buildPath())
-                    if (k != null) {
-                        view?.restoreScroll(k)
+                    if (scrollPending && scroll >= 0) {
+                        view?.restoreScroll(scroll)
                     }
+                    scrollPending = false
                 }, {
                     view?.showThrowable(it)
                     isLoading = false
+                    view?.resolveEmptyText(fileList.isEmpty())
+                    view?.resolveLoading(isLoading)
+                }, {
+                    isLoading = false
+                    view?.resolveEmptyText(fileList.isEmpty())
                     view?.resolveLoading(isLoading)
                 })
         )
@@ -2,6 +2,7 @@ package dev.ragnarok.filegallery.mvp.presenter
 
 import android.os.Bundle
 import dev.ragnarok.filegallery.Includes.networkInterfaces
+import dev.ragnarok.filegallery.Includes.stores
 import dev.ragnarok.filegallery.api.interfaces.ILocalServerApi
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.model.Photo
@@ -12,8 +13,12 @@ import dev.ragnarok.filegallery.mvp.view.IPhotosLocalServerView
 import dev.ragnarok.filegallery.nonNullNoEmpty
 import dev.ragnarok.filegallery.util.FindAt
 import dev.ragnarok.filegallery.util.Utils
+import dev.ragnarok.filegallery.util.rxutils.PageSubscriber
+import dev.ragnarok.filegallery.util.rxutils.RxUtils
+import dev.ragnarok.filegallery.util.rxutils.io.AndroidSchedulers
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.schedulers.Schedulers
 import java.util.concurrent.TimeUnit
 
 class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
@@ -21,7 +26,9 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
     private val photos: MutableList<Photo>
     private val fInteractor: ILocalServerApi
     private var actualDataDisposable = Disposable.disposed()
-    private var Foffset = 0
+    private var pages: PageSubscriber<List<Photo>>? = null
+    private var firstPage = true
+    private var shownKey: String? = null
     private var actualDataReceived = false
     private var endOfContent = false
     private var actualDataLoading = false
@@ -38,17 +45,43 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
         viewHost.displayList(photos)
     }
 
-    private fun loadActualData(offset: Int) {
+    private fun loadActualData() {
         actualDataLoading = true
+        endOfContent = false
+        firstPage = true
         resolveRefreshingView()
-        appendDisposable(fInteractor.getPhotos(offset, GET_COUNT, reverse)
-            .fromIOToMain()
-            .subscribe({
-                onActualDataReceived(
-                    offset,
-                    it
-                )
-            }) { onActualDataGetError(it) })
+        if (photos.isEmpty()) {
+            appendDisposable(stores.remoteListingStore().get(cacheKey(), Photo.serializer())
+                .fromIOToMain()
+                .subscribe({ onCachedDataReceived(it) }, RxUtils.ignore()))
+        }
+        subscribePages(0)
+    }
+
+    private fun subscribePages(offset: Int) {
+        pages?.dispose()
+        pages = fInteractor.getPhotoPages(offset, GET_COUNT, reverse)
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread(), false, 1)
+            .subscribeWith(
+                PageSubscriber({ onActualDataReceived(it) }, {
+                    pages = null
+                    onActualDataGetError(it)
+                }) { endOfContent = true })
+    }
+
+    /**
+     * A failed stream is over, the next scroll starts a new one after the loaded items.
+     */
+    private fun loadNextPage() {
+        actualDataLoading = true
+        resolveRefreshingView()
+        val current = pages
+        if (current == null) {
+            subscribePages(if (firstPage) 0 else photos.size)
+        } else {
+            current.requestNext()
+        }
     }
 
     private fun onActualDataGetError(t: Throwable) {
@@ -62,22 +95,51 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
         resolveRefreshingView()
     }
 
-    private fun onActualDataReceived(offset: Int, data: List<Photo>) {
-        Foffset = offset + GET_COUNT
+    private fun cacheKey(): String {
+        return "photos:$reverse"
+    }
+
+    private fun onCachedDataReceived(data: List<Photo>) {
+        if (!firstPage || photos.isNotEmpty()) {
+            return
+        }
+        photos.addAll(data)
+        shownKey = cacheKey()
+        view?.notifyListChanged()
+    }
+
+    private fun onActualDataReceived(data: List<Photo>) {
+        if (firstPage) {
+            firstPage = false
+            val key = cacheKey()
+            appendDisposable(stores.remoteListingStore().put(key, Photo.serializer(), data)
+                .onErrorReturnItem(true)
+                .fromIOToMain()
+                .subscribe { changed -> onFirstPageReceived(key, data, changed) })
+            return
+        }
+        actualDataLoading = false
+        shownKey = null
+        val startSize = photos.size
+        photos.addAll(data)
+        view?.notifyDataAdded(
+            startSize,
+            data.size
+        )
+        resolveRefreshingView()
+    }
+
+    /**
+     * The stored copy already on screen is kept when the server sent the same page.
+     */
+    private fun onFirstPageReceived(key: String, data: List<Photo>, changed: Boolean) {
         actualDataLoading = false
-        endOfContent = data.isEmpty()
         actualDataReceived = true
-        if (offset == 0) {
+        if (changed || shownKey != key) {
             photos.clear()
             photos.addAll(data)
+            shownKey = key
             view?.notifyListChanged()
-        } else {
-            val startSize = photos.size
-            photos.addAll(data)
-            view?.notifyDataAdded(
-                startSize,
-                data.size
-            )
         }
         resolveRefreshingView()
     }
@@ -90,7 +152,7 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
         } else {
             true
         }
-        loadActualData(0)
+        loadActualData()
     }
 
     private fun resolveRefreshingView() {
@@ -101,6 +163,7 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
 
     override fun onDestroyed() {
         actualDataDisposable.dispose()
+        pages?.dispose()
         super.onDestroyed()
     }
 
@@ -109,7 +172,7 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
             if (search_at.isSearchMode()) {
                 search(false)
             } else {
-                loadActualData(Foffset)
+                loadNextPage()
             }
             return false
         }
@@ -117,6 +180,8 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
     }
 
     private fun doSearch() {
+        pages?.dispose()
+        pages = null
         actualDataLoading = true
         resolveRefreshingView()
         appendDisposable(fInteractor.searchPhotos(
@@ -141,6 +206,7 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
         actualDataLoading = false
         actualDataReceived = true
         endOfContent = search_at.isEnded()
+        shownKey = null
         if (this.search_at.getOffset() == 0) {
             photos.clear()
             photos.addAll(data)
@@ -189,6 +255,8 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
         val p = ParcelNative.fromNative(ptr).readParcelableList(Photo.NativeCreator) ?: return
         photos.clear()
         photos.addAll(p)
+        shownKey = null
+        view?.notifyListChanged()
         view?.scrollTo(
             position
         )
@@ -223,7 +291,7 @@ class PhotosLocalServerPresenter(savedInstanceState: Bundle?) :
             search_at.reset(false)
             search(sleep_search)
         } else {
-            loadActualData(0)
+            loadActualData()
         }
     }
 
@@ -9,11 +9,12 @@ import dev.ragnarok.filegallery.model.FileType
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.model.tags.TagDir
-import dev.ragnarok.filegallery.module.parcel.ParcelFlags
-import dev.ragnarok.filegallery.module.parcel.ParcelNative
+import dev.ragnarok.filegallery.module.StringHash.calculateCRC32
 import dev.ragnarok.filegallery.mvp.presenter.base.RxSupportPresenter
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 import dev.ragnarok.filegallery.mvp.view.ITagDirView
 import dev.ragnarok.filegallery.util.Objects
+import dev.ragnarok.filegallery.util.PathHashIndex
 import java.util.*
 
 class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
@@ -21,6 +22,8 @@ class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
     private val tagDirData: ArrayList<TagDir> = ArrayList()
     private val tagDirDataSearch: ArrayList<TagDir> = ArrayList()
     private var q: String? = null
+    private val pathIndex = PathHashIndex<TagDir> { it.filePathHash }
+    private var scrolledItem: TagDir? = null
     private val storage: ISearchRequestHelperStorage =
         Includes.stores.searchQueriesStore()
 
@@ -39,6 +42,7 @@ class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
         } else {
             query
         }
+        pathIndex.invalidate()
         if (q == null) {
             tagDirDataSearch.clear()
             view?.displayData(tagDirData)
@@ -74,43 +78,48 @@ class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
                 .subscribe(
                     {
                         tagDirData.removeAt(pos)
+                        pathIndex.invalidate()
                         view?.notifyRemove(pos)
                     }, { t: Throwable -> onActualDataGetError(t) })
         )
     }
 
+    /**
+     * Position of the file played as [audio], its id and owner id are the hashes of the file.
+     */
+    fun indexOfAudio(audio: Audio): Int {
+        val list = if (q == null) tagDirData else tagDirDataSearch
+        return pathIndex.indexOf(list, audio.ownerId) { it.fileNameHash == audio.id }
+    }
+
     fun scrollTo(item: String): Boolean {
-        var ret = false
         val list = tagDirData
-        for (i in list.indices) {
-            if (!ret && list[i].path == item) {
-                list[i].isSelected = true
-                view?.notifyItemChanged(i)
-                view?.onScrollTo(i)
-                ret = true
-            } else {
-                if (list[i].isSelected) {
-                    list[i].isSelected = false
-                    view?.notifyItemChanged(i)
-                }
+        scrolledItem?.let { old ->
+            old.isSelected = false
+            val pos = pathIndex.indexOf(list, old.filePathHash) { it === old }
+            if (pos != -1) {
+                view?.notifyItemChanged(pos)
             }
         }
-        return ret
+        scrolledItem = null
+        val pos = pathIndex.indexOf(list, calculateCRC32(item)) { it.path == item }
+        if (pos == -1) {
+            return false
+        }
+        list[pos].isSelected = true
+        scrolledItem = list[pos]
+        view?.notifyItemChanged(pos)
+        view?.onScrollTo(pos)
+        return true
     }
 
     fun onClickFile(item: TagDir) {
         if (item.type == FileType.photo) {
-            val list = tagDirData
-            var index = 0
-            var o = 0
-            val mem = ParcelNative.create(ParcelFlags.NULL_LIST)
-            for (i in list) {
-                if (i.type != FileType.photo && i.type != FileType.video) {
-                    continue
-                }
-                if (i.path == item.path) {
-                    index = o
-                }
+            val (source, index) = GallerySource.of(
+                tagDirData,
+                { it.type == FileType.photo || it.type == FileType.video },
+                { it.path == item.path }
+            ) { i ->
                 val photo = Photo()
                 photo.setId(i.fileNameHash)
                 photo.setOwnerId(i.filePathHash)
@@ -119,11 +128,9 @@ class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
                 photo.setLocal(true)
                 photo.setGif(i.type == FileType.video || i.name.toString().endsWith("gif", true))
                 photo.setText(i.name)
-                mem.writeParcelable(photo)
-                o++
+                photo
             }
-            mem.writeFirstInt(o)
-            view?.displayGalleryUnSafe(mem.nativePointer, index, false)
+            view?.displayGallery(source, index)
         } else if (item.type == FileType.video) {
             val v = Video()
             v.setId(item.fileNameHash)
@@ -177,6 +184,7 @@ class TagDirPresenter(private val owner_id: Int, savedInstanceState: Bundle?) :
     private fun onActualDataReceived(data: List<TagDir>) {
         tagDirData.clear()
         tagDirData.addAll(data)
+        pathIndex.invalidate()
         view?.notifyChanges()
     }
 
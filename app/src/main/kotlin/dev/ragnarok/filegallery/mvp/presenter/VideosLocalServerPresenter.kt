@@ -2,6 +2,7 @@ package dev.ragnarok.filegallery.mvp.presenter
 
 import android.os.Bundle
 import dev.ragnarok.filegallery.Includes.networkInterfaces
+import dev.ragnarok.filegallery.Includes.stores
 import dev.ragnarok.filegallery.api.interfaces.ILocalServerApi
 import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.model.Video
@@ -10,8 +11,12 @@ import dev.ragnarok.filegallery.mvp.view.IVideosLocalServerView
 import dev.ragnarok.filegallery.nonNullNoEmpty
 import dev.ragnarok.filegallery.util.FindAt
 import dev.ragnarok.filegallery.util.Utils
+import dev.ragnarok.filegallery.util.rxutils.PageSubscriber
+import dev.ragnarok.filegallery.util.rxutils.RxUtils
+import dev.ragnarok.filegallery.util.rxutils.io.AndroidSchedulers
 import io.reactivex.rxjava3.core.Single
 import io.reactivex.rxjava3.disposables.Disposable
+import io.reactivex.rxjava3.schedulers.Schedulers
 import java.util.concurrent.TimeUnit
 
 class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
@@ -19,7 +24,9 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
     private val videos: MutableList<Video>
     private val fInteractor: ILocalServerApi
     private var actualDataDisposable = Disposable.disposed()
-    private var Foffset = 0
+    private var pages: PageSubscriber<List<Video>>? = null
+    private var firstPage = true
+    private var shownKey: String? = null
     private var actualDataReceived = false
     private var endOfContent = false
     private var actualDataLoading = false
@@ -36,17 +43,43 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
         fireRefresh(false)
     }
 
-    private fun loadActualData(offset: Int) {
+    private fun loadActualData() {
         actualDataLoading = true
+        endOfContent = false
+        firstPage = true
         resolveRefreshingView()
-        appendDisposable(fInteractor.getVideos(offset, GET_COUNT, reverse)
-            .fromIOToMain()
-            .subscribe({
-                onActualDataReceived(
-                    offset,
-                    it
-                )
-            }) { onActualDataGetError(it) })
+        if (videos.isEmpty()) {
+            appendDisposable(stores.remoteListingStore().get(cacheKey(), Video.serializer())
+                .fromIOToMain()
+                .subscribe({ onCachedDataReceived(it) }, RxUtils.ignore()))
+        }
+        subscribePages(0)
+    }
+
+    private fun subscribePages(offset: Int) {
+        pages?.dispose()
+        pages = fInteractor.getVideoPages(offset, GET_COUNT, reverse)
+            .subscribeOn(Schedulers.io())
+            .observeOn(AndroidSchedulers.mainThread(), false, 1)
+            .subscribeWith(
+                PageSubscriber({ onActualDataReceived(it) }, {
+                    pages = null
+                    onActualDataGetError(it)
+                }) { endOfContent = true })
+    }
+
+    /**
+     * A failed stream is over, the next scroll starts a new one after the loaded items.
+     */
+    private fun loadNextPage() {
+        actualDataLoading = true
+        resolveRefreshingView()
+        val current = pages
+        if (current == null) {
+            subscribePages(if (firstPage) 0 else videos.size)
+        } else {
+            current.requestNext()
+        }
     }
 
     private fun onActualDataGetError(t: Throwable) {
@@ -60,22 +93,51 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
         resolveRefreshingView()
     }
 
-    private fun onActualDataReceived(offset: Int, data: List<Video>) {
-        Foffset = offset + GET_COUNT
+    private fun cacheKey(): String {
+        return "videos:$reverse"
+    }
+
+    private fun onCachedDataReceived(data: List<Video>) {
+        if (!firstPage || videos.isNotEmpty()) {
+            return
+        }
+        videos.addAll(data)
+        shownKey = cacheKey()
+        view?.notifyListChanged()
+    }
+
+    private fun onActualDataReceived(data: List<Video>) {
+        if (firstPage) {
+            firstPage = false
+            val key = cacheKey()
+            appendDisposable(stores.remoteListingStore().put(key, Video.serializer(), data)
+                .onErrorReturnItem(true)
+                .fromIOToMain()
+                .subscribe { changed -> onFirstPageReceived(key, data, changed) })
+            return
+        }
+        actualDataLoading = false
+        shownKey = null
+        val startSize = videos.size
+        videos.addAll(data)
+        view?.notifyDataAdded(
+            startSize,
+            data.size
+        )
+        resolveRefreshingView()
+    }
+
+    /**
+     * The stored copy already on screen is kept when the server sent the same page.
+     */
+    private fun onFirstPageReceived(key: String, data: List<Video>, changed: Boolean) {
         actualDataLoading = false
-        endOfContent = data.isEmpty()
         actualDataReceived = true
-        if (offset == 0) {
+        if (changed || shownKey != key) {
             videos.clear()
             videos.addAll(data)
+            shownKey = key
             view?.notifyListChanged()
-        } else {
-            val startSize = videos.size
-            videos.addAll(data)
-            view?.notifyDataAdded(
-                startSize,
-                data.size
-            )
         }
         resolveRefreshingView()
     }
@@ -88,7 +150,7 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
         } else {
             true
         }
-        loadActualData(0)
+        loadActualData()
     }
 
     private fun resolveRefreshingView() {
@@ -99,6 +161,7 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
 
     override fun onDestroyed() {
         actualDataDisposable.dispose()
+        pages?.dispose()
         super.onDestroyed()
     }
 
@@ -107,7 +170,7 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
             if (search_at.isSearchMode()) {
                 search(false)
             } else {
-                loadActualData(Foffset)
+                loadNextPage()
             }
             return false
         }
@@ -115,6 +178,8 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
     }
 
     private fun doSearch() {
+        pages?.dispose()
+        pages = null
         actualDataLoading = true
         resolveRefreshingView()
         appendDisposable(fInteractor.searchVideos(
@@ -139,6 +204,7 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
         actualDataLoading = false
         actualDataReceived = true
         endOfContent = search_at.isEnded()
+        shownKey = null
         if (this.search_at.getOffset() == 0) {
             videos.clear()
             videos.addAll(data)
@@ -191,7 +257,7 @@ class VideosLocalServerPresenter(savedInstanceState: Bundle?) :
             search_at.reset(false)
             search(sleep_search)
         } else {
-            loadActualData(0)
+            loadActualData()
         }
     }
 
@@ -0,0 +1,81 @@
+package dev.ragnarok.filegallery.mvp.presenter.photo
+
+import android.util.LruCache
+import dev.ragnarok.filegallery.model.Photo
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Photos of a gallery backed by the items of the list it was opened from.
+ * A [Photo] is created only when the pager or the previews line asks for its position
+ * and kept in a small window, so opening a folder of any size copies item references only.
+ * Sources are handed to [PhotoPagerActivity][dev.ragnarok.filegallery.activity.PhotoPagerActivity]
+ * by id, the same way native parcel pointers are.
+ */
+class GallerySource<T>(
+    private val items: List<T>,
+    private val creator: (T) -> Photo
+) : AbstractList<Photo>() {
+    private val window = LruCache<Int, Photo>(WINDOW_SIZE)
+
+    override val size: Int
+        get() = items.size
+
+    override fun get(index: Int): Photo {
+        window.get(index)?.let { return it }
+        val photo = creator(items[index])
+        window.put(index, photo)
+        return photo
+    }
+
+    companion object {
+        private const val WINDOW_SIZE = 64
+        private const val MAX_PENDING = 4
+        private val nextId = AtomicLong()
+
+        // a gallery that never opened (double tap guard, dead activity) must not pin its list
+        private val sources = object : LinkedHashMap<Long, GallerySource<*>>() {
+            override fun removeEldestEntry(eldest: MutableMap.MutableEntry<Long, GallerySource<*>>?): Boolean {
+                return size > MAX_PENDING
+            }
+        }
+
+        /**
+         * @param all       list the gallery is opened from, items not accepted by [filter] are skipped
+         * @param isCurrent matches the clicked item, its index in the gallery is returned
+         * @return the source and the start position
+         */
+        fun <T> of(
+            all: List<T>,
+            filter: (T) -> Boolean,
+            isCurrent: (T) -> Boolean,
+            creator: (T) -> Photo
+        ): Pair<GallerySource<T>, Int> {
+            val items = ArrayList<T>()
+            var index = 0
+            for (i in all) {
+                if (!filter(i)) {
+                    continue
+                }
+                if (isCurrent(i)) {
+                    index = items.size
+                }
+                items.add(i)
+            }
+            return Pair(GallerySource(items, creator), index)
+        }
+
+        fun register(source: GallerySource<*>): Long {
+            val id = nextId.incrementAndGet()
+            synchronized(sources) {
+                sources[id] = source
+            }
+            return id
+        }
+
+        fun take(id: Long): GallerySource<*>? {
+            synchronized(sources) {
+                return sources.remove(id)
+            }
+        }
+    }
+}
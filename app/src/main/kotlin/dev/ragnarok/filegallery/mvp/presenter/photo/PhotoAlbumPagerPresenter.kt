@@ -16,12 +16,13 @@ class PhotoAlbumPagerPresenter(
     savedInstanceState: Bundle?
 ) : PhotoPagerPresenter(ArrayList(0), context, savedInstanceState) {
     private val photosInteractor: ILocalServerApi = networkInterfaces.localServerApi()
+    private val photos: ArrayList<Photo> = ArrayList()
     private val invertPhotoRev: Boolean
     private var canLoad: Boolean
     private fun loadData() {
         if (!canLoad) return
         changeLoadingNowState(true)
-        appendDisposable(photosInteractor.getPhotos(mPhotos.size, COUNT_PER_LOAD, invertPhotoRev)
+        appendDisposable(photosInteractor.getPhotos(photos.size, COUNT_PER_LOAD, invertPhotoRev)
             .fromIOToMain()
             .subscribe({ data: MutableList<Photo> -> onActualPhotosReceived(data) }) { t: Throwable ->
                 onActualDataGetError(
@@ -36,7 +37,7 @@ class PhotoAlbumPagerPresenter(
 
     override fun close() {
         if (GalleryNative.isNativeLoaded) {
-            val ptr = ParcelNative.createParcelableList(mPhotos, ParcelFlags.NULL_LIST)
+            val ptr = ParcelNative.createParcelableList(photos, ParcelFlags.NULL_LIST)
             view?.returnInfo(
                 currentIndex,
                 ptr
@@ -52,7 +53,7 @@ class PhotoAlbumPagerPresenter(
             canLoad = false
             return
         }
-        mPhotos.addAll(data)
+        photos.addAll(data)
         refreshPagerView()
         resolveButtonsBarVisible()
         resolveToolbarVisibility()
@@ -74,7 +75,8 @@ class PhotoAlbumPagerPresenter(
     init {
         canLoad = true
         this.invertPhotoRev = invertPhotoRev
-        mPhotos.addAll(ParcelNative.fromNative(source).readParcelableList(Photo.NativeCreator)!!)
+        photos.addAll(ParcelNative.fromNative(source).readParcelableList(Photo.NativeCreator)!!)
+        mPhotos = photos
         currentIndex = index
         refreshPagerView()
         resolveButtonsBarVisible()
@@ -7,7 +7,6 @@ import android.content.pm.ResolveInfo
 import android.graphics.Bitmap
 import android.graphics.drawable.Drawable
 import android.net.Uri
-import android.nfc.FormatException
 import android.os.Build
 import android.os.Bundle
 import androidx.browser.customtabs.CustomTabColorSchemeParams
@@ -18,6 +17,7 @@ import com.google.android.material.dialog.MaterialAlertDialogBuilder
 import com.squareup.picasso3.BitmapTarget
 import com.squareup.picasso3.Picasso
 import dev.ragnarok.filegallery.R
+import dev.ragnarok.filegallery.fromIOToMain
 import dev.ragnarok.filegallery.model.Photo
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.mvp.presenter.base.RxSupportPresenter
@@ -30,15 +30,16 @@ import dev.ragnarok.filegallery.settings.Settings.get
 import dev.ragnarok.filegallery.util.AssertUtils
 import dev.ragnarok.filegallery.util.DownloadWorkUtils.doDownloadPhoto
 import dev.ragnarok.filegallery.util.qr.*
+import io.reactivex.rxjava3.core.Single
 import java.io.File
 import java.util.*
 
 open class PhotoPagerPresenter internal constructor(
-    initialData: ArrayList<Photo>,
+    initialData: List<Photo>,
     private val context: Context,
     savedInstanceState: Bundle?
 ) : RxSupportPresenter<IPhotoPagerView>(savedInstanceState) {
-    protected var mPhotos: ArrayList<Photo> = initialData
+    protected var mPhotos: List<Photo> = initialData
     protected var currentIndex = 0
     private var mLoadingNow = false
     private var mFullScreen = false
@@ -159,20 +160,9 @@ open class PhotoPagerPresenter internal constructor(
         if (generatedQRCode == null) {
             return "error"
         }
-        val width: Int = generatedQRCode.width
-        val height: Int = generatedQRCode.height
-        val pixels = IntArray(width * height)
-        generatedQRCode.getPixels(pixels, 0, width, 0, 0, width, height)
-        val source = RGBLuminanceSource(width, height, pixels)
-        val binaryBitmap = BinaryBitmap(HybridBinarizer(source))
-        val reader = QRCodeReader()
         val result: Result = try {
-            reader.decode(binaryBitmap)
-        } catch (e: NotFoundException) {
-            return e.localizedMessage
-        } catch (e: ChecksumException) {
-            return e.localizedMessage
-        } catch (e: FormatException) {
+            QrDecoder.decode(generatedQRCode)
+        } catch (e: ReaderException) {
             return e.localizedMessage
         }
         return result.text
@@ -221,24 +211,11 @@ open class PhotoPagerPresenter internal constructor(
         PicassoInstance.with().load(current.photo_url)
             .into(object : BitmapTarget {
                 override fun onBitmapLoaded(bitmap: Bitmap, from: Picasso.LoadedFrom) {
-                    val data = decodeFromBitmap(bitmap)
-                    MaterialAlertDialogBuilder(context)
-                        .setIcon(R.drawable.qr_code)
-                        .setMessage(data)
-                        .setTitle(getString(R.string.qr))
-                        .setPositiveButton(R.string.button_open) { _: DialogInterface?, _: Int ->
-                            openLinkInBrowser(context, data)
-                        }
-                        .setNeutralButton(R.string.button_copy) { _: DialogInterface?, _: Int ->
-                            val clipboard = context.getSystemService(
-                                Context.CLIPBOARD_SERVICE
-                            ) as ClipboardManager?
-                            val clip = ClipData.newPlainText("response", data)
-                            clipboard?.setPrimaryClip(clip)
-                            view?.customToast?.showToast(R.string.copied_to_clipboard)
-                        }
-                        .setCancelable(true)
-                        .show()
+                    appendDisposable(Single.fromCallable { decodeFromBitmap(bitmap) ?: "error" }
+                        .fromIOToMain()
+                        .subscribe({ showQRResult(context, it) }) {
+                            view?.customToast?.showToastThrowable(it)
+                        })
                 }
 
                 override fun onBitmapFailed(e: Exception, errorDrawable: Drawable?) {
@@ -249,6 +226,26 @@ open class PhotoPagerPresenter internal constructor(
             })
     }
 
+    private fun showQRResult(context: Activity, data: String) {
+        MaterialAlertDialogBuilder(context)
+            .setIcon(R.drawable.qr_code)
+            .setMessage(data)
+            .setTitle(getString(R.string.qr))
+            .setPositiveButton(R.string.button_open) { _: DialogInterface?, _: Int ->
+                openLinkInBrowser(context, data)
+            }
+            .setNeutralButton(R.string.button_copy) { _: DialogInterface?, _: Int ->
+                val clipboard = context.getSystemService(
+                    Context.CLIPBOARD_SERVICE
+                ) as ClipboardManager?
+                val clip = ClipData.newPlainText("response", data)
+                clipboard?.setPrimaryClip(clip)
+                view?.customToast?.showToast(R.string.copied_to_clipboard)
+            }
+            .setCancelable(true)
+            .show()
+    }
+
     private fun DownloadResult(Prefix: String?, diru: File, photo: Photo) {
         var dir = diru
         if (Prefix != null && get().main().isPhoto_to_user_dir()) {
@@ -3,19 +3,32 @@ package dev.ragnarok.filegallery.mvp.presenter.photo
 import android.content.Context
 import android.os.Bundle
 import dev.ragnarok.filegallery.model.Photo
+import dev.ragnarok.filegallery.module.GalleryNative
+import dev.ragnarok.filegallery.module.parcel.ParcelFlags
 import dev.ragnarok.filegallery.module.parcel.ParcelNative
 
 class TmpGalleryPagerPresenter(
-    source: Long, index: Int, context: Context?,
+    source: GallerySource<*>?, index: Int, context: Context?,
     savedInstanceState: Bundle?
 ) : PhotoPagerPresenter(ArrayList(0), context!!, savedInstanceState) {
     override fun close() {
-        view?.returnFileInfo(currentFile)
+        val photo = mPhotos.getOrNull(currentIndex)
+        if (photo?.photo_url?.startsWith("file://") == true) {
+            view?.returnFileInfo(currentFile)
+        } else if (photo != null && GalleryNative.isNativeLoaded) {
+            // remote folders look up the photo they should scroll to, the rest is not needed
+            view?.returnInfo(
+                0,
+                ParcelNative.createParcelableList(arrayListOf(photo), ParcelFlags.NULL_LIST)
+            )
+        } else {
+            view?.closeOnly()
+        }
     }
 
     private fun onInitialLoadingFinished(photos: List<Photo>) {
         changeLoadingNowState(false)
-        mPhotos.addAll(photos)
+        mPhotos = photos
         refreshPagerView()
         resolveButtonsBarVisible()
         resolveToolbarVisibility()
@@ -25,8 +38,6 @@ class TmpGalleryPagerPresenter(
     init {
         currentIndex = index
         changeLoadingNowState(true)
-        onInitialLoadingFinished(
-            ParcelNative.fromNative(source).readParcelableList(Photo.NativeCreator)!!
-        )
+        onInitialLoadingFinished(source ?: emptyList())
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,11 @@
 package dev.ragnarok.filegallery.mvp.view
 
-import android.os.Parcelable
 import androidx.annotation.StringRes
 import dev.ragnarok.filegallery.model.Audio
 import dev.ragnarok.filegallery.model.FileRemote
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.mvp.core.IMvpView
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 
 interface IFileManagerRemoteView : IMvpView, IErrorView {
     fun displayData(items: ArrayList<FileRemote>)
@@ -13,12 +13,12 @@ interface IFileManagerRemoteView : IMvpView, IErrorView {
     fun resolveLoading(visible: Boolean)
     fun notifyAllChanged()
     fun updatePathString(file: String?)
-    fun restoreScroll(scroll: Parcelable)
+    fun restoreScroll(position: Int)
 
     fun onScrollTo(pos: Int)
     fun notifyItemChanged(pos: Int)
     fun showMessage(@StringRes res: Int)
-    fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean)
+    fun displayGallery(source: GallerySource<*>, position: Int)
     fun displayVideo(video: Video)
     fun startPlayAudios(audios: ArrayList<Audio>, position: Int)
 }
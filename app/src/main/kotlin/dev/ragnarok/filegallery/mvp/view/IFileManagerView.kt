@@ -6,6 +6,7 @@ import dev.ragnarok.filegallery.model.Audio
 import dev.ragnarok.filegallery.model.FileItem
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.mvp.core.IMvpView
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 
 interface IFileManagerView : IMvpView, IErrorView {
     fun displayData(items: ArrayList<FileItem>)
@@ -14,7 +15,7 @@ interface IFileManagerView : IMvpView, IErrorView {
     fun notifyAllChanged()
     fun updatePathString(file: String)
     fun restoreScroll(scroll: Parcelable)
-    fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean)
+    fun displayGallery(source: GallerySource<*>, position: Int)
     fun displayVideo(video: Video)
     fun startPlayAudios(audios: ArrayList<Audio>, position: Int)
 
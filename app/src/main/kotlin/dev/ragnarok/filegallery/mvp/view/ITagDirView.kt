@@ -4,6 +4,7 @@ import dev.ragnarok.filegallery.model.Audio
 import dev.ragnarok.filegallery.model.Video
 import dev.ragnarok.filegallery.model.tags.TagDir
 import dev.ragnarok.filegallery.mvp.core.IMvpView
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 
 interface ITagDirView : IMvpView, IErrorView {
     fun displayData(data: List<TagDir>)
@@ -12,7 +13,7 @@ interface ITagDirView : IMvpView, IErrorView {
     fun onScrollTo(pos: Int)
     fun notifyItemChanged(pos: Int)
 
-    fun displayGalleryUnSafe(parcelNativePointer: Long, position: Int, reversed: Boolean)
+    fun displayGallery(source: GallerySource<*>, position: Int)
     fun displayVideo(video: Video)
     fun startPlayAudios(audios: ArrayList<Audio>, position: Int)
 }
@@ -0,0 +1,67 @@
+package dev.ragnarok.filegallery.picasso
+
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import android.util.LruCache
+import dev.ragnarok.filegallery.db.interfaces.IFileIndexStorage
+import dev.ragnarok.filegallery.util.DirectoryScanner
+import dev.ragnarok.filegallery.util.MediaClassifier
+import java.io.File
+
+/**
+ * Picks the newest photo, video or audio file of a folder for its cover.
+ * The file index answers when it is up to date with the folder mtime, otherwise the
+ * names are read in one pass and only media names are stat'ed, without sorting.
+ * The choice is remembered per (folder path, folder mtime).
+ */
+class FolderCoverResolver(private val indexStore: IFileIndexStorage) {
+    private val resolved = LruCache<String, String>(CACHE_SIZE)
+
+    fun resolve(dir: File): File? {
+        val path = dir.absolutePath
+        val modification = dir.lastModified()
+        val key = path + "\u0000" + modification
+        resolved.get(key)?.let { return if (it.isEmpty()) null else File(it) }
+        val cover = try {
+            indexStore.findNewestMedia(path, modification).blockingGet()
+        } catch (e: Exception) {
+            null
+        } ?: scan(dir)
+        resolved.put(key, cover ?: "")
+        return cover?.let { File(it) }
+    }
+
+    private fun scan(dir: File): String? {
+        val names = dir.list() ?: return null
+        val prefix = if (dir.absolutePath.endsWith(File.separatorChar)) {
+            dir.absolutePath
+        } else dir.absolutePath + File.separator
+        var newest: String? = null
+        var newestModification = Long.MIN_VALUE
+        for (name in names) {
+            if (name.startsWith('.') || !MediaClassifier.isMedia(name)) {
+                continue
+            }
+            val path = prefix + name
+            val stat = try {
+                Os.stat(path)
+            } catch (e: ErrnoException) {
+                continue
+            }
+            if (!OsConstants.S_ISREG(stat.st_mode)) {
+                continue
+            }
+            val modification = DirectoryScanner.modificationMillis(stat)
+            if (modification > newestModification && DirectoryScanner.canRead(path)) {
+                newest = path
+                newestModification = modification
+            }
+        }
+        return newest
+    }
+
+    companion object {
+        private const val CACHE_SIZE = 512
+    }
+}
@@ -6,7 +6,7 @@ import android.graphics.Bitmap
 import android.os.StatFs
 import com.squareup.picasso3.BitmapSafeResize
 import com.squareup.picasso3.Picasso
-import dev.ragnarok.filegallery.Constants
+import dev.ragnarok.filegallery.api.HttpTransport
 import dev.ragnarok.filegallery.settings.Settings
 import dev.ragnarok.filegallery.util.CoverSafeResize
 import dev.ragnarok.filegallery.util.Logger
@@ -46,16 +46,11 @@ class PicassoInstance @SuppressLint("CheckResult") private constructor(
     private fun create(): Picasso {
         Logger.d(TAG, "Picasso singleton creation")
         getCache_data()
-        val builder: OkHttpClient.Builder = OkHttpClient.Builder()
+        val builder: OkHttpClient.Builder = HttpTransport.builder()
             .cache(cache_data).addNetworkInterceptor(Interceptor { chain: Interceptor.Chain ->
                 chain.proceed(chain.request()).newBuilder()
                     .header("Cache-Control", "max-age=86400").build()
             })
-            .addInterceptor(Interceptor { chain: Interceptor.Chain ->
-                val request = chain.request().newBuilder()
-                    .addHeader("User-Agent", Constants.USER_AGENT).build()
-                chain.proceed(request)
-            })
         BitmapSafeResize.setMaxResolution(Settings.get().main().getMaxBitmapResolution())
         BitmapSafeResize.setHardwareRendering(Settings.get().main().getRendering_mode())
         CoverSafeResize.setMaxResolution(Settings.get().main().getMaxThumbResolution())
@@ -89,10 +84,26 @@ class PicassoInstance @SuppressLint("CheckResult") private constructor(
             return cache
         }
 
+        @Volatile
+        private var thumbnailStore: ThumbnailStore? = null
+
+        fun getThumbnailStore(context: Context): ThumbnailStore {
+            thumbnailStore ?: run {
+                synchronized(this) {
+                    if (thumbnailStore == null) {
+                        val cache = getCoversPath(context)
+                        thumbnailStore = ThumbnailStore(cache, calculateDiskCacheSize(cache))
+                    }
+                }
+            }
+            return thumbnailStore!!
+        }
+
         @Throws(IOException::class)
         fun clear_cache() {
             instance?.getCache_data()
             instance?.cache_data?.evictAll()
+            thumbnailStore?.clear()
         }
 
         // from picasso sources
@@ -14,25 +14,29 @@ import com.squareup.picasso3.Request
 import com.squareup.picasso3.RequestHandler
 import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.Includes
-import dev.ragnarok.filegallery.fragment.FileManagerFragment.Companion.isExtension
+import dev.ragnarok.filegallery.model.FileType
 import dev.ragnarok.filegallery.module.GalleryNative
 import dev.ragnarok.filegallery.module.StringHash
 import dev.ragnarok.filegallery.module.animation.AnimatedFileFrame
-import dev.ragnarok.filegallery.settings.Settings
 import dev.ragnarok.filegallery.util.CoverSafeResize
+import dev.ragnarok.filegallery.util.MediaClassifier
 import dev.ragnarok.filegallery.util.Utils
 import okio.Source
 import okio.source
 import java.io.*
-import java.util.*
 
 class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
     companion object {
+        private val EMPTY = ByteArray(0)
+
         fun toSha1(str: String): String {
             return StringHash.calculateSha1(str)
         }
     }
 
+    private val store = PicassoInstance.getThumbnailStore(context)
+    private val coverResolver = FolderCoverResolver(Includes.stores.fileIndexStore())
+
     override fun canHandleRequest(data: Request): Boolean {
         return data.uri != null && data.uri!!.path != null && data.uri!!.lastPathSegment != null && "thumb_file" == data.uri?.scheme
     }
@@ -57,44 +61,6 @@ class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
         return inputStream.source()
     }
 
-    private val filter: FilenameFilter = FilenameFilter { dir: File, filename: String ->
-        val sel = File(dir, filename)
-        var ret = !sel.isHidden && sel.canRead() && !sel.isDirectory
-        // Filters based on whether the file is hidden or not
-        if (ret) {
-            ret = false
-            for (i in Settings.get().main().photoExt()) {
-                if (sel.extension.contains(i, true)) {
-                    ret = true
-                    break
-                }
-            }
-            if (!ret) {
-                for (i in Settings.get().main().audioExt()) {
-                    if (sel.extension.contains(i, true)) {
-                        ret = true
-                        break
-                    }
-                }
-            }
-            if (!ret) {
-                for (i in Settings.get().main().videoExt()) {
-                    if (sel.extension.contains(i, true)) {
-                        ret = true
-                        break
-                    }
-                }
-            }
-        }
-        ret
-    }
-
-    private class ItemModificationComparator : Comparator<File> {
-        override fun compare(lhs: File, rhs: File): Int {
-            return rhs.lastModified().compareTo(lhs.lastModified())
-        }
-    }
-
     private fun getExifRotation(orientation: Int) =
         when (orientation) {
             ExifInterface.ORIENTATION_ROTATE_90, ExifInterface.ORIENTATION_TRANSPOSE -> 90
@@ -103,79 +69,74 @@ class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
             else -> 0
         }
 
-    private fun work(requestUri: Uri, dir: File, request: Request, callback: Callback) {
-        if (dir.exists()) {
-            if (dir.length() <= 0) {
-                callback.onError(Throwable("Cache file empty"))
-                return
-            }
-            try {
-                callback.onSuccess(
-                    Result.Bitmap(
-                        BitmapUtils.decodeStream(
-                            getSource(Uri.fromFile(dir)),
-                            request
-                        ), Picasso.LoadedFrom.DISK
-                    )
+    private fun loadCached(key: String, request: Request, callback: Callback): Boolean {
+        val data = store.get(key) ?: return false
+        if (data.isEmpty()) {
+            callback.onError(Throwable("Cache file empty"))
+            return true
+        }
+        try {
+            callback.onSuccess(
+                Result.Bitmap(
+                    BitmapUtils.decodeStream(ByteArrayInputStream(data).source(), request),
+                    Picasso.LoadedFrom.DISK
                 )
-            } catch (e: Exception) {
-                callback.onError(e)
-            }
+            )
+        } catch (e: Exception) {
+            callback.onError(e)
+        }
+        return true
+    }
+
+    private fun storeThumbnail(key: String, target: Bitmap) {
+        val output = ByteArrayOutputStream()
+        target.compress(
+            if (Utils.hasR()) Bitmap.CompressFormat.WEBP_LOSSY else Bitmap.CompressFormat.JPEG,
+            95,
+            output
+        )
+        store.put(key, output.toByteArray())
+    }
+
+    private fun work(requestUri: Uri, key: String, request: Request, callback: Callback) {
+        if (loadCached(key, request, callback)) {
             return
         }
+        val type = MediaClassifier.classify(requestUri.toString())
         when {
-            isExtension(requestUri.toString(), Settings.get().main().audioExt()) -> {
+            type == FileType.audio -> {
                 var target = getMetadataAudioThumbnail(requestUri)
                 if (target == null) {
-                    dir.createNewFile()
+                    store.put(key, EMPTY)
                     callback.onError(Throwable("Thumb work error"))
                     return
                 } else {
                     target = CoverSafeResize.checkBitmap(target)
-                    val fOutputStream = FileOutputStream(dir)
-                    target.compress(
-                        if (Utils.hasR()) Bitmap.CompressFormat.WEBP_LOSSY else Bitmap.CompressFormat.JPEG,
-                        95,
-                        fOutputStream
-                    )
-
-                    fOutputStream.flush()
-                    fOutputStream.close()
+                    storeThumbnail(key, target)
                 }
                 callback.onSuccess(Result.Bitmap(target, Picasso.LoadedFrom.DISK))
                 return
             }
-            isExtension(
-                requestUri.toString(),
-                Settings.get().main().videoExt()
-            ) || requestUri.toString().endsWith("gif", true) -> {
+            type == FileType.video || requestUri.toString().endsWith("gif", true) -> {
                 var target =
                     if (GalleryNative.isNativeLoaded) AnimatedFileFrame.getThumbnail(requestUri.toFile().absoluteFile) else null
                 if (target == null) {
-                    dir.createNewFile()
+                    store.put(key, EMPTY)
                     callback.onError(Throwable("Thumb work error"))
                     return
                 } else {
                     target = CoverSafeResize.checkBitmap(target)
-                    val fOutputStream = FileOutputStream(dir)
-                    target.compress(
-                        if (Utils.hasR()) Bitmap.CompressFormat.WEBP_LOSSY else Bitmap.CompressFormat.JPEG,
-                        95,
-                        fOutputStream
-                    )
-
-                    fOutputStream.flush()
-                    fOutputStream.close()
+                    storeThumbnail(key, target)
                 }
                 callback.onSuccess(Result.Bitmap(target, Picasso.LoadedFrom.DISK))
                 return
             }
-            isExtension(requestUri.toString(), Settings.get().main().photoExt()) -> {
+            type == FileType.photo -> {
                 var target: Bitmap
                 try {
                     target = BitmapUtils.decodeStream(getSource(requestUri), request)
                 } catch (e: Exception) {
-                    dir.createNewFile()
+                    store.put(key, EMPTY)
                     callback.onError(Throwable("Thumb work error"))
                     return
                 }
@@ -196,15 +157,7 @@ class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
                         target.width, target.height, matrix, true
                     )
                 }
-                val fOutputStream = FileOutputStream(dir)
-                target.compress(
-                    if (Utils.hasR()) Bitmap.CompressFormat.WEBP_LOSSY else Bitmap.CompressFormat.JPEG,
-                    95,
-                    fOutputStream
-                )
-
-                fOutputStream.flush()
-                fOutputStream.close()
+                storeThumbnail(key, target)
                 callback.onSuccess(Result.Bitmap(target, Picasso.LoadedFrom.DISK))
                 return
             }
@@ -223,45 +176,18 @@ class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
             return false
         }
 
-        val dir = File(
-            PicassoInstance.getCoversPath(context),
-            "thumb_" + toSha1(direct.absolutePath + direct.lastModified()) + ".jpg"
-        )
-        if (dir.exists()) {
-            if (dir.length() <= 0) {
-                callback.onError(Throwable("Cache file empty"))
-                return true
-            }
-            try {
-                callback.onSuccess(
-                    Result.Bitmap(
-                        BitmapUtils.decodeStream(
-                            getSource(Uri.fromFile(dir)),
-                            request
-                        ), Picasso.LoadedFrom.DISK
-                    )
-                )
-            } catch (e: Exception) {
-                callback.onError(e)
-            }
+        val key = toSha1(direct.absolutePath + direct.lastModified())
+        if (loadCached(key, request, callback)) {
             return true
         }
 
-        val fList = direct.listFiles(filter)
-        val dst = if (fList != null && fList.isNotEmpty()) {
-            val tmp = fList.toList()
-            Collections.sort(tmp, ItemModificationComparator())
-            tmp[0]
-        } else {
-            null
-        }
+        val dst = coverResolver.resolve(direct)
         if (dst == null) {
             callback.onError(Throwable("Thumb not handle"))
         } else {
-            work(Uri.parse("file://" + dst.absolutePath), dir, request, callback)
+            work(Uri.parse("file://" + dst.absolutePath), key, request, callback)
         }
         return true
-
     }
 
     private fun getExifOrientation(uri: Uri): Int {
@@ -282,10 +208,6 @@ class PicassoMediaMetadataHandler(val context: Context) : RequestHandler() {
         }
         val pt = requestUri.toFile()
 
-        val dir = File(
-            PicassoInstance.getCoversPath(context),
-            "thumb_" + toSha1(pt.absolutePath + pt.lastModified()) + ".jpg"
-        )
-        work(requestUri, dir, request, callback)
+        work(requestUri, toSha1(pt.absolutePath + pt.lastModified()), request, callback)
     }
 }
\ No newline at end of file
@@ -0,0 +1,321 @@
+package dev.ragnarok.filegallery.picasso
+
+import android.util.LruCache
+import dev.ragnarok.filegallery.Constants
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantReadWriteLock
+import kotlin.concurrent.read
+import kotlin.concurrent.write
+
+/**
+ * Encoded thumbnails stored as records in a few append-only pack files:
+ * [short keyLength][key][int dataLength][data]. The index (key -> pack, offset, length)
+ * lives in memory and is rebuilt from the record headers on open. Full packs are memory
+ * mapped once, the growing active pack is read with positional reads. Reads share a read
+ * lock, writes take the write lock. Recently used thumbnails are also kept as bytes in memory.
+ *
+ * A record with empty data marks a file without a thumbnail.
+ * When the packs exceed [maxSize] the least recently used pack is removed,
+ * packs that are mostly dead are compacted into the active one.
+ */
+class ThumbnailStore(private val dir: File, private val maxSize: Long) {
+    private class Pack(val id: Int, val file: File, val channel: FileChannel) {
+        var size = 0L
+        var live = 0L
+        @Volatile
+        var lastAccess = 0L
+
+        @Volatile
+        var mapped: MappedByteBuffer? = null
+    }
+
+    private class Entry(val pack: Pack, val offset: Long, val length: Int, val record: Int)
+
+    private val packSize = (maxSize / PACK_COUNT).coerceAtLeast(MIN_PACK_SIZE)
+    private val index = HashMap<String, Entry>()
+    private val packs = ArrayList<Pack>()
+    private var active: Pack? = null
+    private var totalSize = 0L
+    private val tick = AtomicLong()
+    private val lock = ReentrantReadWriteLock()
+
+    @Volatile
+    private var opened = false
+
+    private val memory = object : LruCache<String, ByteArray>(MEMORY_CACHE_SIZE) {
+        override fun sizeOf(key: String, value: ByteArray): Int {
+            return value.size + key.length
+        }
+    }
+
+    /**
+     * @return null when not cached, an empty array for a file without a thumbnail
+     */
+    fun get(key: String): ByteArray? {
+        memory.get(key)?.let { return it }
+        ensureOpen()
+        var failed: Entry? = null
+        val data = lock.read {
+            val entry = index[key] ?: return null
+            entry.pack.lastAccess = tick.incrementAndGet()
+            try {
+                read(entry)
+            } catch (e: IOException) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+                failed = entry
+                null
+            }
+        }
+        if (data == null) {
+            failed?.let { entry ->
+                lock.write {
+                    if (index[key] === entry) {
+                        index.remove(key)
+                        entry.pack.live -= entry.record
+                    }
+                }
+            }
+            return null
+        }
+        memory.put(key, data)
+        return data
+    }
+
+    fun put(key: String, data: ByteArray) {
+        memory.put(key, data)
+        lock.write {
+            open()
+            try {
+                append(key, data)
+                trim()
+            } catch (e: IOException) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+            }
+        }
+    }
+
+    fun clear() {
+        lock.write {
+            open()
+            memory.evictAll()
+            for (i in packs) {
+                closePack(i)
+                i.file.delete()
+            }
+            packs.clear()
+            index.clear()
+            active = null
+            totalSize = 0
+        }
+    }
+
+    private fun ensureOpen() {
+        if (!opened) {
+            lock.write { open() }
+        }
+    }
+
+    private fun open() {
+        if (opened) {
+            return
+        }
+        if (!dir.exists()) {
+            dir.mkdirs()
+        }
+        val files = dir.listFiles() ?: return
+        val found = ArrayList<Pair<Int, File>>()
+        for (i in files) {
+            val name = i.name
+            if (name.startsWith(PACK_PREFIX) && name.endsWith(PACK_SUFFIX)) {
+                name.substring(PACK_PREFIX.length, name.length - PACK_SUFFIX.length).toIntOrNull()
+                    ?.let { found.add(Pair(it, i)) }
+            } else if (name.startsWith(LEGACY_PREFIX) && i.isFile) {
+                i.delete()
+            }
+        }
+        found.sortBy { it.first }
+        for ((id, file) in found) {
+            try {
+                val pack = openPack(id, file)
+                scanPack(pack)
+                packs.add(pack)
+                totalSize += pack.size
+            } catch (e: IOException) {
+                file.delete()
+            }
+        }
+        active = packs.lastOrNull()?.let { if (it.size < packSize) it else null }
+        opened = true
+    }
+
+    private fun openPack(id: Int, file: File): Pack {
+        return Pack(id, file, RandomAccessFile(file, "rw").channel)
+    }
+
+    private fun closePack(pack: Pack) {
+        pack.mapped = null
+        try {
+            pack.channel.close()
+        } catch (ignored: IOException) {
+        }
+    }
+
+    /**
+     * Rebuilds the index from the record headers, a torn record at the end is cut off.
+     */
+    private fun scanPack(pack: Pack) {
+        val length = pack.channel.size()
+        val buffer = map(pack, length)
+        var offset = 0L
+        while (offset + RECORD_HEADER <= length) {
+            buffer.position(offset.toInt())
+            val keyLength = buffer.short.toInt()
+            if (keyLength <= 0 || offset + RECORD_HEADER + keyLength > length) {
+                break
+            }
+            val keyBytes = ByteArray(keyLength)
+            buffer.get(keyBytes)
+            val dataLength = buffer.int
+            val dataOffset = offset + RECORD_HEADER + keyLength
+            if (dataLength < 0 || dataOffset + dataLength > length) {
+                break
+            }
+            val key = String(keyBytes, Charsets.UTF_8)
+            val record = RECORD_HEADER + keyLength + dataLength
+            index.put(key, Entry(pack, dataOffset, dataLength, record))
+                ?.let { it.pack.live -= it.record }
+            pack.live += record
+            offset = dataOffset + dataLength
+        }
+        if (offset < length) {
+            pack.channel.truncate(offset)
+            pack.mapped = null
+        }
+        pack.size = offset
+    }
+
+    /**
+     * Maps [pack] once its size no longer changes, readers racing here map it twice at worst.
+     */
+    private fun map(pack: Pack, required: Long): MappedByteBuffer {
+        pack.mapped?.let {
+            if (it.capacity() >= required) {
+                return it
+            }
+        }
+        val buffer = pack.channel.map(FileChannel.MapMode.READ_ONLY, 0, pack.channel.size())
+        pack.mapped = buffer
+        return buffer
+    }
+
+    private fun read(entry: Entry): ByteArray {
+        val data = ByteArray(entry.length)
+        if (entry.length <= 0) {
+            return data
+        }
+        if (entry.pack === active) {
+            // a mapping of the active pack would be outgrown by the next append
+            val buffer = ByteBuffer.wrap(data)
+            var position = entry.offset
+            while (buffer.hasRemaining()) {
+                val read = entry.pack.channel.read(buffer, position)
+                if (read < 0) {
+                    throw IOException("Truncated record")
+                }
+                position += read
+            }
+        } else {
+            val buffer = map(entry.pack, entry.offset + entry.length).duplicate()
+            buffer.position(entry.offset.toInt())
+            buffer.get(data)
+        }
+        return data
+    }
+
+    private fun append(key: String, data: ByteArray) {
+        val keyBytes = key.toByteArray(Charsets.UTF_8)
+        var pack = active
+        if (pack == null || pack.size >= packSize) {
+            val id = (packs.lastOrNull()?.id ?: 0) + 1
+            pack = openPack(id, File(dir, PACK_PREFIX + id + PACK_SUFFIX))
+            packs.add(pack)
+            active = pack
+        }
+        val record = ByteBuffer.allocate(RECORD_HEADER + keyBytes.size + data.size)
+        record.putShort(keyBytes.size.toShort())
+        record.put(keyBytes)
+        record.putInt(data.size)
+        record.put(data)
+        record.flip()
+        var position = pack.size
+        while (record.hasRemaining()) {
+            position += pack.channel.write(record, position)
+        }
+        val dataOffset = pack.size + RECORD_HEADER + keyBytes.size
+        index.put(key, Entry(pack, dataOffset, data.size, record.limit()))
+            ?.let { it.pack.live -= it.record }
+        pack.live += record.limit()
+        pack.lastAccess = tick.incrementAndGet()
+        totalSize += position - pack.size
+        pack.size = position
+    }
+
+    private fun trim() {
+        while (totalSize > maxSize && packs.size > 1) {
+            var victim: Pack? = null
+            for (i in packs) {
+                if (i !== active && (victim == null || i.lastAccess < victim.lastAccess)) {
+                    victim = i
+                }
+            }
+            removePack(victim ?: break, false)
+        }
+        for (i in ArrayList(packs)) {
+            if (i !== active && i.live * COMPACT_RATIO < i.size) {
+                removePack(i, true)
+            }
+        }
+    }
+
+    private fun removePack(pack: Pack, keepEntries: Boolean) {
+        val iterator = index.entries.iterator()
+        val moved = if (keepEntries) ArrayList<Pair<String, ByteArray>>() else null
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.value.pack === pack) {
+                moved?.add(Pair(entry.key, read(entry.value)))
+                iterator.remove()
+            }
+        }
+        packs.remove(pack)
+        totalSize -= pack.size
+        closePack(pack)
+        pack.file.delete()
+        if (moved != null) {
+            for ((key, data) in moved) {
+                append(key, data)
+            }
+        }
+    }
+
+    companion object {
+        private const val PACK_PREFIX = "pack_"
+        private const val PACK_SUFFIX = ".bin"
+        private const val LEGACY_PREFIX = "thumb_"
+        private const val RECORD_HEADER = 6
+        private const val PACK_COUNT = 8
+        private const val MIN_PACK_SIZE = 1024L * 1024
+        private const val COMPACT_RATIO = 4
+        private const val MEMORY_CACHE_SIZE = 4 * 1024 * 1024
+    }
+}
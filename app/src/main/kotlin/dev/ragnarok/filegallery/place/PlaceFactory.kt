@@ -6,6 +6,7 @@ import dev.ragnarok.filegallery.fragment.FileManagerFragment
 import dev.ragnarok.filegallery.fragment.TagDirFragment
 import dev.ragnarok.filegallery.fragment.TagOwnerFragment
 import dev.ragnarok.filegallery.model.Video
+import dev.ragnarok.filegallery.mvp.presenter.photo.GallerySource
 
 
 object PlaceFactory {
@@ -48,10 +49,13 @@ object PlaceFactory {
         )
     }
 
-    fun getPhotoLocalPlace(photos: Long, position: Int, invert: Boolean): Place {
+    /**
+     * @param source id from [GallerySource.register]
+     */
+    fun getPhotoLocalPlace(source: Long, position: Int, invert: Boolean): Place {
         return Place(Place.PHOTO_LOCAL).setArguments(
             PhotoPagerActivity.buildArgsForAlbum(
-                photos,
+                source,
                 position,
                 invert
             )
@@ -11,6 +11,10 @@ interface ISettings {
     fun main(): IMainSettings
     fun security(): ISecuritySettings
     interface IMainSettings {
+        /**
+         * Current values, take it once per loop instead of calling the getters per item.
+         */
+        fun snapshot(): MainSettingsSnapshot
         fun getFontSize(): Int
 
         @ThemeOverlay
@@ -42,6 +46,8 @@ interface ISettings {
         fun getMaxThumbResolution(): Int
         fun getRendering_mode(): Int
         fun getFFmpegPlugin(): Int
+        fun getMediaCacheSize(): Int
+        fun getMaxRequestsPerHost(): Int
 
         fun isUse_internal_downloader(): Boolean
 
@@ -1,10 +1,10 @@
 package dev.ragnarok.filegallery.settings
 
 import android.content.Context
+import android.content.SharedPreferences
 import android.content.res.Configuration
 import android.os.Environment
 import de.maxr1998.modernpreferences.PreferenceScreen.Companion.getPreferences
-import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.kJson
 import dev.ragnarok.filegallery.model.LocalServerSettings
 import dev.ragnarok.filegallery.model.PlayerCoverBackgroundSettings
@@ -20,39 +20,60 @@ internal class MainSettings(context: Context) : IMainSettings {
     private val app: Context = context.applicationContext
     private val localServerPublisher: PublishSubject<LocalServerSettings> = PublishSubject.create()
 
-    override fun getFontSize(): Int {
-        return try {
-            getPreferences(app).getString("font_size", "0")!!.trim().toInt()
-        } catch (e: Exception) {
-            0
+    @Volatile
+    private var snapshot: MainSettingsSnapshot? = null
+
+    // preferences keep listeners in a weak map
+    private val listener = SharedPreferences.OnSharedPreferenceChangeListener { _, _ ->
+        rebuildSnapshot()
+    }
+
+    init {
+        getPreferences(app).registerOnSharedPreferenceChangeListener(listener)
+    }
+
+    override fun snapshot(): MainSettingsSnapshot {
+        return snapshot ?: rebuildSnapshot()
+    }
+
+    /**
+     * Called after every write as well, the change listener is dispatched on the main thread
+     * and a read right after apply() would otherwise still see the previous values.
+     */
+    private fun rebuildSnapshot(): MainSettingsSnapshot {
+        synchronized(this) {
+            val built = MainSettingsSnapshot(getPreferences(app), snapshot)
+            snapshot = built
+            return built
         }
     }
 
+    override fun getFontSize(): Int {
+        return snapshot().fontSize
+    }
+
     override val isValidate_tls: Boolean
-        get() = getPreferences(app).getBoolean("validate_tls", true)
+        get() = snapshot().isValidateTls
 
     @ThemeOverlay
     override fun getThemeOverlay(): Int {
-        return try {
-            getPreferences(app).getString("theme_overlay", "0")!!.trim().toInt()
-        } catch (e: Exception) {
-            ThemeOverlay.OFF
-        }
+        return snapshot().themeOverlay
     }
 
     override fun getMainThemeKey(): String {
-        val preferences = getPreferences(app)
-        return preferences.getString("app_theme", "cold")!!
+        return snapshot().mainThemeKey
     }
 
     override fun setMainTheme(key: String) {
         val preferences = getPreferences(app)
         preferences.edit().putString("app_theme", key).apply()
+        rebuildSnapshot()
     }
 
     override fun switchNightMode(@NightMode key: Int) {
         val preferences = getPreferences(app)
         preferences.edit().putString("night_switch", key.toString()).apply()
+        rebuildSnapshot()
     }
 
     override fun isDarkModeEnabled(context: Context): Boolean {
@@ -63,28 +84,23 @@ internal class MainSettings(context: Context) : IMainSettings {
 
     @NightMode
     override fun getNightMode(): Int {
-        return try {
-            getPreferences(app)
-                .getString("night_switch", NightMode.FOLLOW_SYSTEM.toString())!!.trim().toInt()
-        } catch (e: Exception) {
-            NightMode.FOLLOW_SYSTEM
-        }
+        return snapshot().nightMode
     }
 
     override fun isDeveloper_mode(): Boolean {
-        return getPreferences(app).getBoolean("developer_mode", true)
+        return snapshot().isDeveloperMode
     }
 
     override fun isEnable_cache_ui_anim(): Boolean {
-        return getPreferences(app).getBoolean("enable_cache_ui_anim", false)
+        return snapshot().isEnableCacheUiAnim
     }
 
     override fun isEnable_dirs_files_count(): Boolean {
-        return getPreferences(app).getBoolean("enable_dirs_files_count", true)
+        return snapshot().isEnableDirsFilesCount
     }
 
     override fun isDeleteDisabled(): Boolean {
-        return getPreferences(app).getBoolean("delete_disabled", false)
+        return snapshot().isDeleteDisabled
     }
 
     @Suppress("DEPRECATION")
@@ -121,12 +137,7 @@ internal class MainSettings(context: Context) : IMainSettings {
     }
 
     override fun getLocalServer(): LocalServerSettings {
-        val ret = getPreferences(app).getString("local_media_server", null)
-        return if (ret == null) {
-            LocalServerSettings()
-        } else {
-            kJson.decodeFromString(LocalServerSettings.serializer(), ret)
-        }
+        return snapshot().localServer
     }
 
     override fun setLocalServer(settings: LocalServerSettings) {
@@ -135,17 +146,12 @@ internal class MainSettings(context: Context) : IMainSettings {
                 "local_media_server",
                 kJson.encodeToString(LocalServerSettings.serializer(), settings)
             ).apply()
+        rebuildSnapshot()
         localServerPublisher.onNext(settings)
     }
 
     override fun getPlayerCoverBackgroundSettings(): PlayerCoverBackgroundSettings {
-        val ret =
-            getPreferences(app).getString("player_background_settings_json", null)
-        return if (ret == null) {
-            PlayerCoverBackgroundSettings().set_default()
-        } else {
-            kJson.decodeFromString(PlayerCoverBackgroundSettings.serializer(), ret)
-        }
+        return snapshot().playerCoverBackgroundSettings
     }
 
     override fun setPlayerCoverBackgroundSettings(settings: PlayerCoverBackgroundSettings) {
@@ -154,15 +160,11 @@ internal class MainSettings(context: Context) : IMainSettings {
                 "player_background_settings_json",
                 kJson.encodeToString(PlayerCoverBackgroundSettings.serializer(), settings)
             ).apply()
+        rebuildSnapshot()
     }
 
     override fun getSlidrSettings(): SlidrSettings {
-        val ret = getPreferences(app).getString("slidr_settings_json", null)
-        return if (ret == null) {
-            SlidrSettings().set_default()
-        } else {
-            kJson.decodeFromString(SlidrSettings.serializer(), ret)
-        }
+        return snapshot().slidrSettings
     }
 
     override fun setSlidrSettings(settings: SlidrSettings) {
@@ -171,67 +173,43 @@ internal class MainSettings(context: Context) : IMainSettings {
                 "slidr_settings_json",
                 kJson.encodeToString(SlidrSettings.serializer(), settings)
             ).apply()
+        rebuildSnapshot()
     }
 
     override fun getMusicLifecycle(): Int {
-        return try {
-            var v = getPreferences(app).getString(
-                "lifecycle_music_service",
-                Constants.AUDIO_PLAYER_SERVICE_IDLE.toString()
-            )!!
-                .trim().toInt()
-            if (v < 60000) {
-                getPreferences(app).edit()
-                    .putString("lifecycle_music_service", "60000").apply()
-                v = 60000
-            }
-            v
-        } catch (e: Exception) {
-            Constants.AUDIO_PLAYER_SERVICE_IDLE
-        }
+        return snapshot().musicLifecycle
     }
 
     override fun getMaxBitmapResolution(): Int {
-        return try {
-            getPreferences(app).getString("max_bitmap_resolution", "4000")!!.trim()
-                .toInt()
-        } catch (e: Exception) {
-            4000
-        }
+        return snapshot().maxBitmapResolution
     }
 
     override fun getMaxThumbResolution(): Int {
-        return try {
-            getPreferences(app).getString("max_thumb_resolution", "384")!!.trim()
-                .toInt()
-        } catch (e: Exception) {
-            384
-        }
+        return snapshot().maxThumbResolution
     }
 
     override fun getRendering_mode(): Int {
-        return try {
-            getPreferences(app).getString("rendering_mode", "0")!!.trim().toInt()
-        } catch (e: Exception) {
-            0
-        }
+        return snapshot().renderingMode
     }
 
     override fun getFFmpegPlugin(): Int {
-        return try {
-            getPreferences(app).getString("ffmpeg_audio_codecs", "1")!!.trim()
-                .toInt()
-        } catch (e: Exception) {
-            1
-        }
+        return snapshot().ffmpegPlugin
+    }
+
+    override fun getMediaCacheSize(): Int {
+        return snapshot().mediaCacheSize
+    }
+
+    override fun getMaxRequestsPerHost(): Int {
+        return snapshot().maxRequestsPerHost
     }
 
     override fun isPlayer_Has_Background(): Boolean {
-        return getPreferences(app).getBoolean("player_has_background", true)
+        return snapshot().isPlayerHasBackground
     }
 
     override fun isShow_mini_player(): Boolean {
-        return getPreferences(app).getBoolean("show_mini_player", true)
+        return snapshot().isShowMiniPlayer
     }
 
     override fun observeLocalServer(): Observable<LocalServerSettings> {
@@ -239,81 +217,63 @@ internal class MainSettings(context: Context) : IMainSettings {
     }
 
     override fun isUse_internal_downloader(): Boolean {
-        return getPreferences(app).getBoolean("use_internal_downloader", true)
+        return snapshot().isUseInternalDownloader
     }
 
     override fun isShow_photos_line(): Boolean {
-        return getPreferences(app).getBoolean("show_photos_line", true)
+        return snapshot().isShowPhotosLine
     }
 
     override fun isDownload_photo_tap(): Boolean {
-        return getPreferences(app).getBoolean("download_photo_tap", true)
+        return snapshot().isDownloadPhotoTap
     }
 
     override fun isAudio_round_icon(): Boolean {
-        return getPreferences(app).getBoolean("audio_round_icon", true)
+        return snapshot().isAudioRoundIcon
     }
 
     override fun isPhoto_to_user_dir(): Boolean {
-        return getPreferences(app).getBoolean("photo_to_user_dir", true)
+        return snapshot().isPhotoToUserDir
     }
 
     override fun isVideo_swipes(): Boolean {
-        return getPreferences(app).getBoolean("video_swipes", true)
+        return snapshot().isVideoSwipes
     }
 
     override fun isVideo_controller_to_decor(): Boolean {
-        return getPreferences(app).getBoolean("video_controller_to_decor", false)
+        return snapshot().isVideoControllerToDecor
     }
 
     override fun isUse_stop_audio(): Boolean {
-        return getPreferences(app).getBoolean("use_stop_audio", false)
+        return snapshot().isUseStopAudio
     }
 
     override fun isRevert_play_audio(): Boolean {
-        return getPreferences(app).getBoolean("revert_play_audio", false)
+        return snapshot().isRevertPlayAudio
     }
 
     override fun videoExt(): Set<String> {
-        return getPreferences(app)
-            .getStringSet("videos_ext", setOf("mp4", "avi", "mpeg"))!!
+        return snapshot().videoExt
     }
 
     override fun photoExt(): Set<String> {
-        return getPreferences(app)
-            .getStringSet("photo_ext", setOf("gif", "jpg", "jpeg", "jpg", "webp", "png", "tiff"))!!
+        return snapshot().photoExt
     }
 
     override fun audioExt(): Set<String> {
-        return getPreferences(app)
-            .getStringSet("audio_ext", setOf("mp3", "ogg", "flac", "opus"))!!
+        return snapshot().audioExt
     }
 
     override val isOngoing_player_notification: Boolean
-        get() = getPreferences(app).getBoolean("ongoing_player_notification", false)
+        get() = snapshot().isOngoingPlayerNotification
 
     @Transformers_Types
     override fun getViewpager_page_transform(): Int {
-        return try {
-            getPreferences(app).getString(
-                "viewpager_page_transform",
-                java.lang.String.valueOf(Transformers_Types.OFF)
-            )!!.trim { it <= ' ' }.toInt()
-        } catch (e: Exception) {
-            Transformers_Types.OFF
-        }
+        return snapshot().viewpagerPageTransform
     }
 
     @Transformers_Types
     override fun getPlayer_cover_transform(): Int {
-        return try {
-            getPreferences(app).getString(
-                "player_cover_transform",
-                java.lang.String.valueOf(Transformers_Types.DEPTH_TRANSFORMER)
-            )!!.trim { it <= ' ' }
-                .toInt()
-        } catch (e: Exception) {
-            Transformers_Types.DEPTH_TRANSFORMER
-        }
+        return snapshot().playerCoverTransform
     }
 }
\ No newline at end of file
@@ -0,0 +1,126 @@
+package dev.ragnarok.filegallery.settings
+
+import android.content.SharedPreferences
+import dev.ragnarok.filegallery.Constants
+import dev.ragnarok.filegallery.kJson
+import dev.ragnarok.filegallery.model.LocalServerSettings
+import dev.ragnarok.filegallery.model.PlayerCoverBackgroundSettings
+import dev.ragnarok.filegallery.model.SlidrSettings
+import dev.ragnarok.filegallery.settings.theme.ThemeOverlay
+import dev.ragnarok.filegallery.view.pager.Transformers_Types
+import kotlinx.serialization.KSerializer
+
+/**
+ * Parsed values of the main settings at one point in time. A new snapshot is built by
+ * [MainSettings] whenever a preference changes and published with a single volatile write,
+ * so reading a setting is a field read. The model objects are shared between readers
+ * and must not be modified, setters take new instances.
+ *
+ * Extension sets equal to the ones of the previous snapshot are carried over by reference,
+ * so caches built from them can be checked with ===.
+ */
+class MainSettingsSnapshot internal constructor(
+    preferences: SharedPreferences,
+    previous: MainSettingsSnapshot?
+) {
+    val fontSize: Int = preferences.int("font_size", 0)
+
+    @ThemeOverlay
+    val themeOverlay: Int = preferences.int("theme_overlay", ThemeOverlay.OFF)
+    val mainThemeKey: String = preferences.getString("app_theme", "cold") ?: "cold"
+
+    @NightMode
+    val nightMode: Int = preferences.int("night_switch", NightMode.FOLLOW_SYSTEM)
+
+    val isValidateTls: Boolean = preferences.getBoolean("validate_tls", true)
+    val isDeveloperMode: Boolean = preferences.getBoolean("developer_mode", true)
+    val isEnableCacheUiAnim: Boolean = preferences.getBoolean("enable_cache_ui_anim", false)
+    val isEnableDirsFilesCount: Boolean = preferences.getBoolean("enable_dirs_files_count", true)
+    val isDeleteDisabled: Boolean = preferences.getBoolean("delete_disabled", false)
+
+    val localServer: LocalServerSettings = preferences.json(
+        "local_media_server", LocalServerSettings.serializer()
+    ) { LocalServerSettings() }
+    val playerCoverBackgroundSettings: PlayerCoverBackgroundSettings = preferences.json(
+        "player_background_settings_json", PlayerCoverBackgroundSettings.serializer()
+    ) { PlayerCoverBackgroundSettings().set_default() }
+    val slidrSettings: SlidrSettings = preferences.json(
+        "slidr_settings_json", SlidrSettings.serializer()
+    ) { SlidrSettings().set_default() }
+
+    val musicLifecycle: Int =
+        preferences.int("lifecycle_music_service", Constants.AUDIO_PLAYER_SERVICE_IDLE)
+            .coerceAtLeast(60000)
+    val maxBitmapResolution: Int = preferences.int("max_bitmap_resolution", 4000)
+    val maxThumbResolution: Int = preferences.int("max_thumb_resolution", 384)
+    val renderingMode: Int = preferences.int("rendering_mode", 0)
+    val ffmpegPlugin: Int = preferences.int("ffmpeg_audio_codecs", 1)
+    val mediaCacheSize: Int = preferences.int("media_cache_size", 256)
+    val maxRequestsPerHost: Int = preferences.int("max_requests_per_host", 16).coerceAtLeast(1)
+
+    val isPlayerHasBackground: Boolean = preferences.getBoolean("player_has_background", true)
+    val isShowMiniPlayer: Boolean = preferences.getBoolean("show_mini_player", true)
+    val isUseInternalDownloader: Boolean =
+        preferences.getBoolean("use_internal_downloader", true)
+    val isShowPhotosLine: Boolean = preferences.getBoolean("show_photos_line", true)
+    val isDownloadPhotoTap: Boolean = preferences.getBoolean("download_photo_tap", true)
+    val isAudioRoundIcon: Boolean = preferences.getBoolean("audio_round_icon", true)
+    val isPhotoToUserDir: Boolean = preferences.getBoolean("photo_to_user_dir", true)
+    val isVideoSwipes: Boolean = preferences.getBoolean("video_swipes", true)
+    val isVideoControllerToDecor: Boolean =
+        preferences.getBoolean("video_controller_to_decor", false)
+    val isUseStopAudio: Boolean = preferences.getBoolean("use_stop_audio", false)
+    val isRevertPlayAudio: Boolean = preferences.getBoolean("revert_play_audio", false)
+    val isOngoingPlayerNotification: Boolean =
+        preferences.getBoolean("ongoing_player_notification", false)
+
+    val videoExt: Set<String> = preferences.stringSet(
+        "videos_ext", setOf("mp4", "avi", "mpeg"), previous?.videoExt
+    )
+    val photoExt: Set<String> = preferences.stringSet(
+        "photo_ext", setOf("gif", "jpg", "jpeg", "jpg", "webp", "png", "tiff"), previous?.photoExt
+    )
+    val audioExt: Set<String> = preferences.stringSet(
+        "audio_ext", setOf("mp3", "ogg", "flac", "opus"), previous?.audioExt
+    )
+
+    @Transformers_Types
+    val viewpagerPageTransform: Int =
+        preferences.int("viewpager_page_transform", Transformers_Types.OFF)
+
+    @Transformers_Types
+    val playerCoverTransform: Int =
+        preferences.int("player_cover_transform", Transformers_Types.DEPTH_TRANSFORMER)
+
+    private companion object {
+        fun SharedPreferences.int(key: String, def: Int): Int {
+            return try {
+                getString(key, def.toString())!!.trim().toInt()
+            } catch (e: Exception) {
+                def
+            }
+        }
+
+        fun <T> SharedPreferences.json(
+            key: String,
+            serializer: KSerializer<T>,
+            def: () -> T
+        ): T {
+            val ret = getString(key, null) ?: return def()
+            return try {
+                kJson.decodeFromString(serializer, ret)
+            } catch (e: Exception) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+                def()
+            }
+        }
+
+        fun SharedPreferences.stringSet(key: String, def: Set<String>, previous: Set<String>?): Set<String> {
+            // the set returned by the preferences must not be kept or modified
+            val ret = getStringSet(key, null)?.toSet() ?: def
+            return if (previous != null && previous == ret) previous else ret
+        }
+    }
+}
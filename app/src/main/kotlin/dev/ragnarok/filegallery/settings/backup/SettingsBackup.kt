@@ -40,6 +40,8 @@ class SettingsBackup {
         var show_mini_player: Boolean? = null
         var lifecycle_music_service: String? = null
         var ffmpeg_audio_codecs: String? = null
+        var media_cache_size: String? = null
+        var max_requests_per_host: String? = null
         var music_dir: String? = null
         var photo_dir: String? = null
         var video_dir: String? = null
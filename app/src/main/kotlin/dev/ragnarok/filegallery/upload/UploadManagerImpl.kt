@@ -75,6 +75,9 @@ class UploadManagerImpl(
     private fun startWithNotification() {
         updateNotification(emptyList())
         notificationUpdateDisposable.add(observeProgress()
+            .distinctUntilChanged { old, new ->
+                old.size == new.size && (old.isEmpty() || old[0].progress == new[0].progress)
+            }
             .observeOn(provideMainThreadScheduler())
             .subscribe { updateNotification(it) })
     }
@@ -0,0 +1,189 @@
+package dev.ragnarok.filegallery.util
+
+import android.os.Build
+import android.os.Environment
+import android.system.ErrnoException
+import android.system.Os
+import android.system.OsConstants
+import android.system.StructStat
+import dev.ragnarok.filegallery.model.FileItem
+import dev.ragnarok.filegallery.model.FileType
+import dev.ragnarok.filegallery.settings.Settings
+import java.io.File
+import java.util.*
+
+/**
+ * Single pass directory reader. Names are read once with one getdents pass,
+ * then every entry costs one stat(2) and one access(2) instead of the
+ * isDirectory/canRead/lastModified/length/list chain of [java.io.File].
+ */
+object DirectoryScanner {
+    private const val FIRST_CHUNK = 64
+    private const val MAX_CHUNK = 4096
+
+    /**
+     * Folders first, then newest first.
+     */
+    val ORDER: Comparator<FileItem> = Comparator { lhs, rhs ->
+        val lDir = lhs.type == FileType.folder
+        val rDir = rhs.type == FileType.folder
+        if (lDir != rDir) {
+            if (lDir) -1 else 1
+        } else {
+            rhs.modification.compareTo(lhs.modification)
+        }
+    }
+
+    @Suppress("DEPRECATION")
+    private val systemAndroidDir: String by lazy {
+        File(Environment.getExternalStorageDirectory(), "Android").absolutePath
+    }
+
+    /**
+     * Reads [dir] and returns all accepted entries sorted by [ORDER].
+     * [onChunk] receives sorted batches of growing size (64, 128, ... 4096) while the
+     * directory is still being read, return false from it to stop scanning.
+     * Empty folders are skipped, their paths are added to [emptyDirs] when given.
+     */
+    fun scan(
+        dir: File,
+        emptyDirs: MutableList<String>? = null,
+        onChunk: ((List<FileItem>) -> Boolean)? = null
+    ): ArrayList<FileItem> {
+        val result = ArrayList<FileItem>()
+        if (!dir.canRead()) {
+            return result
+        }
+        val names = dir.list() ?: return result
+        val dirPath = dir.absolutePath
+        val dirName = dir.name
+        val prefix = if (dirPath.endsWith(File.separatorChar)) dirPath else dirPath + File.separator
+        val config = ScanConfig()
+
+        var chunkLimit = FIRST_CHUNK
+        var chunk = ArrayList<FileItem>(chunkLimit)
+        for (name in names) {
+            val item =
+                readEntry(prefix + name, name, dirName, dirPath, config, emptyDirs) ?: continue
+            chunk.add(item)
+            if (onChunk != null && chunk.size >= chunkLimit) {
+                Collections.sort(chunk, ORDER)
+                result.addAll(chunk)
+                if (!onChunk(chunk)) {
+                    return result
+                }
+                chunkLimit = (chunkLimit * 2).coerceAtMost(MAX_CHUNK)
+                chunk = ArrayList(chunkLimit)
+            }
+        }
+        if (chunk.isNotEmpty()) {
+            Collections.sort(chunk, ORDER)
+            result.addAll(chunk)
+            onChunk?.invoke(chunk)
+        }
+        // every chunk is a sorted run, TimSort merges them in linear time
+        Collections.sort(result, ORDER)
+        return result
+    }
+
+    /**
+     * Merges the sorted [run] into the sorted [target] in one linear pass,
+     * entries equal by [ORDER] keep their arrival order.
+     */
+    fun merge(target: MutableList<FileItem>, run: List<FileItem>) {
+        if (run.isEmpty()) {
+            return
+        }
+        if (target.isEmpty() || ORDER.compare(target[target.size - 1], run[0]) <= 0) {
+            target.addAll(run)
+            return
+        }
+        val merged = ArrayList<FileItem>(target.size + run.size)
+        var i = 0
+        var j = 0
+        while (i < target.size && j < run.size) {
+            if (ORDER.compare(run[j], target[i]) < 0) {
+                merged.add(run[j++])
+            } else {
+                merged.add(target[i++])
+            }
+        }
+        while (i < target.size) {
+            merged.add(target[i++])
+        }
+        while (j < run.size) {
+            merged.add(run[j++])
+        }
+        target.clear()
+        target.addAll(merged)
+    }
+
+    private fun readEntry(
+        path: String,
+        name: String,
+        parentName: String,
+        parentPath: String,
+        config: ScanConfig,
+        emptyDirs: MutableList<String>?
+    ): FileItem? {
+        if (name.startsWith('.') || path == systemAndroidDir) {
+            return null
+        }
+        val stat = try {
+            Os.stat(path)
+        } catch (e: ErrnoException) {
+            return null
+        }
+        if (!canRead(path)) {
+            return null
+        }
+        val isDirectory = OsConstants.S_ISDIR(stat.st_mode)
+        val type: Int
+        val size: Long
+        if (isDirectory) {
+            val count = File(path).list()?.size ?: 0
+            if (count <= 0) {
+                emptyDirs?.add(path)
+                return null
+            }
+            type = FileType.folder
+            size = if (config.countDirFiles) count.toLong() else -1
+        } else {
+            type = MediaClassifier.classify(name)
+            if (type == FileType.error) {
+                return null
+            }
+            size = stat.st_size
+        }
+        return FileItem(
+            type,
+            name,
+            path,
+            parentName,
+            parentPath,
+            modificationMillis(stat),
+            size,
+            true
+        ).checkTag()
+    }
+
+    fun canRead(path: String): Boolean {
+        return try {
+            Os.access(path, OsConstants.R_OK)
+        } catch (e: ErrnoException) {
+            false
+        }
+    }
+
+    fun modificationMillis(stat: StructStat): Long {
+        return if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            stat.st_mtim.tv_sec * 1000 + stat.st_mtim.tv_nsec / 1000000
+        } else {
+            stat.st_mtime * 1000
+        }
+    }
+
+    private class ScanConfig {
+        val countDirFiles = Settings.get().main().isEnable_dirs_files_count()
+    }
+}
@@ -14,6 +14,7 @@ import androidx.core.content.FileProvider
 import androidx.work.*
 import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.R
+import dev.ragnarok.filegallery.api.HttpTransport
 import dev.ragnarok.filegallery.media.music.MusicPlaybackController
 import dev.ragnarok.filegallery.media.music.NotificationHelper
 import dev.ragnarok.filegallery.model.Audio
@@ -22,10 +23,7 @@ import dev.ragnarok.filegallery.nonNullNoEmpty
 import dev.ragnarok.filegallery.settings.Settings
 import dev.ragnarok.filegallery.settings.theme.ThemesController
 import dev.ragnarok.filegallery.util.toast.CustomToast
-import okhttp3.Request
-import java.io.BufferedInputStream
 import java.io.File
-import java.io.FileOutputStream
 import java.text.DateFormat
 import java.text.SimpleDateFormat
 import java.util.*
@@ -317,6 +315,15 @@ object DownloadWorkUtils {
             )
         }
 
+        private fun isCancelled(): Boolean {
+            return try {
+                WorkManager.getInstance(applicationContext).getWorkInfoById(id)
+                    .get()?.state == WorkInfo.State.CANCELLED
+            } catch (e: Exception) {
+                false
+            }
+        }
+
         @Suppress("DEPRECATION")
         protected fun doDownload(
             url: String?,
@@ -341,48 +348,20 @@ object DownloadWorkUtils {
 
             val file = file_v.build()
             try {
-                FileOutputStream(file).use { output ->
-                    if (url.isNullOrEmpty()) throw Exception(applicationContext.getString(R.string.null_image_link))
-                    val builder = Utils.createOkHttp(60)
-                    val request: Request = Request.Builder()
-                        .url(url)
-                        .build()
-                    val response = builder.build().newCall(request).execute()
-                    if (!response.isSuccessful) {
-                        throw Exception(
-                            "Server return " + response.code +
-                                    " " + response.message
-                        )
-                    }
-                    val bfr = response.body.byteStream()
-                    val input = BufferedInputStream(bfr)
-                    val data = ByteArray(80 * 1024)
-                    var bufferLength: Int
-                    var downloadedSize = 0L
-                    var cntlength = response.header("Content-Length")
-                    if (cntlength.isNullOrEmpty()) {
-                        cntlength = response.header("Compressed-Content-Length")
-                    }
-                    var totalSize = 1L
-                    if (cntlength.nonNullNoEmpty()) totalSize = cntlength.toLong()
-                    while (input.read(data).also { bufferLength = it } != -1) {
-                        if (isStopped) {
-                            output.flush()
-                            output.close()
-                            input.close()
-                            File(file).delete()
-                            mNotifyManager.cancel(
-                                id.toString(),
-                                NotificationHelper.NOTIFICATION_DOWNLOADING
-                            )
-                            return false
-                        }
-                        output.write(data, 0, bufferLength)
-                        downloadedSize += bufferLength
-                        mBuilder.setProgress(
-                            100,
-                            (downloadedSize.toDouble() / totalSize * 100).toInt(),
-                            false
+                if (url.isNullOrEmpty()) throw Exception(applicationContext.getString(R.string.null_image_link))
+                val downloader =
+                    ResumableDownloader(HttpTransport.downloadClient, url, File(file))
+                val reporter = ProgressReporter(object : ProgressReporter.Listener {
+                    override fun onProgress(
+                        percentage: Int,
+                        transferred: Long,
+                        total: Long,
+                        bytesPerSecond: Long,
+                        etaSeconds: Long
+                    ) {
+                        mBuilder.setProgress(100, percentage.coerceAtLeast(0), percentage < 0)
+                        mBuilder.setSubText(
+                            if (bytesPerSecond > 0) Utils.BytesToSize(bytesPerSecond) + "/s" else null
                         )
                         show_notification(
                             mBuilder,
@@ -390,17 +369,36 @@ object DownloadWorkUtils {
                             null
                         )
                     }
-                    output.flush()
-                    output.close()
-                    input.close()
-                    if (UseMediaScanner) {
-                        applicationContext.sendBroadcast(
-                            Intent(
-                                Intent.ACTION_MEDIA_SCANNER_SCAN_FILE,
-                                Uri.fromFile(File(file))
-                            )
-                        )
+                })
+                val completed = downloader.download(object : ResumableDownloader.Callback {
+                    override fun onProgress(downloaded: Long, total: Long) {
+                        reporter.update(downloaded, total)
                     }
+
+                    override fun isStopped(): Boolean {
+                        return isStopped
+                    }
+                })
+                if (!completed) {
+                    // a stop by the system is resumed on the next run, a cancel is final
+                    if (isCancelled()) {
+                        downloader.discard()
+                    }
+                    mNotifyManager.cancel(
+                        id.toString(),
+                        NotificationHelper.NOTIFICATION_DOWNLOADING
+                    )
+                    return false
+                }
+                val length = File(file).length()
+                reporter.finish(length, length)
+                if (UseMediaScanner) {
+                    applicationContext.sendBroadcast(
+                        Intent(
+                            Intent.ACTION_MEDIA_SCANNER_SCAN_FILE,
+                            Uri.fromFile(File(file))
+                        )
+                    )
                 }
             } catch (e: Exception) {
                 e.printStackTrace()
@@ -419,11 +417,6 @@ object DownloadWorkUtils {
                     NotificationHelper.NOTIFICATION_DOWNLOAD,
                     NotificationHelper.NOTIFICATION_DOWNLOADING
                 )
-                val result = File(file_v.build())
-                if (result.exists()) {
-                    file_v.setFile(file_v.file + "." + file_v.ext)
-                    result.renameTo(File(file_v.setExt("error").build()))
-                }
                 Utils.inMainThread(object : Utils.SafeCall {
                     override fun call() {
                         CustomToast.createCustomToast(applicationContext, null)
@@ -0,0 +1,119 @@
+package dev.ragnarok.filegallery.util
+
+import dev.ragnarok.filegallery.model.FileType
+import dev.ragnarok.filegallery.settings.Settings
+
+/**
+ * Classifies file names by the photo, video and audio extension lists from the settings.
+ * The lists are compiled into a case folded open addressing table, rebuilt only when
+ * the settings snapshot carries different lists, so a lookup neither parses the settings
+ * nor allocates.
+ */
+object MediaClassifier {
+    @Volatile
+    private var table: Table? = null
+
+    /**
+     * @param name file name or path, the type is taken from the part after the last dot
+     */
+    @FileType
+    fun classify(name: String): Int {
+        val dot = name.lastIndexOf('.')
+        if (dot < 0 || dot == name.length - 1) {
+            return FileType.error
+        }
+        for (i in dot + 1 until name.length) {
+            if (name[i] == '/') {
+                return FileType.error
+            }
+        }
+        return getTable().find(name, dot + 1)
+    }
+
+    fun isMedia(name: String): Boolean {
+        return classify(name) != FileType.error
+    }
+
+    private fun getTable(): Table {
+        val snapshot = Settings.get().main().snapshot()
+        table?.let {
+            if (it.isBuiltFrom(snapshot.photoExt, snapshot.videoExt, snapshot.audioExt)) {
+                return it
+            }
+        }
+        val built = Table(snapshot.photoExt, snapshot.videoExt, snapshot.audioExt)
+        table = built
+        return built
+    }
+
+    private class Table(
+        private val photo: Set<String>,
+        private val video: Set<String>,
+        private val audio: Set<String>
+    ) {
+        private val keys: Array<String?>
+        private val types: IntArray
+        private val mask: Int
+
+        init {
+            var capacity = 16
+            while (capacity < (photo.size + video.size + audio.size) * 2) {
+                capacity = capacity shl 1
+            }
+            keys = arrayOfNulls(capacity)
+            types = IntArray(capacity)
+            mask = capacity - 1
+            // on duplicates the first list wins: photo, video, audio
+            add(photo, FileType.photo)
+            add(video, FileType.video)
+            add(audio, FileType.audio)
+        }
+
+        private fun add(extensions: Set<String>, @FileType type: Int) {
+            for (ext in extensions) {
+                val key = ext.trim().trimStart('.').lowercase()
+                if (key.isEmpty()) {
+                    continue
+                }
+                var i = hash(key, 0) and mask
+                while (true) {
+                    val current = keys[i]
+                    if (current == null) {
+                        keys[i] = key
+                        types[i] = type
+                        break
+                    }
+                    if (current == key) {
+                        break
+                    }
+                    i = (i + 1) and mask
+                }
+            }
+        }
+
+        fun isBuiltFrom(photo: Set<String>, video: Set<String>, audio: Set<String>): Boolean {
+            return this.photo === photo && this.video === video && this.audio === audio
+        }
+
+        @FileType
+        fun find(name: String, start: Int): Int {
+            val length = name.length - start
+            var i = hash(name, start) and mask
+            while (true) {
+                val key = keys[i] ?: return FileType.error
+                if (key.length == length && name.regionMatches(start, key, 0, length, true)) {
+                    return types[i]
+                }
+                i = (i + 1) and mask
+            }
+        }
+
+        private fun hash(value: String, start: Int): Int {
+            var h = 0
+            for (i in start until value.length) {
+                h = 31 * h + Character.toLowerCase(value[i]).code
+            }
+            return h xor (h ushr 16)
+        }
+    }
+}
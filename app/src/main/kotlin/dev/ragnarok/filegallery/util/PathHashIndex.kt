@@ -0,0 +1,44 @@
+package dev.ragnarok.filegallery.util
+
+/**
+ * Position of the items of a list by the hash of their path, for lookups of one item
+ * (now playing track, scroll to file) without walking the list.
+ * The owner of the list calls [invalidate] after changing it, the map is rebuilt
+ * on the next lookup. Items of the same hash are resolved by scanning the list.
+ */
+class PathHashIndex<T>(private val pathHash: (T) -> Int) {
+    private val positions = HashMap<Int, Int>()
+    private var list: List<T>? = null
+
+    fun invalidate() {
+        list = null
+    }
+
+    /**
+     * @param matches checks the found item, the hash is not unique
+     * @return position of the item in [list] or -1
+     */
+    fun indexOf(list: List<T>, hash: Int, matches: (T) -> Boolean): Int {
+        if (list !== this.list) {
+            rebuild(list)
+        }
+        val pos = positions[hash] ?: return -1
+        if (matches(list[pos])) {
+            return pos
+        }
+        for (i in pos + 1 until list.size) {
+            if (pathHash(list[i]) == hash && matches(list[i])) {
+                return i
+            }
+        }
+        return -1
+    }
+
+    private fun rebuild(list: List<T>) {
+        positions.clear()
+        for (i in list.indices.reversed()) {
+            positions[pathHash(list[i])] = i
+        }
+        this.list = list
+    }
+}
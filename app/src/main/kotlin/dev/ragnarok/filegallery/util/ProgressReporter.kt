@@ -0,0 +1,84 @@
+package dev.ragnarok.filegallery.util
+
+/**
+ * Rate limited transfer progress shared by downloads and uploads.
+ * [update] may be called for every buffer written, [Listener.onProgress] is called once
+ * [minIntervalMillis] passed or the percentage moved by [minPercentDelta], but never more
+ * often than every [MIN_GAP] milliseconds. Updates that are not reported allocate nothing.
+ */
+class ProgressReporter(
+    private val listener: Listener,
+    private val minIntervalMillis: Long = DEFAULT_INTERVAL,
+    private val minPercentDelta: Int = 1
+) {
+    interface Listener {
+        /**
+         * @param percentage -1 when the total is unknown
+         * @param etaSeconds -1 when unknown
+         */
+        fun onProgress(
+            percentage: Int,
+            transferred: Long,
+            total: Long,
+            bytesPerSecond: Long,
+            etaSeconds: Long
+        )
+    }
+
+    private var lastTime = -1L
+    private var lastBytes = 0L
+    private var lastPercent = -1
+    private var speed = 0.0
+
+    @Synchronized
+    fun update(transferred: Long, total: Long) {
+        val now = System.nanoTime() / 1000000
+        val percent = percentOf(transferred, total)
+        if (lastTime < 0) {
+            lastTime = now
+            lastBytes = transferred
+            lastPercent = percent
+            listener.onProgress(percent, transferred, total, 0, -1)
+            return
+        }
+        val elapsed = now - lastTime
+        val moved = percent >= 0 && percent - lastPercent >= minPercentDelta
+        if (elapsed < minIntervalMillis && !(moved && elapsed >= MIN_GAP)) {
+            return
+        }
+        report(now, transferred, total, percent)
+    }
+
+    /**
+     * Reports the final state regardless of the limits.
+     */
+    @Synchronized
+    fun finish(transferred: Long, total: Long) {
+        report(System.nanoTime() / 1000000, transferred, total, percentOf(transferred, total))
+    }
+
+    private fun report(now: Long, transferred: Long, total: Long, percent: Int) {
+        val elapsed = now - lastTime
+        if (elapsed > 0 && lastTime >= 0) {
+            val instant = (transferred - lastBytes).toDouble() * 1000 / elapsed
+            speed = if (speed <= 0) instant else speed * (1 - SPEED_SMOOTHING) + instant * SPEED_SMOOTHING
+        }
+        lastTime = now
+        lastBytes = transferred
+        lastPercent = percent
+        val eta = if (total > 0 && speed > 0) ((total - transferred) / speed).toLong() else -1
+        listener.onProgress(percent, transferred, total, speed.toLong(), eta)
+    }
+
+    companion object {
+        const val DEFAULT_INTERVAL = 500L
+
+        // notifications posted faster than this are dropped by the system
+        const val MIN_GAP = 100L
+        private const val SPEED_SMOOTHING = 0.3
+
+        private fun percentOf(transferred: Long, total: Long): Int {
+            return if (total > 0) (transferred * 100 / total).toInt().coerceIn(0, 100) else -1
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package dev.ragnarok.filegallery.util
+
+import dev.ragnarok.filegallery.kJson
+import kotlinx.serialization.SerialName
+import kotlinx.serialization.Serializable
+import okhttp3.OkHttpClient
+import okhttp3.Request
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.nio.ByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+
+/**
+ * Downloads [url] into [target] through a "<target>.fgpart" file and a small
+ * "<target>.fgpart.state" file describing the byte ranges already written.
+ * An interrupted or failed download resumes from that state with HTTP Range requests,
+ * large files are fetched as several ranges in parallel.
+ * Leftovers of downloads into the same folder abandoned for [STALE_AGE] are deleted,
+ * only part files with a state file next to them are touched.
+ */
+class ResumableDownloader(
+    private val client: OkHttpClient,
+    private val url: String,
+    private val target: File
+) {
+    interface Callback {
+        /**
+         * Called from the segment threads for every buffer written, not rate limited.
+         */
+        fun onProgress(downloaded: Long, total: Long)
+        fun isStopped(): Boolean
+    }
+
+    @Serializable
+    class DownloadState {
+        @SerialName("url")
+        var url: String? = null
+
+        @SerialName("length")
+        var length = -1L
+
+        @SerialName("ranges")
+        var ranges = false
+
+        @SerialName("validator")
+        var validator: String? = null
+
+        @SerialName("segments")
+        var segments: ArrayList<Segment> = ArrayList()
+    }
+
+    @Serializable
+    class Segment {
+        @SerialName("start")
+        var start = 0L
+
+        /**
+         * Inclusive, -1 when the length is unknown.
+         */
+        @SerialName("end")
+        var end = -1L
+
+        @SerialName("done")
+        var done = 0L
+
+        val isFinished: Boolean
+            get() = end >= 0 && start + done > end
+    }
+
+    private class ValidatorChangedException : IOException("Remote file changed")
+
+    private val partFile = File(target.absolutePath + PART_SUFFIX)
+    private val stateFile = File(target.absolutePath + STATE_SUFFIX)
+    private val stateTempFile = File(target.absolutePath + STATE_SUFFIX + TEMP_SUFFIX)
+    private val lock = Any()
+    private var lastPersist = 0L
+
+    @Volatile
+    private var failed = false
+
+    /**
+     * @return true when [target] is complete, false when stopped by [Callback.isStopped].
+     * On failure the partial data is kept, so the next call continues from it.
+     */
+    @Throws(IOException::class)
+    fun download(callback: Callback): Boolean {
+        target.parentFile?.let { deleteStale(it) }
+        return try {
+            doDownload(readState() ?: newState(), callback)
+        } catch (e: ValidatorChangedException) {
+            discard()
+            doDownload(newState(), callback)
+        }
+    }
+
+    fun discard() {
+        partFile.delete()
+        stateFile.delete()
+        stateTempFile.delete()
+    }
+
+    private fun deleteStale(dir: File) {
+        val deadline = System.currentTimeMillis() - STALE_AGE
+        val states = dir.listFiles { _, name -> name.endsWith(STATE_SUFFIX) } ?: return
+        for (i in states) {
+            if (i == stateFile || i.lastModified() >= deadline) {
+                continue
+            }
+            val path = i.absolutePath.removeSuffix(STATE_SUFFIX)
+            val part = File(path + PART_SUFFIX)
+            if (!part.exists() || part.lastModified() < deadline) {
+                part.delete()
+                File(path + STATE_SUFFIX + TEMP_SUFFIX).delete()
+                i.delete()
+            }
+        }
+    }
+
+    private fun doDownload(state: DownloadState, callback: Callback): Boolean {
+        failed = false
+        RandomAccessFile(partFile, "rw").use { file ->
+            if (state.ranges && file.length() != state.length) {
+                file.setLength(state.length)
+            }
+            val channel = file.channel
+            val pending = state.segments.filter { !it.isFinished }
+            var downloaded = 0L
+            for (i in state.segments) {
+                downloaded += i.done
+            }
+            val progress = longArrayOf(downloaded)
+            if (pending.size == 1) {
+                fetchSegment(state, pending[0], channel, progress, callback)
+            } else if (pending.size > 1) {
+                val executor = Executors.newFixedThreadPool(pending.size)
+                try {
+                    val tasks = ArrayList<Future<*>>(pending.size)
+                    for (i in pending) {
+                        tasks.add(executor.submit(Runnable {
+                            fetchSegment(state, i, channel, progress, callback)
+                        }))
+                    }
+                    var error: Throwable? = null
+                    for (i in tasks) {
+                        try {
+                            i.get()
+                        } catch (e: ExecutionException) {
+                            error = error ?: e.cause
+                        }
+                    }
+                    error?.let { throw if (it is IOException) it else IOException(it) }
+                } finally {
+                    executor.shutdownNow()
+                }
+            }
+            if (callback.isStopped()) {
+                synchronized(lock) {
+                    persistState(state, channel)
+                }
+                return false
+            }
+            if (!state.ranges && file.length() != state.length) {
+                // the body length is only known once it ended
+                file.setLength(state.length)
+            }
+            channel.force(false)
+        }
+        if (target.exists()) {
+            target.delete()
+        }
+        if (!partFile.renameTo(target)) {
+            throw IOException("Can't rename " + partFile.name)
+        }
+        stateFile.delete()
+        return true
+    }
+
+    private fun fetchSegment(
+        state: DownloadState,
+        segment: Segment,
+        channel: FileChannel,
+        progress: LongArray,
+        callback: Callback
+    ) {
+        var attempt = 0
+        while (true) {
+            try {
+                fetchSegmentOnce(state, segment, channel, progress, callback)
+                return
+            } catch (e: IOException) {
+                synchronized(lock) {
+                    persistState(state, channel)
+                }
+                if (e is ValidatorChangedException || !state.ranges || failed
+                    || callback.isStopped() || ++attempt >= MAX_ATTEMPTS
+                ) {
+                    failed = true
+                    throw e
+                }
+            }
+        }
+    }
+
+    private fun fetchSegmentOnce(
+        state: DownloadState,
+        segment: Segment,
+        channel: FileChannel,
+        progress: LongArray,
+        callback: Callback
+    ) {
+        if (!state.ranges && segment.done > 0) {
+            synchronized(lock) {
+                progress[0] -= segment.done
+                segment.done = 0
+            }
+        }
+        val from = segment.start + segment.done
+        val builder = Request.Builder().url(url)
+        if (state.ranges) {
+            builder.header(
+                "Range",
+                "bytes=" + from + "-" + if (segment.end >= 0) segment.end.toString() else ""
+            )
+            state.validator?.let { builder.header("If-Range", it) }
+        }
+        client.newCall(builder.build()).execute().use { response ->
+            if (!response.isSuccessful) {
+                throw IOException("Server return " + response.code + " " + response.message)
+            }
+            if (state.ranges && response.code != 206) {
+                throw ValidatorChangedException()
+            }
+            val source = response.body.source()
+            val buffer = ByteBuffer.allocate(BUFFER_SIZE)
+            var position = from
+            while (!callback.isStopped() && !failed) {
+                buffer.clear()
+                if (segment.end >= 0) {
+                    val left = segment.end + 1 - position
+                    if (left <= 0) {
+                        break
+                    }
+                    if (left < buffer.capacity()) {
+                        buffer.limit(left.toInt())
+                    }
+                }
+                val read = source.read(buffer)
+                if (read == -1) {
+                    break
+                }
+                buffer.flip()
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position)
+                }
+                val downloaded: Long
+                val total: Long
+                synchronized(lock) {
+                    segment.done += read
+                    progress[0] += read
+                    downloaded = progress[0]
+                    total = state.length
+                    if (System.currentTimeMillis() - lastPersist > PERSIST_INTERVAL) {
+                        persistState(state, channel)
+                    }
+                }
+                callback.onProgress(downloaded, total)
+            }
+            if (callback.isStopped() || failed) {
+                return
+            }
+            if (segment.end < 0) {
+                synchronized(lock) {
+                    segment.end = position - 1
+                    state.length = position
+                }
+            } else if (position <= segment.end) {
+                throw IOException("Unexpected end of stream")
+            }
+        }
+    }
+
+    private fun persistState(state: DownloadState, channel: FileChannel) {
+        if (!state.ranges) {
+            return
+        }
+        try {
+            channel.force(false)
+            writeState(state)
+        } catch (ignored: IOException) {
+        }
+    }
+
+    @Throws(IOException::class)
+    private fun writeState(state: DownloadState) {
+        // a crash while writing must leave the previous state readable
+        stateTempFile.writeText(kJson.encodeToString(DownloadState.serializer(), state))
+        if (!stateTempFile.renameTo(stateFile)) {
+            stateTempFile.delete()
+            return
+        }
+        lastPersist = System.currentTimeMillis()
+    }
+
+    /**
+     * The state file is written before any data, so every part file of this engine
+     * has one and [deleteStale] can tell it from files of other apps.
+     */
+    private fun newState(): DownloadState {
+        val state = createState()
+        writeState(state)
+        return state
+    }
+
+    private fun readState(): DownloadState? {
+        if (!stateFile.exists() || !partFile.exists()) {
+            discard()
+            return null
+        }
+        return try {
+            val state = kJson.decodeFromString(DownloadState.serializer(), stateFile.readText())
+            if (state.url != url || state.segments.isEmpty()) {
+                discard()
+                null
+            } else state
+        } catch (e: Exception) {
+            discard()
+            null
+        }
+    }
+
+    private fun createState(): DownloadState {
+        val state = DownloadState()
+        state.url = url
+        // range responses are never compressed, the length must be of the identity body
+        val head = Request.Builder().url(url).head().header("Accept-Encoding", "identity").build()
+        client.newCall(head).execute().use {
+            if (it.isSuccessful) {
+                state.length = it.header("Content-Length")?.toLongOrNull() ?: -1
+                state.ranges = state.length > 0 && it.header("Accept-Ranges") == "bytes"
+                // If-Range compares weak tags as never equal, a weak tag would restart every resume
+                val etag = it.header("ETag")?.takeIf { tag -> !tag.startsWith("W/") }
+                state.validator = etag ?: it.header("Last-Modified")
+            }
+        }
+        val count = if (state.ranges) {
+            (state.length / MIN_SEGMENT_SIZE).coerceIn(1, MAX_SEGMENTS.toLong()).toInt()
+        } else 1
+        val size = if (state.length > 0) state.length / count else -1
+        for (i in 0 until count) {
+            val segment = Segment()
+            segment.start = i * size.coerceAtLeast(0)
+            // without ranges the body may differ from the HEAD length (compressed, changed)
+            segment.end = if (!state.ranges) -1 else if (i == count - 1) {
+                state.length - 1
+            } else segment.start + size - 1
+            state.segments.add(segment)
+        }
+        return state
+    }
+
+    companion object {
+        const val PART_SUFFIX = ".fgpart"
+        const val STATE_SUFFIX = ".fgpart.state"
+        private const val TEMP_SUFFIX = ".tmp"
+        private const val BUFFER_SIZE = 128 * 1024
+        private const val MIN_SEGMENT_SIZE = 16L * 1024 * 1024
+        private const val MAX_SEGMENTS = 4
+        private const val MAX_ATTEMPTS = 3
+        private const val PERSIST_INTERVAL = 2000L
+        private val STALE_AGE = TimeUnit.DAYS.toMillis(7)
+    }
+}
@@ -15,22 +15,21 @@ import androidx.annotation.ColorInt
 import androidx.core.graphics.ColorUtils
 import androidx.viewpager2.widget.ViewPager2
 import com.google.android.exoplayer2.MediaItem
+import com.google.android.exoplayer2.upstream.DataSource
 import dev.ragnarok.filegallery.BuildConfig
-import dev.ragnarok.filegallery.Constants
 import dev.ragnarok.filegallery.Includes.provideMainThreadScheduler
 import dev.ragnarok.filegallery.R
+import dev.ragnarok.filegallery.api.HttpTransport
+import dev.ragnarok.filegallery.media.exo.MediaCache
 import dev.ragnarok.filegallery.media.exo.OkHttpDataSource
 import dev.ragnarok.filegallery.module.rlottie.RLottieDrawable
 import dev.ragnarok.filegallery.settings.Settings.get
 import dev.ragnarok.filegallery.view.natives.rlottie.RLottieImageView
 import dev.ragnarok.filegallery.view.pager.*
 import io.reactivex.rxjava3.core.Completable
-import okhttp3.Interceptor
-import okhttp3.OkHttpClient
 import java.io.Closeable
 import java.io.IOException
 import java.util.*
-import java.util.concurrent.TimeUnit
 import kotlin.math.abs
 import kotlin.math.ceil
 import kotlin.math.roundToInt
@@ -269,18 +268,6 @@ object Utils {
             .subscribe { function.call() }
     }
 
-    fun createOkHttp(timeouts: Int): OkHttpClient.Builder {
-        return OkHttpClient.Builder()
-            .connectTimeout(timeouts.toLong(), TimeUnit.SECONDS)
-            .readTimeout(timeouts.toLong(), TimeUnit.SECONDS)
-            .addInterceptor(Interceptor { chain: Interceptor.Chain ->
-                chain.proceed(
-                    chain.request().newBuilder().addHeader("User-Agent", Constants.USER_AGENT)
-                        .build()
-                )
-            })
-    }
-
     fun checkValues(values: Collection<Boolean?>): Boolean {
         for (i in values) {
             if (i != true) {
@@ -342,12 +329,11 @@ object Utils {
         }
     }
 
-    fun getExoPlayerFactory(userAgent: String?): OkHttpDataSource.Factory {
-        val builder: OkHttpClient.Builder = OkHttpClient.Builder()
-            .readTimeout(60, TimeUnit.SECONDS)
-            .writeTimeout(60, TimeUnit.SECONDS)
-            .connectTimeout(60, TimeUnit.SECONDS)
-        return OkHttpDataSource.Factory(builder.build()).setUserAgent(userAgent)
+    fun getExoPlayerFactory(context: Context, userAgent: String?): DataSource.Factory {
+        return MediaCache.factory(
+            context,
+            OkHttpDataSource.Factory(HttpTransport.mediaClient).setUserAgent(userAgent)
+        )
     }
 
     fun makeMediaItem(url: String?): MediaItem {
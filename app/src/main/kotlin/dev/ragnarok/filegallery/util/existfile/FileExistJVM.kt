@@ -2,122 +2,91 @@ package dev.ragnarok.filegallery.util.existfile
 
 import android.content.Context
 import dev.ragnarok.filegallery.Includes.stores
-import dev.ragnarok.filegallery.nonNullNoEmpty
 import dev.ragnarok.filegallery.settings.Settings.get
 import dev.ragnarok.filegallery.util.AppPerms.hasReadWriteStoragePermission
 import io.reactivex.rxjava3.core.Completable
 import io.reactivex.rxjava3.core.CompletableEmitter
 import java.io.File
 import java.util.*
+import java.util.concurrent.atomic.AtomicReference
 
 class FileExistJVM : AbsFileExist {
-    private val CachedAudios: MutableList<String> = LinkedList()
-    private val CachedTags: MutableList<String> = LinkedList()
-    private val isBusyLock = Any()
-    private var isBusy = false
-    private fun setBusy(nBusy: Boolean): Boolean {
-        synchronized(isBusyLock) {
-            if (isBusy && nBusy) {
-                return false
+    private val CachedAudios = AtomicReference(StringHashSet.EMPTY)
+    private val CachedTags = AtomicReference(StringHashSet.EMPTY)
+
+    private inline fun AtomicReference<StringHashSet>.modify(action: (StringHashSet) -> StringHashSet) {
+        while (true) {
+            val current = get()
+            if (compareAndSet(current, action(current))) {
+                return
             }
-            isBusy = nBusy
         }
-        return true
     }
 
-    override fun addAudio(file: String) {
-        if (!setBusy(true)) {
-            return
+    /**
+     * Readers keep using the old snapshot while [load] runs. If the set was modified
+     * meanwhile, the source is read again until no change is lost.
+     */
+    private inline fun AtomicReference<StringHashSet>.rebuild(load: () -> StringHashSet?) {
+        while (true) {
+            val current = get()
+            val fresh = load() ?: return
+            if (compareAndSet(current, fresh)) {
+                return
+            }
         }
-        CachedAudios.add(file.lowercase(Locale.getDefault()))
-        setBusy(false)
+    }
+
+    override fun addAudio(file: String) {
+        val res = file.lowercase(Locale.getDefault())
+        CachedAudios.modify { it.plus(res) }
     }
 
     override fun findAllAudios(context: Context): Completable {
         return if (!hasReadWriteStoragePermission(context)) Completable.complete() else Completable.create { t: CompletableEmitter ->
-            if (!setBusy(true)) {
-                return@create
-            }
             val temp = File(get().main().getMusicDir())
-            if (!temp.exists()) {
-                setBusy(false)
-                t.onComplete()
-                return@create
-            }
-            val file_list = temp.listFiles()
-            if (file_list == null || file_list.isEmpty()) {
-                setBusy(false)
-                t.onComplete()
-                return@create
-            }
-            CachedAudios.clear()
-            for (u in file_list) {
-                if (u.isFile) CachedAudios.add(u.name.lowercase(Locale.getDefault()))
+            CachedAudios.rebuild {
+                val file_list = if (temp.exists()) temp.listFiles() else null
+                if (file_list == null || file_list.isEmpty()) {
+                    return@rebuild null
+                }
+                val builder = StringHashSet.Builder(file_list.size)
+                for (u in file_list) {
+                    if (u.isFile) builder.add(u.name.lowercase(Locale.getDefault()))
+                }
+                builder.build()
             }
-            setBusy(false)
+            t.onComplete()
         }
     }
 
     override fun isExistAllAudio(file: String): Boolean {
-        synchronized(isBusyLock) {
-            if (isBusy) {
-                return false
-            }
-            val res = file.lowercase(Locale.getDefault())
-            if (CachedAudios.nonNullNoEmpty()) {
-                for (i in CachedAudios) {
-                    if (i == res) {
-                        return true
-                    }
-                }
-            }
-            return false
-        }
+        return CachedAudios.get().contains(file.lowercase(Locale.getDefault()))
     }
 
     override fun addTag(path: String) {
-        if (!setBusy(true)) {
-            return
-        }
-        CachedTags.add(path)
-        setBusy(false)
+        CachedTags.modify { it.plus(path) }
     }
 
     override fun deleteTag(path: String) {
-        if (!setBusy(true)) {
-            return
-        }
-        CachedTags.remove(path)
-        setBusy(false)
+        CachedTags.modify { it.minus(path) }
     }
 
     override fun findAllTags(): Completable {
         return Completable.create {
-            if (!setBusy(true)) {
-                return@create
-            }
-            val list = stores.searchQueriesStore().getAllTagDirs().blockingGet()
-            CachedTags.clear()
-            for (u in list) {
-                u.path?.let { it1 -> CachedTags.add(it1) }
+            CachedTags.rebuild {
+                val list = stores.searchQueriesStore().getAllTagDirs().blockingGet()
+                val builder = StringHashSet.Builder(list.size)
+                for (u in list) {
+                    u.path?.let { it1 -> builder.add(it1) }
+                }
+                builder.build()
             }
-            setBusy(false)
+            it.onComplete()
         }
     }
 
     override fun isExistTag(path: String): Boolean {
-        synchronized(isBusyLock) {
-            if (isBusy) {
-                return false
-            }
-            if (CachedTags.nonNullNoEmpty()) {
-                for (i in CachedTags) {
-                    if (i == path) {
-                        return true
-                    }
-                }
-            }
-            return false
-        }
+        return CachedTags.get().contains(path)
     }
-}
\ No newline at end of file
+}
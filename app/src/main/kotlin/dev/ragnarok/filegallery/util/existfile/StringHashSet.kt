@@ -0,0 +1,128 @@
+package dev.ragnarok.filegallery.util.existfile
+
+/**
+ * Immutable open addressing (linear probing) string set. Instances are never modified
+ * after construction, so they can be read from any thread without locking and swapped
+ * atomically as whole snapshots.
+ */
+class StringHashSet private constructor(
+    private val keys: Array<String?>,
+    private val hashes: IntArray,
+    val size: Int
+) {
+    fun contains(value: String): Boolean {
+        if (size == 0) {
+            return false
+        }
+        val hash = mix(value.hashCode())
+        val mask = keys.size - 1
+        var i = hash and mask
+        while (true) {
+            val key = keys[i] ?: return false
+            if (hashes[i] == hash && key == value) {
+                return true
+            }
+            i = (i + 1) and mask
+        }
+    }
+
+    fun plus(value: String): StringHashSet {
+        if (contains(value)) {
+            return this
+        }
+        val builder = Builder(size + 1)
+        forEach { builder.add(it) }
+        builder.add(value)
+        return builder.build()
+    }
+
+    fun minus(value: String): StringHashSet {
+        if (!contains(value)) {
+            return this
+        }
+        val builder = Builder(size)
+        forEach {
+            if (it != value) {
+                builder.add(it)
+            }
+        }
+        return builder.build()
+    }
+
+    private inline fun forEach(action: (String) -> Unit) {
+        for (key in keys) {
+            key?.let(action)
+        }
+    }
+
+    /**
+     * Hands its arrays over to the set on [build], it can't be used after that.
+     */
+    class Builder(expectedSize: Int) {
+        private var keys = arrayOfNulls<String>(capacityFor(expectedSize))
+        private var hashes = IntArray(keys.size)
+        private var size = 0
+        private var built = false
+
+        fun add(value: String): Builder {
+            check(!built) { "Builder already built" }
+            if ((size + 1) * 2 > keys.size) {
+                rehash(keys.size * 2)
+            }
+            if (insert(keys, hashes, value, mix(value.hashCode()))) {
+                size++
+            }
+            return this
+        }
+
+        fun build(): StringHashSet {
+            check(!built) { "Builder already built" }
+            built = true
+            return if (size == 0) EMPTY else StringHashSet(keys, hashes, size)
+        }
+
+        private fun rehash(capacity: Int) {
+            val nKeys = arrayOfNulls<String>(capacity)
+            val nHashes = IntArray(capacity)
+            for (i in keys.indices) {
+                keys[i]?.let { insert(nKeys, nHashes, it, hashes[i]) }
+            }
+            keys = nKeys
+            hashes = nHashes
+        }
+    }
+
+    companion object {
+        val EMPTY = StringHashSet(arrayOfNulls(1), IntArray(1), 0)
+
+        private fun capacityFor(expectedSize: Int): Int {
+            var capacity = 4
+            while (capacity < expectedSize * 2) {
+                capacity = capacity shl 1
+            }
+            return capacity
+        }
+
+        private fun mix(hash: Int): Int {
+            val h = hash * -0x61c88647
+            return h xor (h ushr 16)
+        }
+
+        private fun insert(keys: Array<String?>, hashes: IntArray, value: String, hash: Int): Boolean {
+            val mask = keys.size - 1
+            var i = hash and mask
+            while (true) {
+                val key = keys[i]
+                if (key == null) {
+                    keys[i] = value
+                    hashes[i] = hash
+                    return true
+                }
+                if (hashes[i] == hash && key == value) {
+                    return false
+                }
+                i = (i + 1) and mask
+            }
+        }
+    }
+}
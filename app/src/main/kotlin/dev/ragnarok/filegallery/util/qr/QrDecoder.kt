@@ -0,0 +1,228 @@
+package dev.ragnarok.filegallery.util.qr
+
+import android.graphics.Bitmap
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternFinder
+import java.util.*
+import java.util.concurrent.*
+import kotlin.math.max
+import kotlin.math.min
+
+/**
+ * QR detection for large photos without a full resolution pixel copy.
+ * Luminance is read from the bitmap row by row into a per thread buffer, area averaged
+ * down to [SCAN_SIZE]. The passes are:
+ * 1. the whole photo downscaled;
+ * 2. the region around the finder patterns found in pass 1, at full resolution;
+ * 3. overlapping tiles of the photo, downscaled and decoded in parallel.
+ */
+object QrDecoder {
+    private const val SCAN_SIZE = 1024
+    private const val ROI_SIZE = 2048
+    private const val TILE_GRID = 3
+
+    private val HINTS: Map<DecodeHintType, Any> =
+        EnumMap<DecodeHintType, Any>(DecodeHintType::class.java).apply {
+            put(DecodeHintType.TRY_HARDER, true)
+        }
+
+    private class Buffers {
+        var luminance = ByteArray(0)
+        var row = IntArray(0)
+        var sums = IntArray(0)
+        var counts = IntArray(0)
+    }
+
+    private val buffers = object : ThreadLocal<Buffers>() {
+        override fun initialValue(): Buffers = Buffers()
+    }
+
+    private val executor: ExecutorService by lazy {
+        val threads = Runtime.getRuntime().availableProcessors().coerceIn(1, 4)
+        ThreadPoolExecutor(
+            threads, threads, 30, TimeUnit.SECONDS, LinkedBlockingQueue()
+        ) { r ->
+            Thread(r, "qr-decoder").apply { isDaemon = true }
+        }.apply { allowCoreThreadTimeOut(true) }
+    }
+
+    /**
+     * @param bitmap software bitmap, hardware ones must be copied by the caller
+     */
+    @Throws(ReaderException::class)
+    fun decode(bitmap: Bitmap): Result {
+        val width = bitmap.width
+        val height = bitmap.height
+        val source = readLuminance(bitmap, 0, 0, width, height, SCAN_SIZE)
+        val binary = BinaryBitmap(HybridBinarizer(source))
+        val error = try {
+            return QRCodeReader().decode(binary, HINTS)
+        } catch (e: ReaderException) {
+            e
+        }
+        if (source.width == width && source.height == height) {
+            throw error
+        }
+        val scale = width.toFloat() / source.width
+        findRegion(binary, scale, width, height)?.let {
+            try {
+                return decodeRegion(bitmap, it[0], it[1], it[2], it[3], ROI_SIZE)
+            } catch (ignored: ReaderException) {
+            }
+        }
+        return decodeTiles(bitmap) ?: throw error
+    }
+
+    /**
+     * @return left, top, width, height of the area around the finder patterns in bitmap pixels
+     */
+    private fun findRegion(binary: BinaryBitmap, scale: Float, width: Int, height: Int): IntArray? {
+        val info = try {
+            FinderPatternFinder(binary.blackMatrix).find(HINTS)
+        } catch (e: ReaderException) {
+            return null
+        }
+        val points = arrayOf(info.topLeft, info.topRight, info.bottomLeft)
+        var minX = Float.MAX_VALUE
+        var minY = Float.MAX_VALUE
+        var maxX = 0f
+        var maxY = 0f
+        for (i in points) {
+            minX = min(minX, i.x)
+            minY = min(minY, i.y)
+            maxX = max(maxX, i.x)
+            maxY = max(maxY, i.y)
+        }
+        // the patterns are module centers, the code extends past them on every side
+        val margin = max(maxX - minX, maxY - minY) * 0.5f
+        val left = ((minX - margin) * scale).toInt().coerceIn(0, width - 1)
+        val top = ((minY - margin) * scale).toInt().coerceIn(0, height - 1)
+        val right = ((maxX + margin) * scale).toInt().coerceIn(left + 1, width)
+        val bottom = ((maxY + margin) * scale).toInt().coerceIn(top + 1, height)
+        return intArrayOf(left, top, right - left, bottom - top)
+    }
+
+    private fun decodeTiles(bitmap: Bitmap): Result? {
+        val stepX = bitmap.width / (TILE_GRID + 1)
+        val stepY = bitmap.height / (TILE_GRID + 1)
+        if (stepX <= 0 || stepY <= 0) {
+            return null
+        }
+        val completion = ExecutorCompletionService<Result?>(executor)
+        val tasks = ArrayList<Future<Result?>>(TILE_GRID * TILE_GRID)
+        for (y in 0 until TILE_GRID) {
+            for (x in 0 until TILE_GRID) {
+                val left = x * stepX
+                val top = y * stepY
+                val w = if (x == TILE_GRID - 1) bitmap.width - left else stepX * 2
+                val h = if (y == TILE_GRID - 1) bitmap.height - top else stepY * 2
+                tasks.add(completion.submit {
+                    try {
+                        decodeRegion(bitmap, left, top, w, h, SCAN_SIZE)
+                    } catch (e: ReaderException) {
+                        null
+                    }
+                })
+            }
+        }
+        try {
+            for (i in tasks.indices) {
+                val result = try {
+                    completion.take().get()
+                } catch (e: ExecutionException) {
+                    null
+                }
+                if (result != null) {
+                    return result
+                }
+            }
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+        } finally {
+            for (i in tasks) {
+                i.cancel(true)
+            }
+        }
+        return null
+    }
+
+    @Throws(ReaderException::class)
+    private fun decodeRegion(
+        bitmap: Bitmap,
+        left: Int,
+        top: Int,
+        width: Int,
+        height: Int,
+        maxSize: Int
+    ): Result {
+        val source = readLuminance(bitmap, left, top, width, height, maxSize)
+        return QRCodeReader().decode(BinaryBitmap(HybridBinarizer(source)), HINTS)
+    }
+
+    /**
+     * Area averaged greyscale of the given bitmap region, no larger than [maxSize] on either side.
+     * The returned source is backed by the calling thread's buffer.
+     */
+    private fun readLuminance(
+        bitmap: Bitmap,
+        left: Int,
+        top: Int,
+        width: Int,
+        height: Int,
+        maxSize: Int
+    ): LuminanceSource {
+        val factor = max(1f, max(width, height).toFloat() / maxSize)
+        val targetWidth = (width / factor).toInt().coerceIn(1, width)
+        val targetHeight = (height / factor).toInt().coerceIn(1, height)
+        val b = buffers.get()!!
+        if (b.luminance.size < targetWidth * targetHeight) {
+            b.luminance = ByteArray(targetWidth * targetHeight)
+        }
+        if (b.row.size < width) {
+            b.row = IntArray(width)
+        }
+        if (b.sums.size < targetWidth) {
+            b.sums = IntArray(targetWidth)
+            b.counts = IntArray(targetWidth)
+        }
+        val luminance = b.luminance
+        val row = b.row
+        val sums = b.sums
+        val counts = b.counts
+        Arrays.fill(sums, 0, targetWidth, 0)
+        Arrays.fill(counts, 0, targetWidth, 0)
+        var currentY = 0
+        for (y in 0 until height) {
+            val targetY = (y.toLong() * targetHeight / height).toInt()
+            if (targetY != currentY) {
+                flushRow(luminance, currentY * targetWidth, sums, counts, targetWidth)
+                currentY = targetY
+            }
+            bitmap.getPixels(row, 0, width, left, top + y, width, 1)
+            for (x in 0 until width) {
+                val pixel = row[x]
+                val r = (pixel shr 16) and 0xff
+                val g2 = (pixel shr 7) and 0x1fe
+                val bl = pixel and 0xff
+                val targetX = (x.toLong() * targetWidth / width).toInt()
+                sums[targetX] += (r + g2 + bl) shr 2
+                counts[targetX]++
+            }
+        }
+        flushRow(luminance, currentY * targetWidth, sums, counts, targetWidth)
+        return ByteLuminanceSource(luminance, targetWidth, targetHeight)
+    }
+
+    private fun flushRow(
+        luminance: ByteArray,
+        offset: Int,
+        sums: IntArray,
+        counts: IntArray,
+        width: Int
+    ) {
+        for (x in 0 until width) {
+            luminance[offset + x] = if (counts[x] > 0) (sums[x] / counts[x]).toByte() else 0
+            sums[x] = 0
+            counts[x] = 0
+        }
+    }
+}
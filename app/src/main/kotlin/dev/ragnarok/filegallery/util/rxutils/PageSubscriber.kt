@@ -0,0 +1,33 @@
+package dev.ragnarok.filegallery.util.rxutils
+
+import io.reactivex.rxjava3.subscribers.DisposableSubscriber
+
+/**
+ * Pulls a paged [io.reactivex.rxjava3.core.Flowable] one page at a time:
+ * the first page is requested on subscribe, every next one by [requestNext].
+ */
+class PageSubscriber<T : Any>(
+    private val onPage: (T) -> Unit,
+    private val onError: (Throwable) -> Unit,
+    private val onEnd: () -> Unit
+) : DisposableSubscriber<T>() {
+    override fun onStart() {
+        request(1)
+    }
+
+    fun requestNext() {
+        request(1)
+    }
+
+    override fun onNext(t: T) {
+        onPage(t)
+    }
+
+    override fun onError(t: Throwable) {
+        onError.invoke(t)
+    }
+
+    override fun onComplete() {
+        onEnd()
+    }
+}
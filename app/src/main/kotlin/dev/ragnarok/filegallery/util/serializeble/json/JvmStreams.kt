@@ -11,6 +11,7 @@ import kotlinx.serialization.*
 import java.io.IOException
 import java.io.InputStream
 import java.io.OutputStream
+import java.io.Reader
 
 /**
  * Serializes the [value] with [serializer] into a [stream] using JSON format and UTF-8 encoding.
@@ -71,6 +72,31 @@ fun <T> Json.decodeFromStream(
     return result
 }
 
+/**
+ * Deserializes JSON from [reader] to a value of type [T] using [deserializer].
+ * Unlike [decodeFromStream], no extra buffered reader is created and the lexer buffer is
+ * taken from a pool, so repeated decoding of large payloads allocates little besides the result.
+ *
+ * @throws [SerializationException] if the given JSON input cannot be deserialized to the value of type [T].
+ * @throws [IOException] If an I/O error occurs and reader can't be read from.
+ */
+@ExperimentalSerializationApi
+fun <T> Json.decodeFromReader(
+    deserializer: DeserializationStrategy<T>,
+    reader: Reader
+): T {
+    val buffer = LexerBufferPool.take()
+    try {
+        val lexer = ReaderJsonLexer(reader, buffer)
+        val input = StreamingJsonDecoder(this, WriteMode.OBJ, lexer, deserializer.descriptor)
+        val result = input.decodeSerializableValue(deserializer)
+        lexer.expectEof()
+        return result
+    } finally {
+        LexerBufferPool.release(buffer)
+    }
+}
+
 /**
  * Deserializes the contents of given [stream] to the value of type [T] using UTF-8 encoding and
  * deserializer retrieved from the reified type parameter.
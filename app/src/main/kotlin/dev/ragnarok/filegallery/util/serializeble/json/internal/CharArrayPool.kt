@@ -29,3 +29,24 @@ internal object CharArrayPool {
         arrays.addLast(array)
     }
 }
+
+/**
+ * Pool of [BATCH_SIZE] lexer buffers for [ReaderJsonLexer], so that streaming decodes
+ * of consecutive responses reuse the same arrays.
+ */
+internal object LexerBufferPool {
+    private const val MAX_BUFFERS = 4
+    private val arrays = ArrayDeque<CharArray>()
+
+    fun take(): CharArray {
+        val candidate = synchronized(this) {
+            arrays.removeLastOrNull()
+        }
+        return candidate ?: CharArray(BATCH_SIZE)
+    }
+
+    fun release(array: CharArray) = synchronized(this) {
+        if (array.size != BATCH_SIZE || arrays.size >= MAX_BUFFERS) return@synchronized
+        arrays.addLast(array)
+    }
+}
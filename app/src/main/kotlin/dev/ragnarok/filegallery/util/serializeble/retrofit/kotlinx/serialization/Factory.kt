@@ -2,7 +2,9 @@
 
 package dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization
 
+import dev.ragnarok.filegallery.util.serializeble.json.Json
 import dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization.Serializer.FromBytes
+import dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization.Serializer.FromStream
 import dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization.Serializer.FromString
 import kotlinx.serialization.BinaryFormat
 import kotlinx.serialization.ExperimentalSerializationApi
@@ -61,6 +63,16 @@ fun StringFormat.asConverterFactory(): Converter.Factory {
     return Factory("application/json; charset=UTF-8".toMediaType(), FromString(this))
 }
 
+/**
+ * Return a [Converter.Factory] which decodes JSON responses while they are read from the
+ * network, without holding the whole body as bytes and as a String.
+ */
+@ExperimentalSerializationApi
+@JvmName("createStreaming")
+fun Json.asStreamingConverterFactory(): Converter.Factory {
+    return Factory("application/json; charset=UTF-8".toMediaType(), FromStream(this))
+}
+
 /**
  * Return a [Converter.Factory] which uses Kotlin serialization for byte-based payloads.
  *
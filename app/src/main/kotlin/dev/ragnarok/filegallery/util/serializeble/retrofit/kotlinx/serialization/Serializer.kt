@@ -1,5 +1,7 @@
 package dev.ragnarok.filegallery.util.serializeble.retrofit.kotlinx.serialization
 
+import dev.ragnarok.filegallery.util.serializeble.json.Json
+import dev.ragnarok.filegallery.util.serializeble.json.decodeFromReader
 import kotlinx.serialization.*
 import okhttp3.MediaType
 import okhttp3.RequestBody
@@ -39,6 +41,29 @@ sealed class Serializer {
         }
     }
 
+    /**
+     * Decodes straight from the response source instead of building a String of the whole body.
+     */
+    class FromStream(override val format: Json) : Serializer() {
+        override fun <T> fromResponseBody(
+            loader: DeserializationStrategy<T>,
+            body: ResponseBody
+        ): T {
+            return body.use {
+                format.decodeFromReader(loader, it.charStream())
+            }
+        }
+
+        override fun <T> toRequestBody(
+            contentType: MediaType,
+            saver: SerializationStrategy<T>,
+            value: T
+        ): RequestBody {
+            val string = format.encodeToString(saver, value)
+            return string.toRequestBody(contentType)
+        }
+    }
+
     class FromBytes(override val format: BinaryFormat) : Serializer() {
         override fun <T> fromResponseBody(
             loader: DeserializationStrategy<T>,
@@ -0,0 +1,328 @@
+package dev.ragnarok.filegallery.view
+
+import android.graphics.*
+import android.os.Build
+import android.os.Handler
+import android.os.Looper
+import android.util.LruCache
+import android.view.View
+import androidx.exifinterface.media.ExifInterface
+import dev.ragnarok.filegallery.Constants
+import java.io.File
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import kotlin.math.abs
+import kotlin.math.min
+
+/**
+ * Full resolution detail for a zoomed [TouchImageView].
+ * The view shows a low resolution base drawable, this layer decodes the visible part of the
+ * source file with [BitmapRegionDecoder] in tiles of [TILE_SIZE] pixels, subsampled to the
+ * current zoom, and draws them over the base. Only tiles of the viewport are kept,
+ * the rest are recycled on the next frame, and their total size is capped by [maxBytes].
+ * All methods except the decoding tasks run on the main thread.
+ */
+internal class RegionTileLayer(private val view: View) {
+    private class Tile(val bitmap: Bitmap, val rect: Rect)
+
+    private var file: File? = null
+    private var decoder: BitmapRegionDecoder? = null
+    private var sourceWidth = 0
+    private var sourceHeight = 0
+    private var generation = 0
+    private var bytes = 0L
+
+    private val tiles = HashMap<Long, Tile>()
+    private val pending = HashSet<Long>()
+
+    // read by the decoding threads to skip tiles scrolled away before their turn
+    @Volatile
+    private var wanted: Set<Long> = emptySet()
+    private val visible = HashSet<Long>()
+
+    private val values = FloatArray(9)
+    private val inverse = Matrix()
+    private val viewport = RectF()
+    private val dst = RectF()
+    private val paint = Paint(Paint.FILTER_BITMAP_FLAG)
+
+    val isActive: Boolean
+        get() = file != null
+
+    /**
+     * @param onUnavailable called on the main thread when the file can't be tiled after all
+     */
+    fun setSource(file: File?, onUnavailable: (() -> Unit)? = null) {
+        if (file == this.file) {
+            return
+        }
+        release()
+        this.file = file ?: return
+        val gen = generation
+        executor.execute {
+            val opened = open(file)
+            view.post {
+                if (gen != generation) {
+                    opened?.first?.recycle()
+                    return@post
+                }
+                if (opened == null) {
+                    release()
+                    onUnavailable?.invoke()
+                    return@post
+                }
+                decoder = opened.first
+                sourceWidth = opened.second.x
+                sourceHeight = opened.second.y
+                view.invalidate()
+            }
+        }
+    }
+
+    /**
+     * @param matrix        matrix the base drawable is drawn with
+     * @param baseWidth     intrinsic size of the base drawable
+     * @param contentWidth  view size without padding
+     */
+    fun draw(
+        canvas: Canvas,
+        matrix: Matrix,
+        baseWidth: Int,
+        baseHeight: Int,
+        contentWidth: Int,
+        contentHeight: Int
+    ) {
+        val decoder = decoder
+        if (decoder == null || baseWidth <= 0 || baseHeight <= 0) {
+            return
+        }
+        val ratio = sourceWidth.toFloat() / baseWidth
+        // the base may not be a downscale of this file (placeholder, error drawable)
+        if (abs(sourceHeight.toFloat() / baseHeight - ratio) > ratio * 0.02f) {
+            evict(emptySet())
+            return
+        }
+        matrix.getValues(values)
+        // screen pixels per base pixel, tiles are needed only when the base is upscaled
+        val scale = values[Matrix.MSCALE_X]
+        if (scale <= 1f || ratio <= 1f || !matrix.invert(inverse)) {
+            evict(emptySet())
+            return
+        }
+        var sample = 1
+        while (sample * 2 <= ratio / scale) {
+            sample *= 2
+        }
+        viewport.set(0f, 0f, contentWidth.toFloat(), contentHeight.toFloat())
+        inverse.mapRect(viewport)
+        if (!viewport.intersect(0f, 0f, baseWidth.toFloat(), baseHeight.toFloat())) {
+            evict(emptySet())
+            return
+        }
+        val tileSize = TILE_SIZE * sample
+        val left = (viewport.left * ratio).toInt() / tileSize
+        val top = (viewport.top * ratio).toInt() / tileSize
+        val right = ((viewport.right * ratio).toInt() - 1).coerceAtLeast(0) / tileSize
+        val bottom = ((viewport.bottom * ratio).toInt() - 1).coerceAtLeast(0) / tileSize
+
+        visible.clear()
+        for (row in top..bottom) {
+            for (col in left..right) {
+                visible.add(key(sample, col, row))
+            }
+        }
+        evict(visible)
+
+        canvas.save()
+        canvas.translate(view.paddingLeft.toFloat(), view.paddingTop.toFloat())
+        canvas.concat(matrix)
+        for (row in top..bottom) {
+            for (col in left..right) {
+                val key = key(sample, col, row)
+                val tile = tiles[key]
+                if (tile == null) {
+                    request(decoder, key, sample, col, row)
+                    continue
+                }
+                dst.set(
+                    tile.rect.left / ratio,
+                    tile.rect.top / ratio,
+                    tile.rect.right / ratio,
+                    tile.rect.bottom / ratio
+                )
+                canvas.drawBitmap(tile.bitmap, null, dst, paint)
+            }
+        }
+        canvas.restore()
+    }
+
+    fun release() {
+        generation++
+        file = null
+        decoder?.let {
+            // decodeRegion and recycle lock the decoder, a running task fails and is dropped
+            executor.execute { it.recycle() }
+        }
+        decoder = null
+        evict(emptySet())
+        pending.clear()
+    }
+
+    private fun request(decoder: BitmapRegionDecoder, key: Long, sample: Int, col: Int, row: Int) {
+        if (!pending.add(key)) {
+            return
+        }
+        val tileSize = TILE_SIZE * sample
+        val rect = Rect(
+            col * tileSize,
+            row * tileSize,
+            min(sourceWidth, (col + 1) * tileSize),
+            min(sourceHeight, (row + 1) * tileSize)
+        )
+        val gen = generation
+        executor.execute {
+            val bitmap = if (key in wanted) decode(decoder, rect, sample) else null
+            view.post {
+                if (gen != generation) {
+                    bitmap?.recycle()
+                    return@post
+                }
+                pending.remove(key)
+                if (bitmap == null) {
+                    return@post
+                }
+                val size = bitmap.allocationByteCount
+                if (key !in wanted || bytes + size > maxBytes) {
+                    bitmap.recycle()
+                    return@post
+                }
+                tiles[key] = Tile(bitmap, rect)
+                bytes += size
+                view.invalidate()
+            }
+        }
+    }
+
+    private fun evict(keep: Set<Long>) {
+        val iterator = tiles.entries.iterator()
+        while (iterator.hasNext()) {
+            val entry = iterator.next()
+            if (entry.key !in keep) {
+                bytes -= entry.value.bitmap.allocationByteCount
+                entry.value.bitmap.recycle()
+                iterator.remove()
+            }
+        }
+        if (wanted != keep) {
+            wanted = HashSet(keep)
+        }
+    }
+
+    companion object {
+        private const val TILE_SIZE = 512
+
+        private val maxBytes = min(Runtime.getRuntime().maxMemory() / 8, 48L * 1024 * 1024)
+
+        private val executor by lazy {
+            ThreadPoolExecutor(
+                2, 2, 30, TimeUnit.SECONDS, LinkedBlockingQueue()
+            ) { r ->
+                Thread(r, "region-tiles").apply { isDaemon = true }
+            }.apply { allowCoreThreadTimeOut(true) }
+        }
+
+        private val mainHandler = Handler(Looper.getMainLooper())
+
+        // absolute path to the result of the check, files are checked once per process
+        private val checked = LruCache<String, Boolean>(256)
+
+        /**
+         * Calls [callback] on the main thread with whether [file] can be tiled: stored upright
+         * in a format [BitmapRegionDecoder] reads. Runs it right away for a file checked before.
+         */
+        fun checkSource(file: File, callback: (Boolean) -> Unit) {
+            checked.get(file.absolutePath)?.let {
+                callback(it)
+                return
+            }
+            executor.execute {
+                val result = canTile(file)
+                mainHandler.post { callback(result) }
+            }
+        }
+
+        private fun canTile(file: File): Boolean {
+            checked.get(file.absolutePath)?.let { return it }
+            val result = try {
+                // tiles are cut from the stored pixels, the base drawable is upright
+                val orientation = ExifInterface(file).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL
+                )
+                if (orientation != ExifInterface.ORIENTATION_NORMAL && orientation != ExifInterface.ORIENTATION_UNDEFINED) {
+                    false
+                } else {
+                    val options = BitmapFactory.Options()
+                    options.inJustDecodeBounds = true
+                    BitmapFactory.decodeFile(file.absolutePath, options)
+                    options.outMimeType in regionMimeTypes
+                }
+            } catch (e: Exception) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+                false
+            }
+            checked.put(file.absolutePath, result)
+            return result
+        }
+
+        private val regionMimeTypes =
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) setOf(
+                "image/jpeg", "image/png", "image/webp", "image/heif", "image/heic"
+            ) else setOf("image/jpeg", "image/png", "image/webp")
+
+        private fun key(sample: Int, col: Int, row: Int): Long {
+            return (Integer.numberOfTrailingZeros(sample).toLong() shl 56) or
+                    (col.toLong() shl 28) or row.toLong()
+        }
+
+        /**
+         * @return decoder and the size of the file, null when the file can't be tiled as is
+         */
+        private fun open(file: File): Pair<BitmapRegionDecoder, Point>? {
+            if (!canTile(file)) {
+                return null
+            }
+            return try {
+                @Suppress("DEPRECATION")
+                val decoder = BitmapRegionDecoder.newInstance(file.absolutePath, false)
+                if (decoder == null) {
+                    checked.put(file.absolutePath, false)
+                    return null
+                }
+                Pair(decoder, Point(decoder.width, decoder.height))
+            } catch (e: Exception) {
+                if (Constants.IS_DEBUG) {
+                    e.printStackTrace()
+                }
+                checked.put(file.absolutePath, false)
+                null
+            }
+        }
+
+        private fun decode(decoder: BitmapRegionDecoder, rect: Rect, sample: Int): Bitmap? {
+            val options = BitmapFactory.Options()
+            options.inSampleSize = sample
+            options.inPreferredConfig = Bitmap.Config.RGB_565
+            return try {
+                decoder.decodeRegion(rect, options)
+            } catch (e: Exception) {
+                null
+            } catch (e: OutOfMemoryError) {
+                null
+            }
+        }
+    }
+}
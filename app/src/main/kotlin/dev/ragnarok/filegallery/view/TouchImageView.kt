@@ -108,6 +108,9 @@ open class TouchImageView @JvmOverloads constructor(
     private var userTouchListener: OnTouchListener? = null
     private var touchImageViewListener: OnTouchImageViewListener? = null
     private var animDrawable: AnimatedFileDrawable? = null
+    private val tileLayer = RegionTileLayer(this)
+    private var tileFile: File? = null
+    private var tileUnavailable: (() -> Unit)? = null
 
     init {
         super.setClickable(true)
@@ -182,6 +185,21 @@ open class TouchImageView @JvmOverloads constructor(
         )
     }
 
+    /**
+     * Draws the zoomed in parts of the image from the given file at full resolution.
+     * The drawable set to the view stays the base layer and may be a downscale of the file.
+     *
+     * @param file local file of the image, null disables tiling
+     * @param onUnavailable called when the file can't be tiled, the base is all there is
+     */
+    fun setTileSource(file: File?, onUnavailable: (() -> Unit)? = null) {
+        tileFile = file
+        tileUnavailable = onUnavailable
+        if (isAttachedToWindow) {
+            tileLayer.setSource(file, onUnavailable)
+        }
+    }
+
     open fun clearAnimationDrawable() {
         if (animDrawable != null) {
             animDrawable?.stop()
@@ -204,12 +222,14 @@ open class TouchImageView @JvmOverloads constructor(
         super.onAttachedToWindow()
         animDrawable?.callback = this
         animDrawable?.start()
+        tileLayer.setSource(tileFile, tileUnavailable)
     }
 
     override fun onDetachedFromWindow() {
         super.onDetachedFromWindow()
         animDrawable?.stop()
         animDrawable?.callback = null
+        tileLayer.release()
     }
 
     open fun isPlaying(): Boolean {
@@ -360,6 +380,17 @@ open class TouchImageView @JvmOverloads constructor(
             delayedZoomVariables = null
         }
         super.onDraw(canvas)
+        val drawable = drawable
+        if (tileLayer.isActive && drawable != null && !isRotateImageToFitScreen) {
+            tileLayer.draw(
+                canvas,
+                imageMatrix,
+                drawable.intrinsicWidth,
+                drawable.intrinsicHeight,
+                viewWidth,
+                viewHeight
+            )
+        }
     }
 
     public override fun onConfigurationChanged(newConfig: Configuration) {
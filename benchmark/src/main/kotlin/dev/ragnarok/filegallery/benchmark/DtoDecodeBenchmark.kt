@@ -0,0 +1,144 @@
+package dev.ragnarok.filegallery.benchmark
+
+import androidx.benchmark.junit4.BenchmarkRule
+import androidx.benchmark.junit4.measureRepeated
+import dev.ragnarok.filegallery.api.adapters.AbsAdapter
+import dev.ragnarok.filegallery.api.adapters.AudioDtoAdapter
+import dev.ragnarok.filegallery.api.adapters.PhotoDtoAdapter
+import dev.ragnarok.filegallery.api.adapters.VideoDtoAdapter
+import dev.ragnarok.filegallery.api.model.Items
+import dev.ragnarok.filegallery.api.model.response.BaseResponse
+import dev.ragnarok.filegallery.kJson
+import dev.ragnarok.filegallery.model.Audio
+import dev.ragnarok.filegallery.model.Photo
+import dev.ragnarok.filegallery.model.Video
+import dev.ragnarok.filegallery.util.serializeble.json.JsonDecoder
+import dev.ragnarok.filegallery.util.serializeble.json.decodeFromReader
+import kotlinx.serialization.KSerializer
+import kotlinx.serialization.descriptors.SerialDescriptor
+import kotlinx.serialization.encoding.Decoder
+import kotlinx.serialization.encoding.Encoder
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+import java.io.StringReader
+import java.util.*
+
+/**
+ * One local server page decoded the way the Retrofit converter does it, from a reader
+ * straight into the app models, against the element tree path the adapters replaced,
+ * which decoded every item into a JsonObject first.
+ */
+@RunWith(Parameterized::class)
+class DtoDecodeBenchmark(private val count: Int) {
+    @get:Rule
+    val benchmarkRule = BenchmarkRule()
+
+    private val random = Random(42)
+    private val photos = page { photo(it) }
+    private val audios = page { audio(it) }
+    private val videos = page { video(it) }
+
+    @Test
+    fun photosStreaming() {
+        decode(Photo.serializer(), photos)
+    }
+
+    @Test
+    fun photosTree() {
+        decode(TreeAdapter(PhotoDtoAdapter()), photos)
+    }
+
+    @Test
+    fun audiosStreaming() {
+        decode(Audio.serializer(), audios)
+    }
+
+    @Test
+    fun audiosTree() {
+        decode(TreeAdapter(AudioDtoAdapter()), audios)
+    }
+
+    @Test
+    fun videosStreaming() {
+        decode(Video.serializer(), videos)
+    }
+
+    @Test
+    fun videosTree() {
+        decode(TreeAdapter(VideoDtoAdapter()), videos)
+    }
+
+    private fun <T> decode(item: KSerializer<T>, body: String) {
+        val serializer = BaseResponse.serializer(Items.serializer(item))
+        benchmarkRule.measureRepeated {
+            kJson.decodeFromReader(serializer, StringReader(body))
+        }
+    }
+
+    /**
+     * The decode path of the adapters before the streaming reader.
+     */
+    private class TreeAdapter<T>(private val adapter: AbsAdapter<T>) : KSerializer<T> {
+        override val descriptor: SerialDescriptor
+            get() = adapter.descriptor
+
+        override fun deserialize(decoder: Decoder): T {
+            return adapter.deserialize((decoder as JsonDecoder).decodeJsonElement())
+        }
+
+        override fun serialize(encoder: Encoder, value: T) {
+            throw UnsupportedOperationException()
+        }
+    }
+
+    private fun page(item: (Int) -> String): String {
+        val builder = StringBuilder("{\"response\":{\"count\":").append(count)
+            .append(",\"items\":[")
+        for (i in 0 until count) {
+            if (i > 0) {
+                builder.append(',')
+            }
+            builder.append(item(i))
+        }
+        return builder.append("]}}").toString()
+    }
+
+    private fun photo(i: Int): String {
+        val path = "/storage/emulated/0/DCIM/Camera/IMG_" + (20220000 + i) + ".jpg"
+        return "{\"id\":" + i + ",\"owner_id\":" + random.nextInt() +
+                ",\"date\":" + (1650000000L + random.nextInt(10000000)) +
+                ",\"text\":\"IMG_" + (20220000 + i) + ".jpg\",\"size\":" + random.nextInt(8000000) +
+                ",\"sizes\":[{\"type\":\"s\",\"url\":\"http://192.168.1.2:8080/thumb?path=" + path +
+                "\"},{\"type\":\"w\",\"url\":\"http://192.168.1.2:8080/file?path=" + path + "\"}]}"
+    }
+
+    private fun audio(i: Int): String {
+        return "{\"id\":" + i + ",\"owner_id\":" + random.nextInt() +
+                ",\"artist\":\"Artist " + random.nextInt(500) + "\",\"title\":\"Track " + i +
+                "\",\"duration\":" + random.nextInt(600) +
+                ",\"url\":\"http://192.168.1.2:8080/file?path=/Music/track_" + i + ".mp3\"" +
+                ",\"is_hq\":true,\"genre_id\":" + random.nextInt(20) +
+                ",\"album\":{\"id\":" + random.nextInt(1000) + ",\"title\":\"Album\",\"thumb\":" +
+                "{\"width\":600,\"photo_600\":\"http://192.168.1.2:8080/cover?id=" + i + "\"}}}"
+    }
+
+    private fun video(i: Int): String {
+        return "{\"id\":" + i + ",\"owner_id\":" + random.nextInt() +
+                ",\"title\":\"Video " + i + "\",\"description\":\"/Movies/video_" + i + ".mp4\"" +
+                ",\"duration\":" + random.nextInt(7200) +
+                ",\"date\":" + (1650000000L + random.nextInt(10000000)) + ",\"repeat\":0" +
+                ",\"files\":{\"mp4_720\":\"http://192.168.1.2:8080/file?path=/Movies/video_" + i + ".mp4\"}" +
+                ",\"image\":[{\"width\":130,\"url\":\"http://192.168.1.2:8080/thumb?id=" + i + "&s=130\"}," +
+                "{\"width\":800,\"url\":\"http://192.168.1.2:8080/thumb?id=" + i + "&s=800\"}]}"
+    }
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "count={0}")
+        fun counts(): List<Int> {
+            return listOf(100, 1000)
+        }
+    }
+}
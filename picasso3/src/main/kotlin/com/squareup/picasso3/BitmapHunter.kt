@@ -44,6 +44,10 @@ internal open class BitmapHunter(
 ) : Runnable {
     val sequence: Int = SEQUENCE_GENERATOR.incrementAndGet()
     var priority: Picasso.Priority = action.request.priority
+
+    /** Distance from the viewport of its tag, updated by the dispatcher. */
+    @Volatile
+    var distance: Int = 0
     var data: Request = action.request
     val key: String = action.request.key
     private var retryCount: Int = requestHandler.retryCount
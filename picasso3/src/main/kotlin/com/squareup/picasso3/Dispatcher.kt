@@ -66,6 +66,12 @@ internal class Dispatcher internal constructor(
     @get:JvmName("-pausedTags")
     internal val pausedTags = mutableSetOf<Any>()
 
+    @get:JvmName("-viewports")
+    internal val viewports = mutableMapOf<Any, Viewport>()
+
+    @get:JvmName("-deferredActions")
+    internal val deferredActions = mutableMapOf<Any, Action>()
+
     private val dispatcherThread: DispatcherThread
     private val handler: Handler
 
@@ -143,6 +149,16 @@ internal class Dispatcher internal constructor(
         handler.sendMessage(handler.obtainMessage(TAG_RESUME, tag))
     }
 
+    fun dispatchViewport(tag: Any, first: Int, last: Int, margin: Int) {
+        handler.sendMessage(
+            handler.obtainMessage(VIEWPORT_CHANGE, first, last, ViewportChange(tag, margin))
+        )
+    }
+
+    fun dispatchClearViewport(tag: Any) {
+        handler.sendMessage(handler.obtainMessage(VIEWPORT_CLEAR, tag))
+    }
+
     fun dispatchComplete(hunter: BitmapHunter) {
         handler.sendMessage(handler.obtainMessage(HUNTER_COMPLETE, hunter))
     }
@@ -173,9 +189,24 @@ internal class Dispatcher internal constructor(
             return
         }
 
+        val viewport = viewports[action.tag]
+        if (viewport != null && !viewport.contains(action.request.position)) {
+            deferredActions[action.getTarget()] = action
+            if (action.picasso.isLoggingEnabled) {
+                log(
+                    owner = OWNER_DISPATCHER,
+                    verb = VERB_PAUSED,
+                    logId = action.request.logId(),
+                    extras = "because it is outside of the viewport"
+                )
+            }
+            return
+        }
+
         var hunter = hunterMap[action.request.key]
         if (hunter != null) {
             hunter.attach(action)
+            hunter.distance = minOf(hunter.distance, distanceOf(action))
             return
         }
 
@@ -192,6 +223,7 @@ internal class Dispatcher internal constructor(
         }
 
         hunter = forRequest(action.picasso, this, cache, action)
+        hunter.distance = distanceOf(action)
         hunter.future = service.submit(hunter)
         hunterMap[action.request.key] = hunter
         if (dismissFailed) {
@@ -228,6 +260,8 @@ internal class Dispatcher internal constructor(
             }
         }
 
+        deferredActions.remove(action.getTarget())
+
         val remove = failedActions.remove(action.getTarget())
         if (remove != null && remove.picasso.isLoggingEnabled) {
             log(OWNER_DISPATCHER, VERB_CANCELED, remove.request.logId(), "from replaying")
@@ -330,6 +364,86 @@ internal class Dispatcher internal constructor(
         }
     }
 
+    fun performViewport(tag: Any, first: Int, last: Int, margin: Int) {
+        val forward = viewports[tag]?.movedForward(first, last) ?: true
+        val viewport = Viewport(first, last, margin, forward)
+        viewports[tag] = viewport
+
+        // Defer queued work that left the viewport, rank the rest by the new distance.
+        val iterator = hunterMap.values.iterator()
+        while (iterator.hasNext()) {
+            val hunter = iterator.next()
+            val single = hunter.action
+            if (single != null && single.tag == tag && !viewport.contains(single.request.position)) {
+                hunter.detach(single)
+                deferredActions[single.getTarget()] = single
+            }
+            val joined = hunter.actions
+            if (joined != null) {
+                for (i in joined.indices.reversed()) {
+                    val action = joined[i]
+                    if (action.tag == tag && !viewport.contains(action.request.position)) {
+                        hunter.detach(action)
+                        deferredActions[action.getTarget()] = action
+                    }
+                }
+            }
+            if (hunter.cancel()) {
+                iterator.remove()
+                if (hunter.picasso.isLoggingEnabled) {
+                    log(
+                        owner = OWNER_DISPATCHER,
+                        verb = VERB_CANCELED,
+                        logId = getLogIdsForHunter(hunter),
+                        extras = "outside of the viewport"
+                    )
+                }
+            } else {
+                hunter.distance = distanceOf(hunter)
+            }
+        }
+
+        val batch = mutableListOf<Action>()
+        val deferred = deferredActions.values.iterator()
+        while (deferred.hasNext()) {
+            val action = deferred.next()
+            if (action.tag == tag && viewport.contains(action.request.position)) {
+                batch += action
+                deferred.remove()
+            }
+        }
+        for (i in batch.indices) {
+            performSubmit(batch[i], false)
+        }
+
+        (service as? PicassoExecutorService)?.reorder()
+    }
+
+    fun performClearViewport(tag: Any) {
+        viewports.remove(tag)
+        val iterator = deferredActions.values.iterator()
+        while (iterator.hasNext()) {
+            if (iterator.next().tag == tag) {
+                iterator.remove()
+            }
+        }
+    }
+
+    private fun distanceOf(action: Action): Int {
+        return viewports[action.tag]?.distance(action.request.position) ?: 0
+    }
+
+    private fun distanceOf(hunter: BitmapHunter): Int {
+        var distance = Int.MAX_VALUE
+        hunter.action?.let { distance = distanceOf(it) }
+        hunter.actions?.let { actions ->
+            for (i in actions.indices) {
+                distance = minOf(distance, distanceOf(actions[i]))
+            }
+        }
+        return if (distance == Int.MAX_VALUE) 0 else distance
+    }
+
     @SuppressLint("MissingPermission")
     fun performRetry(hunter: BitmapHunter) {
         if (hunter.isCancelled) return
@@ -474,6 +588,14 @@ internal class Dispatcher internal constructor(
                     val tag = msg.obj
                     dispatcher.performResumeTag(tag)
                 }
+                VIEWPORT_CHANGE -> {
+                    val change = msg.obj as ViewportChange
+                    dispatcher.performViewport(change.tag, msg.arg1, msg.arg2, change.margin)
+                }
+                VIEWPORT_CLEAR -> {
+                    val tag = msg.obj
+                    dispatcher.performClearViewport(tag)
+                }
                 HUNTER_COMPLETE -> {
                     val hunter = msg.obj as BitmapHunter
                     dispatcher.performComplete(hunter)
@@ -499,6 +621,8 @@ internal class Dispatcher internal constructor(
         }
     }
 
+    private class ViewportChange(val tag: Any, val margin: Int)
+
     internal class DispatcherThread : HandlerThread(
         Utils.THREAD_PREFIX + DISPATCHER_THREAD_NAME,
         THREAD_PRIORITY_BACKGROUND
@@ -583,6 +707,8 @@ internal class Dispatcher internal constructor(
         private const val TAG_PAUSE = 10
         private const val TAG_RESUME = 11
         const val REQUEST_BATCH_RESUME = 12
+        private const val VIEWPORT_CHANGE = 13
+        private const val VIEWPORT_CLEAR = 14
         private const val DISPATCHER_THREAD_NAME = "Dispatcher"
     }
 }
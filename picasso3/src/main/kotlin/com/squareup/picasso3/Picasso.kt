@@ -239,6 +239,26 @@ class Picasso internal constructor(
         dispatcher.dispatchResumeTag(tag)
     }
 
+    /**
+     * Set the visible adapter positions of requests with the given tag.
+     * Queued work is ordered by distance from this range, work ahead in the scroll
+     * direction first. Requests further than [margin] positions outside of it are
+     * deferred until the range comes back to them.
+     *
+     * @see RequestCreator.position
+     * @see clearViewport
+     */
+    fun setViewport(tag: Any, first: Int, last: Int, margin: Int) {
+        dispatcher.dispatchViewport(tag, first, last, margin)
+    }
+
+    /**
+     * Forget the viewport of the given tag, deferred requests with this tag are dropped.
+     */
+    fun clearViewport(tag: Any) {
+        dispatcher.dispatchClearViewport(tag)
+    }
+
     /**
      * Start an image request using the specified URI.
      *
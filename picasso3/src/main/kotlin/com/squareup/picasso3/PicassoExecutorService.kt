@@ -22,19 +22,66 @@ import java.util.concurrent.TimeUnit.MILLISECONDS
 
 /**
  * The default [java.util.concurrent.ExecutorService] used for new [Picasso] instances.
+ *
+ * Local decodes run on [threadCount] threads sized from the CPU count, network requests
+ * mostly wait on I/O and get their own larger pool. Queued work is ordered by priority,
+ * then by distance from the viewport (see [Picasso.setViewport]), then FIFO.
  */
 class PicassoExecutorService(
     threadCount: Int = DEFAULT_THREAD_COUNT,
+    networkThreadCount: Int = DEFAULT_NETWORK_THREAD_COUNT,
     threadFactory: ThreadFactory = PicassoThreadFactory()
 ) : ThreadPoolExecutor(
     threadCount, threadCount, 0, MILLISECONDS, PriorityBlockingQueue(), threadFactory
 ) {
+    private val networkExecutor = ThreadPoolExecutor(
+        networkThreadCount,
+        networkThreadCount,
+        0,
+        MILLISECONDS,
+        PriorityBlockingQueue(),
+        threadFactory
+    )
+
     override fun submit(task: Runnable): Future<*> {
-        val ftask = PicassoFutureTask(task as BitmapHunter)
-        execute(ftask)
+        val hunter = task as BitmapHunter
+        val ftask = PicassoFutureTask(hunter)
+        if (hunter.requestHandler is NetworkRequestHandler) {
+            networkExecutor.execute(ftask)
+        } else {
+            execute(ftask)
+        }
         return ftask
     }
 
+    /**
+     * Re-sorts queued work after the distances of hunters changed.
+     */
+    internal fun reorder() {
+        reorder(queue)
+        reorder(networkExecutor.queue)
+    }
+
+    private fun reorder(queue: BlockingQueue<Runnable>) {
+        if (queue.size < 2) {
+            return
+        }
+        val pending = ArrayList<Runnable>(queue.size)
+        queue.drainTo(pending)
+        queue.addAll(pending)
+    }
+
+    override fun shutdown() {
+        networkExecutor.shutdown()
+        super.shutdown()
+    }
+
+    override fun shutdownNow(): MutableList<Runnable> {
+        val pending = networkExecutor.shutdownNow()
+        pending.addAll(super.shutdownNow())
+        return pending
+    }
+
     private class PicassoThreadFactory : ThreadFactory {
         override fun newThread(r: Runnable): Thread = PicassoThread(r)
 
@@ -53,12 +100,20 @@ class PicassoExecutorService(
             val p2 = other.hunter.priority
 
             // High-priority requests are "lesser" so they are sorted to the front.
-            // Equal priorities are sorted by sequence number to provide FIFO ordering.
-            return if (p1 == p2) hunter.sequence - other.hunter.sequence else p2.ordinal - p1.ordinal
+            // Then the closest to the viewport, equal ones are sorted by sequence
+            // number to provide FIFO ordering.
+            if (p1 != p2) {
+                return p2.ordinal - p1.ordinal
+            }
+            val d1 = hunter.distance
+            val d2 = other.hunter.distance
+            return if (d1 != d2) d1.compareTo(d2) else hunter.sequence - other.hunter.sequence
         }
     }
 
     private companion object {
-        private const val DEFAULT_THREAD_COUNT = 3
+        private val CPU_COUNT = Runtime.getRuntime().availableProcessors()
+        private val DEFAULT_THREAD_COUNT = CPU_COUNT.coerceIn(2, 4)
+        private val DEFAULT_NETWORK_THREAD_COUNT = (CPU_COUNT * 2).coerceIn(4, 8)
     }
 }
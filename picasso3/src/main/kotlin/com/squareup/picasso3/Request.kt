@@ -135,6 +135,10 @@ class Request internal constructor(builder: Builder) {
     @JvmField
     val priority: Priority = checkNotNull(builder.priority)
 
+    /** Adapter position of the target for [Picasso.setViewport], -1 if unknown. */
+    @JvmField
+    val position: Int = builder.position
+
     /** The cache key for this request. */
     @JvmField
     var key: String =
@@ -309,6 +313,7 @@ class Request internal constructor(builder: Builder) {
         var transformations: MutableList<Transformation>? = null
         var config: Config? = null
         var priority: Priority? = null
+        var position = -1
 
         /** Internal use only. Used by [DeferredRequestCreator]. */
         var tag: Any? = null
@@ -353,6 +358,7 @@ class Request internal constructor(builder: Builder) {
             transformations = request.transformations.toMutableList()
             config = request.config
             priority = request.priority
+            position = request.position
             memoryPolicy = request.memoryPolicy
             networkPolicy = request.networkPolicy
         }
@@ -517,6 +523,11 @@ class Request internal constructor(builder: Builder) {
             this.priority = priority
         }
 
+        /** Adapter position of the target, see [Picasso.setViewport]. */
+        fun position(position: Int) = apply {
+            this.position = position
+        }
+
         /**
          * Add a custom transformation to be applied to the image.
          *
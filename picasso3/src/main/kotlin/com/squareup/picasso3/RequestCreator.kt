@@ -281,6 +281,16 @@ class RequestCreator internal constructor(
         return this
     }
 
+    /**
+     * Adapter position of the target. Requests with a position are ordered by their
+     * distance from the range set with [Picasso.setViewport] for their tag and are
+     * deferred while they are far outside of it.
+     */
+    fun position(position: Int): RequestCreator {
+        data.position(position)
+        return this
+    }
+
     /**
      * Add a custom transformation to be applied to the image.
      *
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2013 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.squareup.picasso3
+
+/**
+ * Visible adapter positions of a tag, see [Picasso.setViewport].
+ * Positions ahead in the scroll direction are closer than the same distance behind.
+ */
+internal class Viewport(
+    private val first: Int,
+    private val last: Int,
+    private val margin: Int,
+    private val forward: Boolean
+) {
+    fun distance(position: Int): Int {
+        if (position < 0) {
+            return 0
+        }
+        return when {
+            position < first -> (first - position) * if (forward) 2 else 1
+            position > last -> (position - last) * if (forward) 1 else 2
+            else -> 0
+        }
+    }
+
+    fun contains(position: Int): Boolean {
+        return position < 0 || (position >= first - margin && position <= last + margin)
+    }
+
+    fun movedForward(first: Int, last: Int): Boolean {
+        return if (first != this.first) first > this.first else last >= this.last
+    }
+}
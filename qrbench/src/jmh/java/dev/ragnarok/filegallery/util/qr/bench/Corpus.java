@@ -0,0 +1,184 @@
+package dev.ragnarok.filegallery.util.qr.bench;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import dev.ragnarok.filegallery.util.qr.BinaryBitmap;
+import dev.ragnarok.filegallery.util.qr.BitMatrix;
+import dev.ragnarok.filegallery.util.qr.ByteLuminanceSource;
+import dev.ragnarok.filegallery.util.qr.DecodeHintType;
+import dev.ragnarok.filegallery.util.qr.HybridBinarizer;
+import dev.ragnarok.filegallery.util.qr.LuminanceSource;
+import dev.ragnarok.filegallery.util.qr.QRCodeReader;
+import dev.ragnarok.filegallery.util.qr.ReaderException;
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternFinder;
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternInfo;
+
+/**
+ * Images of one resolution with the intermediate results of every stage precomputed,
+ * so each benchmark measures its own stage only. The images are rotated between
+ * invocations to keep the branch predictor from learning a single picture.
+ * <p>
+ * {@code corpus} is either {@code synthetic} or a directory of photos containing QR codes,
+ * which are scaled so that their long side is {@code size}. Photos the decoder can not read
+ * at that size are skipped; {@code version} only applies to the synthetic corpus.
+ */
+@State(Scope.Thread)
+public class Corpus {
+
+    static final Map<DecodeHintType, Object> HINTS = new EnumMap<>(DecodeHintType.class);
+
+    static {
+        HINTS.put(DecodeHintType.TRY_HARDER, Boolean.TRUE);
+    }
+
+    private static final int SYNTHETIC_IMAGES = 8;
+
+    @Param({"synthetic"})
+    public String corpus;
+
+    @Param({"256", "1024", "4096"})
+    public int size;
+
+    @Param({"1", "3", "5"})
+    public int version;
+
+    LuminanceSource[] sources;
+    BitMatrix[] binarized;
+    FinderPatternInfo[] patterns;
+    BitMatrix[] sampled;
+    int[][] codewords;
+    int ecCount;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException, ReaderException {
+        List<LuminanceSource> images = "synthetic".equals(corpus) ? synthetic() : photos(new File(corpus));
+        if (images.isEmpty()) {
+            throw new IllegalStateException("No decodable images in " + corpus + " at " + size);
+        }
+        int count = images.size();
+        sources = images.toArray(new LuminanceSource[0]);
+        binarized = new BitMatrix[count];
+        patterns = new FinderPatternInfo[count];
+        sampled = new BitMatrix[count];
+        for (int i = 0; i < count; i++) {
+            binarized[i] = new HybridBinarizer(sources[i]).getBlackMatrix();
+            patterns[i] = new FinderPatternFinder(binarized[i]).find(HINTS);
+            sampled[i] = new StageDetector(binarized[i]).sample(patterns[i]).getBits();
+        }
+
+        // codewords with half of the correction capacity used up by errors
+        Random random = new Random(version);
+        ecCount = SyntheticQr.ecCodewords(version);
+        codewords = new int[SYNTHETIC_IMAGES][];
+        for (int i = 0; i < SYNTHETIC_IMAGES; i++) {
+            int[] words = SyntheticQr.codewords(text(i), version);
+            for (int e = 0; e < ecCount / 4; e++) {
+                int position = random.nextInt(words.length);
+                words[position] ^= 1 + random.nextInt(255);
+            }
+            codewords[i] = words;
+        }
+    }
+
+    int next() {
+        int index = next;
+        next = index + 1 == sources.length ? 0 : index + 1;
+        return index;
+    }
+
+    int[] nextCodewords() {
+        int[] words = codewords[next() % codewords.length];
+        return Arrays.copyOf(words, words.length);
+    }
+
+    private String text(int index) {
+        StringBuilder text = new StringBuilder().append(index).append(":https://example.com/");
+        int capacity = SyntheticQr.capacity(version);
+        while (text.length() < capacity) {
+            text.append((char) ('a' + text.length() % 26));
+        }
+        return text.substring(0, capacity);
+    }
+
+    private List<LuminanceSource> synthetic() {
+        List<LuminanceSource> images = new ArrayList<>(SYNTHETIC_IMAGES);
+        for (int i = 0; i < SYNTHETIC_IMAGES; i++) {
+            boolean[][] modules = SyntheticQr.encode(text(i), version);
+            images.add(new ByteLuminanceSource(SyntheticQr.render(modules, size, i), size, size));
+        }
+        return images;
+    }
+
+    private List<LuminanceSource> photos(File dir) throws IOException {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("Not a directory: " + dir);
+        }
+        Arrays.sort(files);
+        List<LuminanceSource> images = new ArrayList<>();
+        for (File file : files) {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                continue;
+            }
+            LuminanceSource source = luminance(scale(image));
+            try {
+                new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(source)), HINTS);
+                images.add(source);
+            } catch (ReaderException ignored) {
+            }
+        }
+        return images;
+    }
+
+    private BufferedImage scale(BufferedImage image) {
+        float factor = (float) size / Math.max(image.getWidth(), image.getHeight());
+        int width = Math.max(1, Math.round(image.getWidth() * factor));
+        int height = Math.max(1, Math.round(image.getHeight() * factor));
+        BufferedImage scaled = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(image, 0, 0, width, height, null);
+        graphics.dispose();
+        return scaled;
+    }
+
+    private static LuminanceSource luminance(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] row = new int[width];
+        byte[] luminance = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                // same weights as RGBLuminanceSource
+                int r = (pixel >> 16) & 0xff;
+                int g2 = (pixel >> 7) & 0x1fe;
+                int b = pixel & 0xff;
+                luminance[y * width + x] = (byte) ((r + g2 + b) / 4);
+            }
+        }
+        return new ByteLuminanceSource(luminance, width, height);
+    }
+}
@@ -0,0 +1,67 @@
+package dev.ragnarok.filegallery.util.qr.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import dev.ragnarok.filegallery.util.qr.BinaryBitmap;
+import dev.ragnarok.filegallery.util.qr.BitMatrix;
+import dev.ragnarok.filegallery.util.qr.DecoderResult;
+import dev.ragnarok.filegallery.util.qr.DetectorResult;
+import dev.ragnarok.filegallery.util.qr.HybridBinarizer;
+import dev.ragnarok.filegallery.util.qr.QRCodeReader;
+import dev.ragnarok.filegallery.util.qr.ReaderException;
+import dev.ragnarok.filegallery.util.qr.Result;
+import dev.ragnarok.filegallery.util.qr.decoder.Decoder;
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternFinder;
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternInfo;
+import dev.ragnarok.filegallery.util.qr.reedsolomon.GenericGF;
+import dev.ragnarok.filegallery.util.qr.reedsolomon.ReedSolomonDecoder;
+import dev.ragnarok.filegallery.util.qr.reedsolomon.ReedSolomonException;
+
+/**
+ * Decoder stages in pipeline order, each fed with the precomputed output of the previous one,
+ * plus the whole pipeline. Throughput, latency percentiles and allocation rate come from the
+ * thrpt and sample modes and the gc profiler configured in build.gradle.
+ */
+public class DecoderStagesBenchmark {
+
+    private final Decoder decoder = new Decoder();
+    private final ReedSolomonDecoder rsDecoder = new ReedSolomonDecoder(GenericGF.QR_CODE_FIELD_256);
+
+    @Benchmark
+    public BitMatrix binarize(Corpus corpus) throws ReaderException {
+        return new HybridBinarizer(corpus.sources[corpus.next()]).getBlackMatrix();
+    }
+
+    @Benchmark
+    public FinderPatternInfo detect(Corpus corpus) throws ReaderException {
+        return new FinderPatternFinder(corpus.binarized[corpus.next()]).find(Corpus.HINTS);
+    }
+
+    @Benchmark
+    public DetectorResult sample(Corpus corpus) throws ReaderException {
+        int index = corpus.next();
+        return new StageDetector(corpus.binarized[index]).sample(corpus.patterns[index]);
+    }
+
+    @Benchmark
+    public int[] rsDecode(Corpus corpus) throws ReedSolomonException {
+        int[] codewords = corpus.nextCodewords();
+        rsDecoder.decode(codewords, corpus.ecCount);
+        return codewords;
+    }
+
+    /**
+     * Format and version reading, unmasking, error correction and the bit stream parser.
+     * The decoder unmasks in place, so the sampled grid is copied first.
+     */
+    @Benchmark
+    public DecoderResult decodeBits(Corpus corpus) throws ReaderException {
+        return decoder.decode(corpus.sampled[corpus.next()].clone(), Corpus.HINTS);
+    }
+
+    @Benchmark
+    public Result full(Corpus corpus) throws ReaderException {
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(corpus.sources[corpus.next()]));
+        return new QRCodeReader().decode(bitmap, Corpus.HINTS);
+    }
+}
@@ -0,0 +1,22 @@
+package dev.ragnarok.filegallery.util.qr.bench;
+
+import dev.ragnarok.filegallery.util.qr.BitMatrix;
+import dev.ragnarok.filegallery.util.qr.DetectorResult;
+import dev.ragnarok.filegallery.util.qr.FormatException;
+import dev.ragnarok.filegallery.util.qr.NotFoundException;
+import dev.ragnarok.filegallery.util.qr.detector.Detector;
+import dev.ragnarok.filegallery.util.qr.detector.FinderPatternInfo;
+
+/**
+ * Exposes the sampling half of {@link Detector} so it can be measured apart from the finder.
+ */
+final class StageDetector extends Detector {
+
+    StageDetector(BitMatrix image) {
+        super(image);
+    }
+
+    DetectorResult sample(FinderPatternInfo info) throws NotFoundException, FormatException {
+        return processFinderPatternInfo(info);
+    }
+}
@@ -0,0 +1,237 @@
+package dev.ragnarok.filegallery.util.qr.bench;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import dev.ragnarok.filegallery.util.qr.reedsolomon.GenericGF;
+import dev.ragnarok.filegallery.util.qr.reedsolomon.ReedSolomonEncoder;
+
+/**
+ * Minimal QR encoder for the benchmark corpus: byte mode, error correction level L,
+ * versions 1-5 (single block, at most one alignment pattern) and data mask 0.
+ */
+final class SyntheticQr {
+
+    private static final int[] TOTAL_CODEWORDS = {26, 44, 70, 100, 134};
+    private static final int[] EC_CODEWORDS = {7, 10, 15, 20, 26};
+    private static final int[] ALIGNMENT_CENTER = {0, 18, 22, 26, 30};
+
+    private static final int[][] FORMAT_COORDINATES = {
+            {8, 0}, {8, 1}, {8, 2}, {8, 3}, {8, 4}, {8, 5}, {8, 7}, {8, 8},
+            {7, 8}, {5, 8}, {4, 8}, {3, 8}, {2, 8}, {1, 8}, {0, 8},
+    };
+
+    private static final int EMPTY = -1;
+
+    private SyntheticQr() {
+    }
+
+    static int capacity(int version) {
+        // mode indicator and 8 bit character count
+        return TOTAL_CODEWORDS[version - 1] - EC_CODEWORDS[version - 1] - 2;
+    }
+
+    static int ecCodewords(int version) {
+        return EC_CODEWORDS[version - 1];
+    }
+
+    /**
+     * @return data and error correction codewords of the single block
+     */
+    static int[] codewords(String text, int version) {
+        byte[] payload = text.getBytes(StandardCharsets.ISO_8859_1);
+        if (version < 1 || version > TOTAL_CODEWORDS.length || payload.length > capacity(version)) {
+            throw new IllegalArgumentException("Text does not fit version " + version);
+        }
+        int total = TOTAL_CODEWORDS[version - 1];
+        int ecCount = EC_CODEWORDS[version - 1];
+        int dataCount = total - ecCount;
+
+        BitWriter bits = new BitWriter(dataCount);
+        bits.write(0x4, 4);
+        bits.write(payload.length, 8);
+        for (byte b : payload) {
+            bits.write(b & 0xff, 8);
+        }
+        bits.write(0, Math.min(4, dataCount * 8 - bits.size));
+        bits.write(0, (8 - bits.size % 8) % 8);
+        for (int pad = 0; bits.size < dataCount * 8; pad++) {
+            bits.write((pad & 1) == 0 ? 0xec : 0x11, 8);
+        }
+
+        int[] codewords = new int[total];
+        System.arraycopy(bits.bytes, 0, codewords, 0, dataCount);
+        new ReedSolomonEncoder(GenericGF.QR_CODE_FIELD_256).encode(codewords, ecCount);
+        return codewords;
+    }
+
+    /**
+     * @return modules, [y][x], true is dark
+     */
+    static boolean[][] encode(String text, int version) {
+        int[] codewords = codewords(text, version);
+        int dimension = 17 + version * 4;
+        int[][] matrix = new int[dimension][dimension];
+        for (int[] row : matrix) {
+            Arrays.fill(row, EMPTY);
+        }
+        placeFunctionPatterns(matrix, version);
+        placeFormat(matrix);
+        placeData(matrix, codewords);
+
+        boolean[][] modules = new boolean[dimension][dimension];
+        for (int y = 0; y < dimension; y++) {
+            for (int x = 0; x < dimension; x++) {
+                modules[y][x] = matrix[y][x] == 1;
+            }
+        }
+        return modules;
+    }
+
+    /**
+     * Renders the code into a square greyscale image of {@code size} pixels, placed off center on a
+     * textured background under uneven lighting, with a little sensor noise on top.
+     */
+    static byte[] render(boolean[][] modules, int size, long seed) {
+        Random random = new Random(seed);
+        int dimension = modules.length;
+        // about 60% of the image including the quiet zone
+        float module = size * 0.6f / (dimension + 8);
+        int origin = (int) (size * 0.15f);
+        int quiet = Math.round(module * 4);
+        int extent = Math.round(module * dimension);
+        int cell = Math.max(1, size / 32);
+        byte[] image = new byte[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                int value;
+                if (y >= origin - quiet && y < origin + extent + quiet
+                        && x >= origin - quiet && x < origin + extent + quiet) {
+                    int my = (int) ((y - origin) / module);
+                    int mx = (int) ((x - origin) / module);
+                    boolean dark = y >= origin && x >= origin && my < dimension && mx < dimension
+                            && modules[my][mx];
+                    value = dark ? 40 : 225;
+                } else {
+                    // checkered texture
+                    value = ((x / cell + y / cell) & 1) == 0 ? 150 : 190;
+                }
+                float light = 0.75f + 0.25f * (x + y) / (2f * size);
+                value = (int) (value * light) + random.nextInt(13) - 6;
+                image[y * size + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return image;
+    }
+
+    private static void placeFunctionPatterns(int[][] matrix, int version) {
+        int dimension = matrix.length;
+        placeFinder(matrix, 0, 0);
+        placeFinder(matrix, dimension - 7, 0);
+        placeFinder(matrix, 0, dimension - 7);
+        for (int i = 8; i < dimension - 8; i++) {
+            int bit = (i + 1) & 1;
+            matrix[6][i] = bit;
+            matrix[i][6] = bit;
+        }
+        int center = ALIGNMENT_CENTER[version - 1];
+        if (center > 0) {
+            for (int dy = -2; dy <= 2; dy++) {
+                for (int dx = -2; dx <= 2; dx++) {
+                    int ring = Math.max(Math.abs(dx), Math.abs(dy));
+                    matrix[center + dy][center + dx] = ring == 1 ? 0 : 1;
+                }
+            }
+        }
+        matrix[dimension - 8][8] = 1;
+    }
+
+    private static void placeFinder(int[][] matrix, int left, int top) {
+        int dimension = matrix.length;
+        for (int dy = -1; dy <= 7; dy++) {
+            for (int dx = -1; dx <= 7; dx++) {
+                int x = left + dx;
+                int y = top + dy;
+                if (x < 0 || y < 0 || x >= dimension || y >= dimension) {
+                    continue;
+                }
+                // dark outer ring and 3x3 core, light ring between them and light separator
+                int fromEdge = Math.min(Math.min(dx, 6 - dx), Math.min(dy, 6 - dy));
+                matrix[y][x] = fromEdge >= 0 && fromEdge != 1 ? 1 : 0;
+            }
+        }
+    }
+
+    private static void placeFormat(int[][] matrix) {
+        int dimension = matrix.length;
+        // level L (01) and mask 0
+        int info = 0x1 << 3;
+        int bch = info << 10;
+        for (int bit = 14; bit >= 10; bit--) {
+            if ((bch & (1 << bit)) != 0) {
+                bch ^= 0x537 << (bit - 10);
+            }
+        }
+        int format = ((info << 10) | bch) ^ 0x5412;
+        for (int i = 0; i < 15; i++) {
+            int bit = (format >> i) & 1;
+            matrix[FORMAT_COORDINATES[i][1]][FORMAT_COORDINATES[i][0]] = bit;
+            if (i < 8) {
+                matrix[8][dimension - 1 - i] = bit;
+            } else {
+                matrix[dimension - 7 + (i - 8)][8] = bit;
+            }
+        }
+    }
+
+    private static void placeData(int[][] matrix, int[] codewords) {
+        int dimension = matrix.length;
+        int bitIndex = 0;
+        int totalBits = codewords.length * 8;
+        int direction = -1;
+        int y = dimension - 1;
+        for (int x = dimension - 1; x > 0; x -= 2) {
+            if (x == 6) {
+                x--;
+            }
+            for (; y >= 0 && y < dimension; y += direction) {
+                for (int i = 0; i < 2; i++) {
+                    int xx = x - i;
+                    if (matrix[y][xx] != EMPTY) {
+                        continue;
+                    }
+                    int bit = 0;
+                    if (bitIndex < totalBits) {
+                        bit = (codewords[bitIndex >> 3] >> (7 - (bitIndex & 7))) & 1;
+                        bitIndex++;
+                    }
+                    if (((xx + y) & 1) == 0) {
+                        bit ^= 1;
+                    }
+                    matrix[y][xx] = bit;
+                }
+            }
+            direction = -direction;
+            y += direction;
+        }
+    }
+
+    private static final class BitWriter {
+        final int[] bytes;
+        int size;
+
+        BitWriter(int capacity) {
+            bytes = new int[capacity];
+        }
+
+        void write(int value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (((value >> i) & 1) != 0) {
+                    bytes[size >> 3] |= 0x80 >> (size & 7);
+                }
+                size++;
+            }
+        }
+    }
+}